@@ -12,24 +12,51 @@ import geometry_objects.delegates.SegmentDelegate;
 import geometry_objects.delegates.intersections.IntersectionDelegate;
 import geometry_objects.points.Point;
 import utilities.math.MathUtilities;
-import utilities.math.analytic_geometry.GeometryUtilities;
 
 public class Segment extends GeometricObject
 {
 	protected Point _point1;
 	protected Point _point2;
 
+	//
+	// Geometry computed (once) on first use; see cacheGeometry
+	//
 	protected double _length;
 	protected double _slope;
 
+	protected boolean _vertical;
+	protected boolean _horizontal;
+
+	// Bounding box
+	protected double _minX;
+	protected double _minY;
+	protected double _maxX;
+	protected double _maxY;
+
+	// Direction vector: point2 - point1
+	protected double _deltaX;
+	protected double _deltaY;
+
+	// Normalized line coefficients: _lineA x + _lineB y = _lineC with _lineA^2 + _lineB^2 = 1
+	protected double _lineA;
+	protected double _lineB;
+	protected double _lineC;
+
+	// Written last: a thread reading true sees all of the fields above
+	private volatile boolean _geometryCached;
+
 	public Point getPoint1() { return _point1; }
 	public Point getPoint2() { return _point2; }
-	public double length() { return _length; }
-	public double slope()
-	{
-		try { return GeometryUtilities.slope(_point1, _point2); }
-		catch(ArithmeticException ae) { return Double.POSITIVE_INFINITY; }
-	}
+	public double length() { cacheGeometry(); return _length; }
+	public double slope() { cacheGeometry(); return _slope; }
+
+	public double getMinX() { cacheGeometry(); return _minX; }
+	public double getMinY() { cacheGeometry(); return _minY; }
+	public double getMaxX() { cacheGeometry(); return _maxX; }
+	public double getMaxY() { cacheGeometry(); return _maxY; }
+
+	public double getDeltaX() { cacheGeometry(); return _deltaX; }
+	public double getDeltaY() { cacheGeometry(); return _deltaY; }
 
 	public Segment(Segment in) { this(in._point1, in._point2); }
 	public Segment(Point p1, Point p2)
@@ -38,6 +65,63 @@ public class Segment extends GeometricObject
 		_point2 = p2;
 	}
 
+	/*
+	 * Compute the geometry of the segment on first use; the endpoints never change.
+	 * (Racing threads compute identical values.)
+	 */
+	private void cacheGeometry()
+	{
+		if (_geometryCached) return;
+
+		_deltaX = _point2.getX() - _point1.getX();
+		_deltaY = _point2.getY() - _point1.getY();
+
+		_minX = Math.min(_point1.getX(), _point2.getX());
+		_minY = Math.min(_point1.getY(), _point2.getY());
+		_maxX = Math.max(_point1.getX(), _point2.getX());
+		_maxY = Math.max(_point1.getY(), _point2.getY());
+
+		_vertical = MathUtilities.doubleEquals(_point1.getX(), _point2.getX());
+		_horizontal = MathUtilities.doubleEquals(_point1.getY(), _point2.getY());
+
+		_length = Math.sqrt(_deltaX * _deltaX + _deltaY * _deltaY);
+		_slope = _vertical ? Double.POSITIVE_INFINITY : (_point1.getY() - _point2.getY()) / (_point1.getX() - _point2.getX());
+
+		// The normal (-dy, dx), scaled to unit length (undefined for a degenerate segment)
+		_lineA = _length == 0 ? 0 : -_deltaY / _length;
+		_lineB = _length == 0 ? 0 : _deltaX / _length;
+		_lineC = _lineA * _point1.getX() + _lineB * _point1.getY();
+
+		_geometryCached = true;
+	}
+
+	/*
+	 * @param that -- a segment
+	 * @return true if the bounding boxes of the segments overlap (within EPSILON);
+	 *         segments that share any point always do
+	 */
+	public boolean boundsOverlap(Segment that)
+	{
+		return this.getMinX() - MathUtilities.EPSILON <= that.getMaxX() + MathUtilities.EPSILON &&
+			   that.getMinX() - MathUtilities.EPSILON <= this.getMaxX() + MathUtilities.EPSILON &&
+			   this.getMinY() - MathUtilities.EPSILON <= that.getMaxY() + MathUtilities.EPSILON &&
+			   that.getMinY() - MathUtilities.EPSILON <= this.getMaxY() + MathUtilities.EPSILON;
+	}
+
+	/*
+	 * @param pt -- a point
+	 * @return the distance from the point to the line (infinite) through this segment
+	 *         (to point1 for a degenerate segment)
+	 */
+	public double distanceToLine(Point pt)
+	{
+		cacheGeometry();
+
+		if (_length == 0) return Math.hypot(pt.getX() - _point1.getX(), pt.getY() - _point1.getY());
+
+		return Math.abs(_lineA * pt.getX() + _lineB * pt.getY() - _lineC);
+	}
+
 	/*
 	 * @param that -- a segment (as a segment: finite)
 	 * @return the midpoint of this segment (finite)
@@ -120,12 +204,12 @@ public class Segment extends GeometricObject
 	/*
 	 * @return true if this segment is horizontal (by analysis of both endpoints having same y-coordinate)
 	 */
-	public boolean isHorizontal() { return MathUtilities.doubleEquals(_point1.getY(), _point2.getY()); }
+	public boolean isHorizontal() { cacheGeometry(); return _horizontal; }
 
 	/*
 	 * @return true if this segment is vertical (by analysis of both endpoints having same x-coordinate)
 	 */
-	public boolean isVertical() { return MathUtilities.doubleEquals(_point1.getX(), _point2.getX()); }
+	public boolean isVertical() { cacheGeometry(); return _vertical; }
 
 	/*
 	 * @param pt -- one of the endpoints of this segment
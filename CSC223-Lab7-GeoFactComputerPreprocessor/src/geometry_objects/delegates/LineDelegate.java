@@ -1,7 +1,8 @@
 package geometry_objects.delegates;
 
 import geometry_objects.Segment;
-import utilities.math.MathUtilities;
+import geometry_objects.points.Point;
+import utilities.math.analytic_geometry.GeometryPredicates;
 
 /*
  * A processing, delegation class.
@@ -16,23 +17,24 @@ public class LineDelegate
      */
     public static boolean areCollinear(Segment thisS, Segment that)
     {
-        // If the segments are vertical, just compare the X values of one point of each
-        // Also ensure that the segments have some overlap
-        if (thisS.isVertical() && that.isVertical())
-        {
-            return MathUtilities.doubleEquals(thisS.getPoint1().getX(), that.getPoint1().getX())
-                && (thisS.pointLiesOn(that.getPoint1()) || thisS.pointLiesOn(that.getPoint2()));
-        }
-
-        // If the segments are horizontal, just compare the Y values of one point of each; this is redundant
-        if (thisS.isHorizontal() && that.isHorizontal())
-        {
-            return MathUtilities.doubleEquals(thisS.getPoint1().getY(), that.getPoint2().getY())
-                && (thisS.pointLiesOn(that.getPoint1()) || thisS.pointLiesOn(that.getPoint2()));
-        }
+        // The segments must overlap: cheap rejection by (cached) bounding boxes
+        if (!thisS.boundsOverlap(that)) return false;
 
-        // Slopes equate
-        return MathUtilities.doubleEquals(thisS.slope(), that.slope()) &&
+        // Both endpoints of that lie on the line through thisS (no slopes: vertical lines are not special)
+        // Also ensure that the segments have some overlap
+        return liesOnLine(that.getPoint1(), thisS) && liesOnLine(that.getPoint2(), thisS) &&
                (thisS.pointLiesOn(that.getPoint1()) || thisS.pointLiesOn(that.getPoint2()));
     }
+
+    /*
+     * @param pt -- a point
+     * @param segment -- a segment (treated as a line)
+     * @return true if the point lies on the line through the segment
+     */
+    public static boolean liesOnLine(Point pt, Segment segment)
+    {
+        return GeometryPredicates.onLine(pt.getX(), pt.getY(),
+                                         segment.getPoint1().getX(), segment.getPoint1().getY(),
+                                         segment.getPoint2().getX(), segment.getPoint2().getY());
+    }
 }
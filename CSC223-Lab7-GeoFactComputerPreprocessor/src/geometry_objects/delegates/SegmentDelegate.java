@@ -2,7 +2,9 @@ package geometry_objects.delegates;
 
 import geometry_objects.points.Point;
 import geometry_objects.Segment;
-import utilities.math.analytic_geometry.GeometryUtilities;
+import geometry_objects.delegates.intersections.SegmentPairClassifier;
+import geometry_objects.delegates.intersections.SegmentRelation;
+import utilities.math.analytic_geometry.GeometryPredicates;
 
 /*
  * A processing, delegation class.
@@ -19,12 +21,7 @@ public class SegmentDelegate extends FigureDelegate
 	 */
 	public static boolean middleCrosses(Segment thisS, Segment that)
 	{
-		Point intersection = thisS.segmentIntersection(that);
-		
-		if (intersection == null) return false;
-
-		return thisS.pointLiesBetweenEndpoints(intersection) &&
-			   that.pointLiesBetweenEndpoints(intersection);
+		return SegmentPairClassifier.classify(thisS, that) == SegmentRelation.PROPER_CROSSING;
 	}
 
 	/*
@@ -43,14 +40,7 @@ public class SegmentDelegate extends FigureDelegate
 	 */
 	public static boolean standingOn(Segment thisS, Segment that)
 	{
-		Point intersection = thisS.segmentIntersection(that);
-		
-		if (intersection == null) return false;
-		
-		if (thisS.has(intersection) && that.pointLiesBetweenEndpoints(intersection)) return true;
-		if (that.has(intersection) && thisS.pointLiesBetweenEndpoints(intersection)) return true;
-
-		return false;
+		return SegmentPairClassifier.classify(thisS, that) == SegmentRelation.T_JUNCTION;
 	}
 
 	/*
@@ -61,7 +51,9 @@ public class SegmentDelegate extends FigureDelegate
 	{
 		if (pt == null) return false;
 
-		return GeometryUtilities.between(pt, segment.getPoint1(), segment.getPoint2());
+		return GeometryPredicates.onSegment(pt.getX(), pt.getY(),
+				                            segment.getPoint1().getX(), segment.getPoint1().getY(),
+				                            segment.getPoint2().getX(), segment.getPoint2().getY());
 	}
 
 	/*
@@ -70,8 +62,10 @@ public class SegmentDelegate extends FigureDelegate
 	 */
 	public static boolean pointLiesBetweenEndpoints(Segment segment, Point pt)
 	{
-		if (pt == null || segment.has(pt)) return false;
+		if (pt == null) return false;
 
-		return GeometryUtilities.between(pt, segment.getPoint1(), segment.getPoint2());
+		return GeometryPredicates.strictlyBetween(pt.getX(), pt.getY(),
+				                                  segment.getPoint1().getX(), segment.getPoint1().getY(),
+				                                  segment.getPoint2().getX(), segment.getPoint2().getY());
 	}
 }
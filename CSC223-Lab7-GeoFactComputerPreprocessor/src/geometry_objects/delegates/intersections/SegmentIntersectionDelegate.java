@@ -10,19 +10,14 @@ public class SegmentIntersectionDelegate extends FigureDelegate
      * <Segment, Segment> intersection
      * @param thisS -- (this Segment)
      * @param that -- a Segment to intersect with
-     * @return the intersection of @thisS and @that
+     * @return the intersection of @thisS and @that: a point strictly between
+     *         the endpoints of both (null otherwise); see SegmentPairClassifier
      */
     public static Point findIntersection(Segment thisS, Segment that)
     {
-        // <line, line> intersection
-        Point inter = LineIntersectionDelegate.intersection(thisS, that);
- 
-        // Point lies on both segments
-        
-        if (!thisS.pointLiesBetweenEndpoints(inter)) return null;
+        // Most pairs do not even overlap in x: reject by (cached) bounding boxes before any arithmetic
+        if (!thisS.boundsOverlap(that)) return null;
 
-        if (!that.pointLiesBetweenEndpoints(inter)) return null;
-        
-        return inter;        
+        return SegmentPairClassifier.crossing(thisS, that);
     }
 }
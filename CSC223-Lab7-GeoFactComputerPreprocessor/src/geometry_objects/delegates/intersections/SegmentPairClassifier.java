@@ -0,0 +1,185 @@
+package geometry_objects.delegates.intersections;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+import utilities.math.MathUtilities;
+import utilities.math.analytic_geometry.GeometryPredicates;
+
+/*
+ * Classifies a pair of segments (see SegmentRelation) in one pass over their
+ * coordinates: nothing is allocated, and no exceptions are thrown for vertical
+ * segments. A Point is created only for a proper crossing (see crossing).
+ *
+ * The crossing point is computed exactly as LineIntersectionDelegate computes
+ * it (including its special cases for vertical / horizontal segments); it must
+ * lie strictly between the endpoints of both segments. Collinear segments never
+ * cross (they share an endpoint, overlap or are disjoint).
+ */
+public class SegmentPairClassifier
+{
+    /*
+     * @param thisS -- a segment
+     * @param that -- a segment
+     * @return the relationship between the segments
+     */
+    public static SegmentRelation classify(Segment thisS, Segment that)
+    {
+        return classify(thisS.getPoint1().getX(), thisS.getPoint1().getY(), thisS.getPoint2().getX(), thisS.getPoint2().getY(),
+                        that.getPoint1().getX(), that.getPoint1().getY(), that.getPoint2().getX(), that.getPoint2().getY());
+    }
+
+    /*
+     * @param thisS -- a segment
+     * @param that -- a segment
+     * @return the point at which the segments properly cross; null if they do not
+     */
+    public static Point crossing(Segment thisS, Segment that)
+    {
+        double ax = thisS.getPoint1().getX(), ay = thisS.getPoint1().getY();
+        double bx = thisS.getPoint2().getX(), by = thisS.getPoint2().getY();
+        double cx = that.getPoint1().getX(), cy = that.getPoint1().getY();
+        double dx = that.getPoint2().getX(), dy = that.getPoint2().getY();
+
+        if (classify(ax, ay, bx, by, cx, cy, dx, dy) != SegmentRelation.PROPER_CROSSING) return null;
+
+        return new Point("", crossingX(ax, ay, bx, by, cx, cy, dx, dy), crossingY(ax, ay, bx, by, cx, cy, dx, dy));
+    }
+
+    /*
+     * @param ax, ay, bx, by -- segment AB
+     * @param cx, cy, dx, dy -- segment CD
+     * @return the relationship between AB and CD
+     */
+    public static SegmentRelation classify(double ax, double ay, double bx, double by,
+                                           double cx, double cy, double dx, double dy)
+    {
+        // Bounding boxes (padded by EPSILON) apart: no point in common
+        boolean apart = Math.max(ax, bx) + MathUtilities.EPSILON < Math.min(cx, dx) - MathUtilities.EPSILON ||
+                        Math.max(cx, dx) + MathUtilities.EPSILON < Math.min(ax, bx) - MathUtilities.EPSILON ||
+                        Math.max(ay, by) + MathUtilities.EPSILON < Math.min(cy, dy) - MathUtilities.EPSILON ||
+                        Math.max(cy, dy) + MathUtilities.EPSILON < Math.min(ay, by) - MathUtilities.EPSILON;
+
+        boolean collinear = GeometryPredicates.onLine(cx, cy, ax, ay, bx, by) &&
+                            GeometryPredicates.onLine(dx, dy, ax, ay, bx, by);
+
+        if (apart) return collinear ? SegmentRelation.COLLINEAR_DISJOINT : SegmentRelation.DISJOINT;
+
+        boolean ac = equal(ax, ay, cx, cy), ad = equal(ax, ay, dx, dy);
+        boolean bc = equal(bx, by, cx, cy), bd = equal(bx, by, dx, dy);
+
+        if (collinear)
+        {
+            if ((ac && bd) || (ad && bc)) return SegmentRelation.COLLINEAR_OVERLAP;
+
+            if (GeometryPredicates.strictlyBetween(cx, cy, ax, ay, bx, by) ||
+                GeometryPredicates.strictlyBetween(dx, dy, ax, ay, bx, by) ||
+                GeometryPredicates.strictlyBetween(ax, ay, cx, cy, dx, dy) ||
+                GeometryPredicates.strictlyBetween(bx, by, cx, cy, dx, dy)) return SegmentRelation.COLLINEAR_OVERLAP;
+
+            return ac || ad || bc || bd ? SegmentRelation.SHARED_ENDPOINT : SegmentRelation.COLLINEAR_DISJOINT;
+        }
+
+        if (ac || ad || bc || bd) return SegmentRelation.SHARED_ENDPOINT;
+
+        // One segment clear to one side of the other
+        if (separates(ax, ay, bx, by, cx, cy, dx, dy) || separates(cx, cy, dx, dy, ax, ay, bx, by)) return SegmentRelation.DISJOINT;
+
+        if (linesMeet(ax, ay, bx, by, cx, cy, dx, dy))
+        {
+            double x = crossingX(ax, ay, bx, by, cx, cy, dx, dy);
+            double y = crossingY(ax, ay, bx, by, cx, cy, dx, dy);
+
+            if (GeometryPredicates.strictlyBetween(x, y, ax, ay, bx, by) &&
+                GeometryPredicates.strictlyBetween(x, y, cx, cy, dx, dy)) return SegmentRelation.PROPER_CROSSING;
+        }
+
+        if (GeometryPredicates.onSegment(cx, cy, ax, ay, bx, by) || GeometryPredicates.onSegment(dx, dy, ax, ay, bx, by) ||
+            GeometryPredicates.onSegment(ax, ay, cx, cy, dx, dy) || GeometryPredicates.onSegment(bx, by, cx, cy, dx, dy))
+        {
+            return SegmentRelation.T_JUNCTION;
+        }
+
+        return SegmentRelation.DISJOINT;
+    }
+
+    private static boolean equal(double x1, double y1, double x2, double y2)
+    {
+        return MathUtilities.doubleEquals(x1, x2) && MathUtilities.doubleEquals(y1, y2);
+    }
+
+    /*
+     * @return true if C and D are strictly on the same side of the line AB
+     *         and clear of it (by more than the tolerance of the on-segment tests)
+     */
+    private static boolean separates(double ax, double ay, double bx, double by,
+                                     double cx, double cy, double dx, double dy)
+    {
+        int side = GeometryPredicates.orientation(ax, ay, bx, by, cx, cy);
+        if (side == 0 || side != GeometryPredicates.orientation(ax, ay, bx, by, dx, dy)) return false;
+
+        // |cross| / |AB| is the distance from the line
+        double clearance = 2 * MathUtilities.EPSILON;
+        double bound = clearance * clearance * ((bx - ax) * (bx - ax) + (by - ay) * (by - ay));
+        double crossC = GeometryPredicates.cross(ax, ay, bx, by, cx, cy);
+        double crossD = GeometryPredicates.cross(ax, ay, bx, by, dx, dy);
+
+        return crossC * crossC > bound && crossD * crossD > bound;
+    }
+
+    //
+    // The intersection of lines AB and CD, as in LineIntersectionDelegate:
+    // a vertical / horizontal line fixes one coordinate exactly; otherwise
+    // A + t (B - A) with t = ((C - A) X (D - C)) / ((B - A) X (D - C))
+    //
+    private static boolean linesMeet(double ax, double ay, double bx, double by,
+                                     double cx, double cy, double dx, double dy)
+    {
+        boolean vertical1 = MathUtilities.doubleEquals(ax, bx), horizontal1 = MathUtilities.doubleEquals(ay, by);
+        boolean vertical2 = MathUtilities.doubleEquals(cx, dx), horizontal2 = MathUtilities.doubleEquals(cy, dy);
+
+        if ((vertical1 && horizontal2) || (vertical2 && horizontal1)) return true;
+
+        return (bx - ax) * (dy - cy) - (by - ay) * (dx - cx) != 0;
+    }
+
+    private static double crossingX(double ax, double ay, double bx, double by,
+                                    double cx, double cy, double dx, double dy)
+    {
+        boolean vertical1 = MathUtilities.doubleEquals(ax, bx), horizontal1 = MathUtilities.doubleEquals(ay, by);
+        boolean vertical2 = MathUtilities.doubleEquals(cx, dx), horizontal2 = MathUtilities.doubleEquals(cy, dy);
+
+        if (vertical1 && horizontal2) return ax;
+        if (vertical2 && horizontal1) return cx;
+        if (vertical1) return ax;
+        if (vertical2) return cx;
+        if (horizontal1) return cx + (ay - cy) * (dx - cx) / (dy - cy);
+        if (horizontal2) return ax + (cy - ay) * (bx - ax) / (by - ay);
+
+        return ax + parameter(ax, ay, bx, by, cx, cy, dx, dy) * (bx - ax);
+    }
+
+    private static double crossingY(double ax, double ay, double bx, double by,
+                                    double cx, double cy, double dx, double dy)
+    {
+        boolean vertical1 = MathUtilities.doubleEquals(ax, bx), horizontal1 = MathUtilities.doubleEquals(ay, by);
+        boolean vertical2 = MathUtilities.doubleEquals(cx, dx), horizontal2 = MathUtilities.doubleEquals(cy, dy);
+
+        if (vertical1 && horizontal2) return cy;
+        if (vertical2 && horizontal1) return ay;
+        if (vertical1) return cy + (ax - cx) * (dy - cy) / (dx - cx);
+        if (vertical2) return ay + (cx - ax) * (by - ay) / (bx - ax);
+        if (horizontal1) return ay;
+        if (horizontal2) return cy;
+
+        return ay + parameter(ax, ay, bx, by, cx, cy, dx, dy) * (by - ay);
+    }
+
+    private static double parameter(double ax, double ay, double bx, double by,
+                                    double cx, double cy, double dx, double dy)
+    {
+        double rx = bx - ax, ry = by - ay;
+        double sx = dx - cx, sy = dy - cy;
+
+        return ((cx - ax) * sy - (cy - ay) * sx) / (rx * sy - ry * sx);
+    }
+}
@@ -0,0 +1,27 @@
+package geometry_objects.delegates.intersections;
+
+/*
+ * The relationship between two (finite) segments; see SegmentPairClassifier.
+ */
+public enum SegmentRelation
+{
+    // No point in common
+    DISJOINT,
+
+    // Meet at a single point interior to both segments
+    PROPER_CROSSING,
+
+    // An endpoint of one segment lies in the interior of the other
+    //       |
+    //   ---------
+    T_JUNCTION,
+
+    // Meet only at a common endpoint
+    SHARED_ENDPOINT,
+
+    // On the same line, sharing more than a point (including identical segments)
+    COLLINEAR_OVERLAP,
+
+    // On the same line with no point in common
+    COLLINEAR_DISJOINT
+}
@@ -23,6 +23,7 @@ public class PointDatabase
     // points in a figure
     protected PointNamingFactory _factory;
 
+    // A read-only view of the points; it reflects later additions
     public Set<Point> getPoints() { return _factory.getAllPoints(); }
     
 	public PointDatabase()
@@ -76,13 +77,7 @@ public class PointDatabase
 	 */
 	public Point getPoint(String name)
 	{
-		Set<Point> points = this._factory.getAllPoints();
-		
-		for (Point p : points) {
-			if(name.equals(p.getName())) return p;
-		}
-		
-		return null;	
+		return this._factory.get(name);
 	}
 
 	/**
@@ -97,6 +92,23 @@ public class PointDatabase
 		return this._factory.get(pt);
 	}
 
+	/**
+	 * Acquire the stored database object for a named point without creating
+	 * a point: by name, or by coordinates if the coordinates were stored
+	 * under another name.
+	 * 
+	 * @param name -- a String name
+	 * @param x,y -- doubles defining the point (x,y)
+	 * @return the database entry for the point (null if there is none)
+	 */
+	public Point getPoint(String name, double x, double y)
+	{
+		Point pt = this._factory.get(name);
+		if (pt != null && pt.getX() == x && pt.getY() == y) return pt;
+
+		return this._factory.get(x, y);
+	}
+
 	/**
 	 * Given a raw point (x, y), acquire the stored database object .
 	 * 
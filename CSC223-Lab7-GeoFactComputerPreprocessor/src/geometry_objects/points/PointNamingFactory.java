@@ -1,10 +1,13 @@
 package geometry_objects.points;
 
-import java.util.HashSet;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 /*
@@ -32,11 +35,42 @@ public class PointNamingFactory
 	// We need a get() method; HashSet doesn't offer one.
 	// Each entry is a <Key, Value> pair where Key == Value
 	//
+	// Lookups go through the snapping index (consistent with Point.equals);
+	// the map keeps the points in insertion order. A renamed point keeps
+	// its place: it becomes the value under the key of the point it replaces.
+	//
 	protected Map<Point, Point> _database;
+	protected SnappingPointMap<Point> _index;
+
+	// renamed point -> its key in the database (the point first stored there)
+	protected Map<Point, Point> _renamed;
+
+	// name -> point (the first point stored with the name)
+	protected Map<String, Point> _names;
+
+	// A read-only, live view of the points
+	protected Set<Point> _points;
 
 	public PointNamingFactory()
 	{
-		this._database = new LinkedHashMap<Point,Point>();
+		this(0);
+	}
+
+	/**
+	 * @param expectedSize -- the number of points expected (to presize the tables)
+	 */
+	public PointNamingFactory(int expectedSize)
+	{
+		this._database = new LinkedHashMap<Point,Point>(Math.max(16, (int)(expectedSize / 0.75f) + 1));
+		this._index = new SnappingPointMap<Point>(expectedSize);
+		this._renamed = new IdentityHashMap<Point, Point>();
+		this._names = new HashMap<String, Point>(Math.max(16, (int)(expectedSize / 0.75f) + 1));
+		this._points = new AbstractSet<Point>()
+		{
+			@Override public Iterator<Point> iterator() { return Collections.unmodifiableCollection(_database.values()).iterator(); }
+			@Override public int size() { return _database.size(); }
+			@Override public boolean contains(Object obj) { return obj instanceof Point && PointNamingFactory.this.contains((Point)obj); }
+		};
 	}
 
 	/**
@@ -45,7 +79,7 @@ public class PointNamingFactory
 	 */
 	public PointNamingFactory(List<Point> points)
 	{
-		this();
+		this(points.size());
 		
 		for(Point point: points) {
 			this.put(point.getName(), point.getX(), point.getY());
@@ -104,7 +138,16 @@ public class PointNamingFactory
 	}	
 	public Point get(Point pt)
 	{
-		return _database.get(pt);
+		return _index.get(pt);
+	}
+
+	/**
+	 * @param name -- the name of a point
+	 * @return the stored point with that name (null if there is none)
+	 */
+	public Point get(String name)
+	{
+		return _names.get(name);
 	}
 
 	/**
@@ -153,7 +196,19 @@ public class PointNamingFactory
 	{
 		Point point = new Point(name,x,y);
 
-		_database.put(point, point);
+		// replace the existing (equal) point, if any, in its place
+		Point key = point;
+		Point existing = _index.remove(point);
+		if (existing != null)
+		{
+			key = _renamed.containsKey(existing) ? _renamed.remove(existing) : existing;
+			_renamed.put(point, key);
+			_names.remove(existing.getName(), existing);
+		}
+
+		_database.put(key, point);
+		_index.put(point, point);
+		_names.putIfAbsent(name, point);
 
 		return point;
 	}
@@ -220,38 +275,33 @@ public class PointNamingFactory
 	}
 
 	/**
-	 * @return The entire database of points.
+	 * @return The entire database of points (a read-only view reflecting later changes).
 	 */
 	public Set<Point> getAllPoints()
 	{
-
-		Set<Point> points = new HashSet<Point>();
-
-		//loop through entire database to return set of points
-		for(Entry<Point,Point> entry: _database.entrySet()) {
-			points.add(entry.getKey());
-		}
-
-		return points;
+		return _points;
 	}
 
-	public void clear() { _database.clear(); }
+	public void clear()
+	{
+		_database.clear();
+		_index.clear();
+		_renamed.clear();
+		_names.clear();
+	}
 	
 	public int size() { return _database.size(); }
 
 	@Override
 	public String toString()
 	{
+		StringBuilder sb = new StringBuilder();
 
-		Set<Point> points = this.getAllPoints();
-		String returnString = "";
-
-		for(Point point: points) {
-			returnString += point.toString() + ", ";
+		for(Point point: _database.values()) {
+			if (sb.length() > 0) sb.append(", ");
+			sb.append(point);
 		}
 
-		returnString = returnString.substring(0, returnString.length()-2);
-
-		return returnString;
+		return sb.toString();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package geometry_objects.points;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns each distinct point a dense integer id: 0, 1, 2, ...
+ *
+ * The points of a PointDatabase are registered first; other points
+ * (e.g., implicit points) receive ids as they are registered.
+ * Points equal to a registered point share its id.
+ *
+ * Ids allow objects built from points (such as segments) to be keyed
+ * by primitive values rather than hashed through Point.
+ */
+public class PointRegistry
+{
+	public static final int UNREGISTERED = -1;
+
+	// id -> point (the first instance registered)
+	protected List<Point> _points;
+
+	// Lookups by instance (the common case: database objects) and by coordinates
+	protected Map<Point, Integer> _byInstance;
+	protected SnappingPointMap<Integer> _byCoordinates;
+
+	public PointRegistry()
+	{
+		_points = new ArrayList<Point>();
+		_byInstance = new IdentityHashMap<Point, Integer>();
+		_byCoordinates = new SnappingPointMap<Integer>();
+	}
+
+	/**
+	 * @param database -- a database of points; each of its points is registered
+	 */
+	public PointRegistry(PointDatabase database)
+	{
+		this();
+
+		for (Point pt : database.getPoints()) register(pt);
+	}
+
+	public int size() { return _points.size(); }
+
+	/**
+	 * @param id -- an id returned by register
+	 * @return the registered point
+	 */
+	public Point get(int id) { return _points.get(id); }
+
+	/**
+	 * @param pt -- a point
+	 * @return the id of the point (assigning the next id if it is not yet registered)
+	 */
+	public int register(Point pt)
+	{
+		int id = idOf(pt);
+		if (id != UNREGISTERED) return id;
+
+		id = _points.size();
+		_points.add(pt);
+		_byInstance.put(pt, id);
+		_byCoordinates.put(pt, id);
+
+		return id;
+	}
+
+	/**
+	 * @param pt -- a point
+	 * @return the id of the point; UNREGISTERED if the point is not registered
+	 */
+	public int idOf(Point pt)
+	{
+		Integer id = _byInstance.get(pt);
+		if (id == null) id = _byCoordinates.get(pt);
+
+		return id == null ? UNREGISTERED : id;
+	}
+
+	public void clear()
+	{
+		_points.clear();
+		_byInstance.clear();
+		_byCoordinates.clear();
+	}
+}
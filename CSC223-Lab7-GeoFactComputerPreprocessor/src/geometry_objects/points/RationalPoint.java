@@ -0,0 +1,96 @@
+package geometry_objects.points;
+
+import java.math.BigInteger;
+
+/**
+ * An exact point (x / denominator, y / denominator) with integer numerators,
+ * kept in lowest terms with a positive denominator. Equal points have equal
+ * representations, so equals and hashCode are exact (no tolerance).
+ *
+ * Coordinates are in the grid units of a FixedPointContext, which converts
+ * a RationalPoint to a Point on demand.
+ */
+public class RationalPoint
+{
+	private final BigInteger _x;
+	private final BigInteger _y;
+	private final BigInteger _denominator;
+
+	public BigInteger getXNumerator() { return _x; }
+	public BigInteger getYNumerator() { return _y; }
+	public BigInteger getDenominator() { return _denominator; }
+
+	/**
+	 * @param x, y -- integer coordinates
+	 */
+	public RationalPoint(long x, long y)
+	{
+		this(BigInteger.valueOf(x), BigInteger.valueOf(y), BigInteger.ONE);
+	}
+
+	/**
+	 * @param x, y -- numerators of the coordinates
+	 * @param denominator -- the common (nonzero) denominator
+	 */
+	public RationalPoint(long x, long y, long denominator)
+	{
+		if (denominator == 0) throw new ArithmeticException("Zero denominator");
+
+		long gcd = gcd(gcd(Math.abs(x), Math.abs(y)), Math.abs(denominator));
+		if (denominator < 0) gcd = -gcd;
+
+		_x = BigInteger.valueOf(x / gcd);
+		_y = BigInteger.valueOf(y / gcd);
+		_denominator = BigInteger.valueOf(denominator / gcd);
+	}
+
+	/**
+	 * @param x, y -- numerators of the coordinates
+	 * @param denominator -- the common (nonzero) denominator
+	 */
+	public RationalPoint(BigInteger x, BigInteger y, BigInteger denominator)
+	{
+		if (denominator.signum() == 0) throw new ArithmeticException("Zero denominator");
+
+		BigInteger gcd = x.gcd(y).gcd(denominator);
+		if (denominator.signum() < 0) gcd = gcd.negate();
+
+		_x = x.divide(gcd);
+		_y = y.divide(gcd);
+		_denominator = denominator.divide(gcd);
+	}
+
+	private static long gcd(long a, long b)
+	{
+		while (b != 0)
+		{
+			long r = a % b;
+			a = b;
+			b = r;
+		}
+		return a;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj) return true;
+		if (!(obj instanceof RationalPoint)) return false;
+
+		RationalPoint that = (RationalPoint)obj;
+
+		return _x.equals(that._x) && _y.equals(that._y) && _denominator.equals(that._denominator);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return (_x.hashCode() * 31 + _y.hashCode()) * 31 + _denominator.hashCode();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "(" + _x + ", " + _y + ") / " + _denominator;
+	}
+}
@@ -0,0 +1,177 @@
+package geometry_objects.points;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import utilities.math.MathUtilities;
+
+/**
+ * A map keyed by point coordinates (x, y) that agrees with Point.equals:
+ * a lookup finds a key within EPSILON of the query in each coordinate.
+ *
+ * Point.hashCode truncates coordinates, so two equal points may hash
+ * differently (e.g., 0.1999999 and 0.2000001). Here keys are instead
+ * snapped to a grid of cells of width 2 * EPSILON. A point equal to
+ * (x, y) lies in (x - EPSILON, x + EPSILON) X (y - EPSILON, y + EPSILON),
+ * which covers at most 2 X 2 cells; a lookup probes only those cells.
+ *
+ * If several keys equal the query (keys closer than 2 * EPSILON to one
+ * another), the nearest one is found.
+ *
+ * @param <V> -- the type of value
+ */
+public class SnappingPointMap<V>
+{
+	private static final double CELL_SIZE = 2 * MathUtilities.EPSILON;
+
+	// A key (x, y) and its value
+	private static class Entry<V>
+	{
+		private final double _x;
+		private final double _y;
+		private V _value;
+
+		Entry(double x, double y, V value)
+		{
+			_x = x;
+			_y = y;
+			_value = value;
+		}
+	}
+
+	// Cell -> the entries whose keys snap to the cell
+	protected Map<Long, List<Entry<V>>> _cells;
+	protected int _size;
+
+	public SnappingPointMap()
+	{
+		this(16);
+	}
+
+	/**
+	 * @param expectedSize -- the number of keys expected (to presize the table)
+	 */
+	public SnappingPointMap(int expectedSize)
+	{
+		_cells = new HashMap<Long, List<Entry<V>>>(Math.max(16, (int)(expectedSize / 0.75f) + 1));
+		_size = 0;
+	}
+
+	public int size() { return _size; }
+
+	public boolean containsKey(double x, double y) { return find(x, y) != null; }
+	public boolean containsKey(Point pt) { return containsKey(pt.getX(), pt.getY()); }
+
+	/**
+	 * @return the value of the key equal to (x, y); null if there is none
+	 */
+	public V get(double x, double y)
+	{
+		Entry<V> entry = find(x, y);
+
+		return entry == null ? null : entry._value;
+	}
+
+	public V get(Point pt) { return get(pt.getX(), pt.getY()); }
+
+	/**
+	 * Associate a value with (x, y); if a key equal to (x, y) is
+	 * stored, its value is replaced (and the stored key is kept).
+	 *
+	 * @return the previous value (null if there was none)
+	 */
+	public V put(double x, double y, V value)
+	{
+		Entry<V> entry = find(x, y);
+
+		if (entry != null)
+		{
+			V previous = entry._value;
+			entry._value = value;
+			return previous;
+		}
+
+		_cells.computeIfAbsent(key(cell(x), cell(y)), k -> new ArrayList<Entry<V>>(1))
+		      .add(new Entry<V>(x, y, value));
+		_size++;
+
+		return null;
+	}
+
+	public V put(Point pt, V value) { return put(pt.getX(), pt.getY(), value); }
+
+	/**
+	 * Remove the key equal to (x, y).
+	 *
+	 * @return the value removed (null if there was none)
+	 */
+	public V remove(double x, double y)
+	{
+		Entry<V> entry = find(x, y);
+		if (entry == null) return null;
+
+		long key = key(cell(entry._x), cell(entry._y));
+		List<Entry<V>> entries = _cells.get(key);
+
+		entries.remove(entry);
+		if (entries.isEmpty()) _cells.remove(key);
+		_size--;
+
+		return entry._value;
+	}
+
+	public V remove(Point pt) { return remove(pt.getX(), pt.getY()); }
+
+	public void clear()
+	{
+		_cells.clear();
+		_size = 0;
+	}
+
+	/*
+	 * @return the entry whose key is equal (and nearest) to (x, y); null if there is none
+	 */
+	private Entry<V> find(double x, double y)
+	{
+		Entry<V> nearest = null;
+		double nearestDistance = Double.POSITIVE_INFINITY;
+
+		for (long col = cell(x - MathUtilities.EPSILON); col <= cell(x + MathUtilities.EPSILON); col++)
+		{
+			for (long row = cell(y - MathUtilities.EPSILON); row <= cell(y + MathUtilities.EPSILON); row++)
+			{
+				List<Entry<V>> entries = _cells.get(key(col, row));
+				if (entries == null) continue;
+
+				for (Entry<V> entry : entries)
+				{
+					double dx = entry._x - x;
+					double dy = entry._y - y;
+
+					if (!MathUtilities.doubleEquals(entry._x, x)) continue;
+					if (!MathUtilities.doubleEquals(entry._y, y)) continue;
+
+					if (dx * dx + dy * dy < nearestDistance)
+					{
+						nearest = entry;
+						nearestDistance = dx * dx + dy * dy;
+					}
+				}
+			}
+		}
+
+		return nearest;
+	}
+
+	private static long cell(double coordinate)
+	{
+		return (long)Math.floor(coordinate / CELL_SIZE);
+	}
+
+	private static long key(long col, long row)
+	{
+		return col * 0x9E3779B97F4A7C15L + row;
+	}
+}
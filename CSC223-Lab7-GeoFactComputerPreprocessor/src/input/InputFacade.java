@@ -2,6 +2,7 @@ package input;
 
 //import static org.junit.jupiter.api.Assertions.*; ????
 
+import java.io.IOException;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
@@ -15,11 +16,13 @@ import geometry_objects.points.PointDatabase;
 import geometry_objects.points.PointNamingFactory;
 import geometry_objects.Segment;
 import input.builder.GeometryBuilder;
+import input.builder.GeometryRepresentationBuilder;
 import input.components.ComponentNode;
 import input.components.FigureNode;
 import input.components.point.PointNode;
 import input.components.segment.SegmentNode;
-import input.parser.JSONParser;
+import input.exception.ParseException;
+import input.parser.StreamingFigureParser;
 import utilities.io.FileUtilities;
 
 public class InputFacade
@@ -32,15 +35,43 @@ public class InputFacade
 	 */
 	public static FigureNode extractFigure(String filename)
 	{
-		JSONParser parser = new JSONParser(new GeometryBuilder());
-		
-		String figureStr = utilities.io.FileUtilities.readFileFilterComments(filename);
-		
-		
-		
-		return (FigureNode)parser.parse(figureStr);
+		StreamingFigureParser parser = new StreamingFigureParser(new GeometryBuilder());
+
+		// The file is mapped and read in place
+		try
+		{
+			return (FigureNode)parser.parse(FileUtilities.mapFileFilterComments(filename));
+		}
+		catch (IOException e)
+		{
+			throw new ParseException(e);
+		}
 	}
 	
+	/**
+	 * Acquire the geometry representation of a figure from the given JSON
+	 * file in one pass: points and segments are built as they are parsed,
+	 * without a FigureNode (see toGeometryRepresentation).
+	 *
+	 * @param filename -- the name of a file
+	 * @return a pair <set of points as a database, set of segments>
+	 */
+	public static Map.Entry<PointDatabase, Set<Segment>> extractGeometry(String filename)
+	{
+		GeometryRepresentationBuilder builder = new GeometryRepresentationBuilder();
+
+		try
+		{
+			new StreamingFigureParser(builder).parse(FileUtilities.mapFileFilterComments(filename));
+		}
+		catch (IOException e)
+		{
+			throw new ParseException(e);
+		}
+
+		return builder.getGeometry();
+	}
+
 	/**
 	 * 1) Read in a figure from a JSON file.
 	 * 2) Convert the PointNode and SegmentNode objects to a Point and Segment objects 
@@ -51,21 +82,20 @@ public class InputFacade
 	 */
 	public static Map.Entry<PointDatabase, Set<Segment>> toGeometryRepresentation(FigureNode figure)
 	{		
-		//change PointNodes in PointNodeDatabase into Points, then add to PointDatabase
-		PointDatabase pointData = new PointDatabase();
+		//change PointNodes in PointNodeDatabase into Points, then bulk load them into a PointDatabase
+		List<Point> points = new ArrayList<Point>();
 		
 		for(PointNode p: figure.getPointsDatabase().getPoints()) {
-			pointData.put(p.getName(),p.getX(),p.getY());
+			points.add(new Point(p.getName(),p.getX(),p.getY()));
 		}
 		
-		//change SegmentNodes into Segments, then add to a LinkedHashSet
+		PointDatabase pointData = new PointDatabase(points);
+		
+		//change SegmentNodes into Segments (over the database's points), then add to a LinkedHashSet
 		Set<Segment> segments = new LinkedHashSet<Segment>();
 		for(SegmentNode seg: figure.getSegments().asSegmentList()) {
-			PointNode pointNode1 = seg.getPoint1();
-			PointNode pointNode2 = seg.getPoint2();
-			
-			Point point1 = new Point(pointNode1.getName(),pointNode1.getX(),pointNode1.getY());
-			Point point2 = new Point(pointNode2.getName(),pointNode2.getX(),pointNode2.getY());
+			Point point1 = toDatabasePoint(pointData, seg.getPoint1());
+			Point point2 = toDatabasePoint(pointData, seg.getPoint2());
 			
 			Segment segment = new Segment(point1,point2);
 			segments.add(segment);
@@ -74,4 +104,15 @@ public class InputFacade
 		return new AbstractMap.SimpleEntry<PointDatabase, Set<Segment>>(pointData, segments);
 
 	}
+
+	/*
+	 * The database's instance of a point, so that equal points are one object
+	 * (a new point only if the database lacks it)
+	 */
+	private static Point toDatabasePoint(PointDatabase pointData, PointNode node)
+	{
+		Point pt = pointData.getPoint(node.getName(), node.getX(), node.getY());
+
+		return pt != null ? pt : new Point(node.getName(), node.getX(), node.getY());
+	}
 }
@@ -0,0 +1,66 @@
+/**
+ * Builds the geometry representation of a figure (see
+ * InputFacade.toGeometryRepresentation) directly while it is parsed: points
+ * go straight into a PointDatabase and segments into a set of Segments over
+ * the database's points. No FigureNode, node databases or SegmentNodes are
+ * built.
+ *
+ * For use with StreamingFigureParser (which only needs the point nodes to
+ * look points up by name while parsing).
+ */
+
+package input.builder;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+import geometry_objects.points.PointDatabase;
+import input.components.point.PointNode;
+import input.components.segment.SegmentNodeDatabase;
+
+public class GeometryRepresentationBuilder extends DefaultBuilder
+{
+	protected PointDatabase _points;
+	protected Set<Segment> _segments;
+
+	public GeometryRepresentationBuilder()
+	{
+		_points = new PointDatabase();
+		_segments = new LinkedHashSet<Segment>();
+	}
+
+	public PointDatabase getPoints() { return _points; }
+	public Set<Segment> getSegments() { return _segments; }
+
+	/**
+	 * @return a pair <set of points as a database, set of segments>
+	 */
+	public Map.Entry<PointDatabase, Set<Segment>> getGeometry()
+	{
+		return new AbstractMap.SimpleEntry<PointDatabase, Set<Segment>>(_points, _segments);
+	}
+
+	@Override
+	public PointNode buildPointNode(String name, double x, double y)
+	{
+		_points.put(name, x, y);
+
+		return new PointNode(name, x, y);
+	}
+
+	@Override
+	public void addSegmentToDatabase(SegmentNodeDatabase segments, PointNode from, PointNode to)
+	{
+		if (from.getName().compareTo(to.getName()) < 0) _segments.add(new Segment(lookup(from), lookup(to)));
+		else _segments.add(new Segment(lookup(to), lookup(from)));
+	}
+
+	private Point lookup(PointNode node)
+	{
+		return _points.getPoint(node.getName(), node.getX(), node.getY());
+	}
+}
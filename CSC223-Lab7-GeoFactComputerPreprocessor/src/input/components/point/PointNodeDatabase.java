@@ -1,12 +1,16 @@
 package input.components.point;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import geometry_objects.points.SnappingPointMap;
 import input.components.ComponentNode;
 import input.visitor.ComponentNodeVisitor;
-import utilities.math.MathUtilities;
 
 /**
  * Stores Point Nodes in LinkedHashSet
@@ -16,17 +20,24 @@ import utilities.math.MathUtilities;
 public class PointNodeDatabase implements ComponentNode {
 	protected Set<PointNode> _points;
 
+	// Indices of the nodes by name and by coordinates (within epsilon)
+	protected Map<String, PointNode> _names;
+	protected SnappingPointMap<PointNode> _coordinates;
+
 	/**
 	 * create empty PointNodeDataBase
 	 */
 	public PointNodeDatabase() {
 
-		_points = new TreeSet<PointNode>();
+		this(new ArrayList<PointNode>());
 
 	}
 	
+	/**
+	 * @return the nodes ordered by name (read-only)
+	 */
 	public Set<PointNode> getPoints(){
-		return _points;
+		return Collections.unmodifiableSet(_points);
 	}
 	
 	/**
@@ -35,15 +46,22 @@ public class PointNodeDatabase implements ComponentNode {
 	 */
 	public PointNodeDatabase(List<PointNode> list) {
 
-		_points = new TreeSet<PointNode>(list);
+		_points = new TreeSet<PointNode>();
+		_names = new HashMap<String, PointNode>(Math.max(16, (int)(list.size() / 0.75f) + 1));
+		_coordinates = new SnappingPointMap<PointNode>(list.size());
+
+		for (PointNode node : list) put(node);
 
 	}
 	
 	/**
-	 * @param node to put into database
+	 * @param node to put into database (ignored if a node with the same name exists)
 	 */
 	public void put(PointNode node) {
-		_points.add(node);
+		if (!_points.add(node)) return;
+
+		_names.put(node.getName(), node);
+		if (!_coordinates.containsKey(node.getX(), node.getY())) _coordinates.put(node.getX(), node.getY(), node);
 	}
 
 	/**
@@ -102,13 +120,7 @@ public class PointNodeDatabase implements ComponentNode {
 	 * @return node to get
 	 */
 	public PointNode getPoint(double x, double y) {
-		for (PointNode p: this._points) {
-			if (MathUtilities.doubleEquals(x,p.getX()) && MathUtilities.doubleEquals(y, p.getY())) {
-				return p;
-			}
-		}
-		return null;
-
+		return _coordinates.get(x, y);
 	}
 	
 	/**
@@ -118,11 +130,7 @@ public class PointNodeDatabase implements ComponentNode {
 	 * @return node to get
 	 */
 	public PointNode getPoint(String name) {
-		for (PointNode p: this._points) {
-			if (p._name.equals(name)) return p;
-		}
-		return null;
-
+		return _names.get(name);
 	}
 
 	@Override
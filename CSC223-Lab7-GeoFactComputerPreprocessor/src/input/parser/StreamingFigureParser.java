@@ -0,0 +1,594 @@
+/**
+ * Parses a figure (see JSONParser for the format) as it is read: the builder
+ * is called as each point and segment arrives, so neither the text nor a
+ * JSON tree of it is ever held in memory.
+ *
+ * The input may contain '//' comments (outside strings) and a trailing comma
+ * after the last element of an array or member of an object, as the figure
+ * files do; otherwise it must be JSON (commas between elements, nothing
+ * after the root object). Coordinates may be any JSON
+ * number (not only integers). Members of the figure other than
+ * Description, Points and Segments are skipped.
+ */
+
+package input.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import input.builder.DefaultBuilder;
+import input.components.ComponentNode;
+import input.components.point.PointNode;
+import input.components.point.PointNodeDatabase;
+import input.components.segment.SegmentNodeDatabase;
+import input.exception.ParseException;
+
+public class StreamingFigureParser
+{
+	private static final int EOF = -1;
+
+	// Powers of ten exactly representable as doubles
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			                                        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+			                                        1e21, 1e22 };
+
+	protected DefaultBuilder _builder;
+
+	// Input: _buffer[_position, _limit) not yet consumed, refilled from
+	// the reader or from the text (at _offset)
+	private Reader _reader;
+	private CharSequence _source;
+	private int _offset;
+	private final char[] _buffer;
+	private int _position;
+	private int _limit;
+	private int _line;
+
+	// True just after an opening brace / bracket (the next element is the first)
+	private boolean _opened;
+
+	// Scratch for strings and numbers
+	private final StringBuilder _text;
+	private char[] _number;
+
+	public StreamingFigureParser(DefaultBuilder builder)
+	{
+		_builder = builder;
+
+		_buffer = new char[1 << 13];
+		_text = new StringBuilder();
+		_number = new char[32];
+	}
+
+	/**
+	 * @param channel -- UTF-8 encoded figure
+	 * @return the root of the figure built by the builder
+	 * @throws ParseException
+	 */
+	public ComponentNode parse(ReadableByteChannel channel) throws ParseException
+	{
+		return parse(Channels.newReader(channel, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param reader -- a figure (read in blocks; it need not be buffered)
+	 * @return the root of the figure built by the builder
+	 * @throws ParseException
+	 */
+	public ComponentNode parse(Reader reader) throws ParseException
+	{
+		_reader = reader;
+		try { return parse(); }
+		finally { _reader = null; }
+	}
+
+	/**
+	 * @param text -- a figure; read in blocks, so a mapped file (see
+	 *                FileUtilities.mapFileFilterComments) is never copied whole
+	 * @return the root of the figure built by the builder
+	 * @throws ParseException
+	 */
+	public ComponentNode parse(CharSequence text) throws ParseException
+	{
+		_source = text;
+		_offset = 0;
+		try { return parse(); }
+		finally { _source = null; }
+	}
+
+	private ComponentNode parse()
+	{
+		_position = 0;
+		_limit = 0;
+		_line = 1;
+
+		try
+		{
+			ComponentNode figure = null;
+			boolean found = false;
+
+			expect('{');
+			while (nextMember())
+			{
+				if (readString().equals(JSON_Constants.JSON_FIGURE) && !found)
+				{
+					expect(':');
+					figure = parseFigure();
+					found = true;
+				}
+				else
+				{
+					expect(':');
+					skipValue();
+				}
+			}
+
+			if (!found) error("no " + JSON_Constants.JSON_FIGURE);
+			if (peek() != EOF) error("unexpected " + describe(peek()) + " after the figure");
+
+			return figure;
+		}
+		catch (UncheckedIOException e)
+		{
+			throw new ParseException(e.getCause());
+		}
+	}
+
+	/*
+	 * Members may come in any order; segments listed before the points are
+	 * kept (as names) until the points are known.
+	 */
+	private ComponentNode parseFigure()
+	{
+		String description = null;
+		PointNodeDatabase points = null;
+		Map<String, PointNode> named = null;
+		SegmentNodeDatabase segments = null;
+		List<String> pending = null;
+
+		expect('{');
+		while (nextMember())
+		{
+			String key = readString();
+			expect(':');
+
+			if (key.equals(JSON_Constants.JSON_DESCRIPTION)) description = readString();
+
+			else if (key.equals(JSON_Constants.JSON_POINT_S))
+			{
+				named = new HashMap<String, PointNode>();
+				points = parsePoints(named);
+			}
+
+			else if (key.equals(JSON_Constants.JSON_SEGMENTS))
+			{
+				segments = _builder.buildSegmentNodeDatabase();
+				pending = new ArrayList<String>();
+				parseSegments(segments, points, named, pending);
+			}
+
+			else skipValue();
+		}
+
+		if (description == null) error("no " + JSON_Constants.JSON_DESCRIPTION);
+		if (named == null) error("no " + JSON_Constants.JSON_POINT_S);
+		if (pending == null) error("no " + JSON_Constants.JSON_SEGMENTS);
+
+		for (int k = 0; k < pending.size(); k += 2)
+		{
+			addSegment(segments, points, named, pending.get(k), pending.get(k + 1));
+		}
+
+		return _builder.buildFigureNode(description, points, segments);
+	}
+
+	/*
+	 * [ { "name" : "A", "x" : 0, "y" : 0 }, ... ]
+	 */
+	private PointNodeDatabase parsePoints(Map<String, PointNode> named)
+	{
+		List<PointNode> pointsToAdd = new ArrayList<PointNode>();
+
+		expect('[');
+		while (nextElement())
+		{
+			String name = null;
+			double x = Double.NaN;
+			double y = Double.NaN;
+
+			expect('{');
+			while (nextMember())
+			{
+				String key = readString();
+				expect(':');
+
+				if (key.equals(JSON_Constants.JSON_NAME)) name = readString();
+				else if (key.equals(JSON_Constants.JSON_X)) x = readNumber();
+				else if (key.equals(JSON_Constants.JSON_Y)) y = readNumber();
+				else skipValue();
+			}
+
+			if (name == null || Double.isNaN(x) || Double.isNaN(y)) error("a point needs a name, x and y");
+
+			PointNode point = _builder.buildPointNode(name, x, y);
+			pointsToAdd.add(point);
+			named.put(name, point);
+		}
+
+		return _builder.buildPointDatabaseNode(pointsToAdd);
+	}
+
+	/*
+	 * [ { "A" : ["B", "C"] }, ... ]
+	 */
+	private void parseSegments(SegmentNodeDatabase segments, PointNodeDatabase points,
+			                   Map<String, PointNode> named, List<String> pending)
+	{
+		expect('[');
+		while (nextElement())
+		{
+			expect('{');
+			while (nextMember())
+			{
+				String from = readString();
+				expect(':');
+
+				expect('[');
+				while (nextElement())
+				{
+					String to = readString();
+
+					if (named == null)
+					{
+						pending.add(from);
+						pending.add(to);
+					}
+					else addSegment(segments, points, named, from, to);
+				}
+			}
+		}
+	}
+
+	private void addSegment(SegmentNodeDatabase segments, PointNodeDatabase points,
+			                Map<String, PointNode> named, String from, String to)
+	{
+		PointNode start = lookup(points, named, from);
+		PointNode end = lookup(points, named, to);
+
+		_builder.addSegmentToDatabase(segments, start, end);
+	}
+
+	/*
+	 * The point as the database has it (the node built for the name if there is no database)
+	 */
+	private PointNode lookup(PointNodeDatabase points, Map<String, PointNode> named, String name)
+	{
+		if (!named.containsKey(name)) error("unknown point " + name);
+
+		return points != null ? points.getPoint(name) : named.get(name);
+	}
+
+	//
+	// Tokens
+	//
+
+	/*
+	 * Within an object: position at the key of the next member.
+	 * @return false at the closing brace (consumed)
+	 */
+	private boolean nextMember()
+	{
+		return nextIn('}');
+	}
+
+	/*
+	 * Within an array: position at the next element.
+	 * @return false at the closing bracket (consumed)
+	 */
+	private boolean nextElement()
+	{
+		return nextIn(']');
+	}
+
+	/*
+	 * Elements are separated by commas; the first is not preceded by one,
+	 * and a comma may trail the last.
+	 */
+	private boolean nextIn(char close)
+	{
+		boolean first = _opened;
+		_opened = false;
+
+		int c = peek();
+		if (!first && c != close)
+		{
+			if (c != ',') error("expected ',' or '" + close + "' but found " + describe(c));
+
+			_position++;
+			c = peek();
+		}
+
+		if (c == close)
+		{
+			_position++;
+			return false;
+		}
+
+		if (c == EOF) error("unexpected end of input");
+
+		return true;
+	}
+
+	private void expect(char expected)
+	{
+		int c = peek();
+		if (c != expected) error("expected '" + expected + "' but found " + describe(c));
+
+		_position++;
+		_opened = expected == '{' || expected == '[';
+	}
+
+	/*
+	 * @return the next character that is not white space or in a comment (not consumed)
+	 */
+	private int peek()
+	{
+		while (true)
+		{
+			if (_position == _limit && !fill()) return EOF;
+
+			char c = _buffer[_position];
+
+			if (c == '\n') _line++;
+
+			if (c == ' ' || c == '\t' || c == '\n' || c == '\r') _position++;
+
+			else if (c == '/')
+			{
+				_position++;
+				if (read() != '/') error("expected a comment");
+
+				// Skip to the end of the line
+				int skipped;
+				while ((skipped = read()) != EOF && skipped != '\n') { }
+				if (skipped == '\n') _line++;
+			}
+
+			else return c;
+		}
+	}
+
+	/*
+	 * @return the next character (consumed)
+	 */
+	private int read()
+	{
+		if (_position == _limit && !fill()) return EOF;
+
+		return _buffer[_position++];
+	}
+
+	private boolean fill()
+	{
+		if (_source != null) return fillFromSource();
+
+		try
+		{
+			int count = _reader.read(_buffer, 0, _buffer.length);
+			if (count <= 0) return false;
+
+			_position = 0;
+			_limit = count;
+
+			return true;
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private boolean fillFromSource()
+	{
+		int count = Math.min(_buffer.length, _source.length() - _offset);
+		if (count <= 0) return false;
+
+		for (int k = 0; k < count; k++) _buffer[k] = _source.charAt(_offset + k);
+
+		_offset += count;
+		_position = 0;
+		_limit = count;
+
+		return true;
+	}
+
+	private String readString()
+	{
+		expect('"');
+
+		_text.setLength(0);
+		while (true)
+		{
+			int c = read();
+
+			if (c == '"') return _text.toString();
+			if (c == EOF || c == '\n') error("unterminated string");
+
+			if (c == '\\') c = readEscape();
+
+			_text.append((char)c);
+		}
+	}
+
+	private int readEscape()
+	{
+		int c = read();
+		switch (c)
+		{
+			case '"':
+			case '\\':
+			case '/':  return c;
+			case 'b':  return '\b';
+			case 'f':  return '\f';
+			case 'n':  return '\n';
+			case 'r':  return '\r';
+			case 't':  return '\t';
+			case 'u':
+				int code = 0;
+				for (int k = 0; k < 4; k++)
+				{
+					int digit = Character.digit(read(), 16);
+					if (digit < 0) error("bad unicode escape");
+					code = 16 * code + digit;
+				}
+				return code;
+			default:
+				error("bad escape " + describe(c));
+				return c;
+		}
+	}
+
+	/*
+	 * A JSON number; integers and decimals of up to 15 significant digits
+	 * (with a scale of at most 22) are computed exactly with one multiplication
+	 * or division; others are handed to Double.parseDouble.
+	 */
+	private double readNumber()
+	{
+		peek();
+
+		int length = 0;
+		while (true)
+		{
+			if (_position == _limit && !fill()) break;
+
+			char c = _buffer[_position];
+			if (!(c >= '0' && c <= '9' || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E')) break;
+
+			if (length == _number.length) _number = Arrays.copyOf(_number, 2 * length);
+			_number[length++] = c;
+			_position++;
+		}
+
+		if (length == 0) error("expected a number but found " + describe(peek()));
+
+		double value = fastNumber(_number, length);
+		if (!Double.isNaN(value)) return value;
+
+		try { return Double.parseDouble(new String(_number, 0, length)); }
+		catch (NumberFormatException e)
+		{
+			error("bad number " + new String(_number, 0, length));
+			return Double.NaN;
+		}
+	}
+
+	/*
+	 * @return the value of [-]digits[.digits]; NaN if the number is not of
+	 *         that form or is not exact in the fast path
+	 */
+	private static double fastNumber(char[] number, int length)
+	{
+		int k = 0;
+		boolean negative = number[0] == '-';
+		if (negative) k++;
+
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean point = false;
+		boolean any = false;
+
+		for ( ; k < length; k++)
+		{
+			char c = number[k];
+
+			if (c == '.')
+			{
+				if (point) return Double.NaN;
+				point = true;
+				continue;
+			}
+
+			if (c < '0' || c > '9') return Double.NaN;
+
+			any = true;
+			if (mantissa == 0 && c == '0')
+			{
+				// Leading zeros are not significant
+				if (point) scale++;
+				continue;
+			}
+
+			if (++digits > 15) return Double.NaN;
+
+			mantissa = 10 * mantissa + (c - '0');
+			if (point) scale++;
+		}
+
+		if (!any || scale >= POWERS_OF_TEN.length) return Double.NaN;
+
+		double value = mantissa / POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	}
+
+	private void skipValue()
+	{
+		int c = peek();
+
+		if (c == '"') readString();
+
+		else if (c == '{')
+		{
+			expect('{');
+			while (nextMember())
+			{
+				readString();
+				expect(':');
+				skipValue();
+			}
+		}
+
+		else if (c == '[')
+		{
+			expect('[');
+			while (nextElement()) skipValue();
+		}
+
+		else if (c == '-' || (c >= '0' && c <= '9')) readNumber();
+
+		else if (c == 't' || c == 'f' || c == 'n')
+		{
+			// true, false, null
+			while (Character.isLetter(peekRaw())) _position++;
+		}
+
+		else error("unexpected " + describe(c));
+	}
+
+	private int peekRaw()
+	{
+		if (_position == _limit && !fill()) return EOF;
+
+		return _buffer[_position];
+	}
+
+	private static String describe(int c)
+	{
+		return c == EOF ? "end of input" : "'" + (char)c + "'";
+	}
+
+	private void error(String message) throws ParseException
+	{
+		throw new ParseException("Parse error (line " + _line + "): " + message);
+	}
+}
@@ -0,0 +1,56 @@
+package preprocessor;
+
+import java.util.Set;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+
+/**
+ * The outcome of an analysis under a time budget or cancellation
+ * (see Preprocessor.analyze(AnalysisControl)): how it ended, the last
+ * phase completed and the results of the completed phases.
+ *
+ * The result of a phase not completed is null; the results of completed
+ * phases are unmodifiable views of the preprocessor.
+ */
+public class AnalysisResult
+{
+	public enum Status { COMPLETE, TIMED_OUT, CANCELLED }
+
+	protected Status _status;
+	protected Preprocessor.Phase _completed;
+
+	protected Set<Point> _implicitPoints;
+	protected Set<Segment> _implicitSegments;
+	protected Set<Segment> _minimalSegments;
+	protected Set<Segment> _nonMinimalSegments;
+
+	public AnalysisResult(Status status, Preprocessor.Phase completed, Set<Point> implicitPoints,
+			              Set<Segment> implicitSegments, Set<Segment> minimalSegments, Set<Segment> nonMinimalSegments)
+	{
+		_status = status;
+		_completed = completed;
+
+		_implicitPoints = implicitPoints;
+		_implicitSegments = implicitSegments;
+		_minimalSegments = minimalSegments;
+		_nonMinimalSegments = nonMinimalSegments;
+	}
+
+	public Status getStatus() { return _status; }
+	public boolean isComplete() { return _status == Status.COMPLETE; }
+
+	// The last phase completed (NONE if none was)
+	public Preprocessor.Phase getCompletedPhase() { return _completed; }
+
+	public Set<Point> getImplicitPoints() { return _implicitPoints; }
+	public Set<Segment> getImplicitSegments() { return _implicitSegments; }
+	public Set<Segment> getMinimalSegments() { return _minimalSegments; }
+	public Set<Segment> getNonMinimalSegments() { return _nonMinimalSegments; }
+
+	@Override
+	public String toString()
+	{
+		return _status + " (completed: " + _completed + ")";
+	}
+}
@@ -0,0 +1,31 @@
+package preprocessor;
+
+/**
+ * The size of a preprocessed figure (see Preprocessor.count).
+ */
+public class FigureCounts
+{
+	protected int _implicitPoints;
+	protected int _minimalSegments;
+	protected long _segments;
+
+	public FigureCounts(int implicitPoints, int minimalSegments, long segments)
+	{
+		_implicitPoints = implicitPoints;
+		_minimalSegments = minimalSegments;
+		_segments = segments;
+	}
+
+	public int getImplicitPointCount() { return _implicitPoints; }
+	public int getMinimalSegmentCount() { return _minimalSegments; }
+	public long getNonMinimalSegmentCount() { return _segments - _minimalSegments; }
+
+	// The size of the segment database: minimal and non-minimal segments
+	public long getSegmentCount() { return _segments; }
+
+	@Override
+	public String toString()
+	{
+		return "implicit points " + _implicitPoints + " minimal segments " + _minimalSegments + " segments " + _segments;
+	}
+}
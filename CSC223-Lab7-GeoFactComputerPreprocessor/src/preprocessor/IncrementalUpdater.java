@@ -0,0 +1,764 @@
+package preprocessor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import geometry_objects.Segment;
+import geometry_objects.delegates.intersections.IntersectionDelegate;
+import geometry_objects.points.Point;
+import geometry_objects.points.RationalPoint;
+import geometry_objects.points.SnappingPointMap;
+import preprocessor.delegates.DynamicGrid;
+import preprocessor.delegates.ImplicitPointIncidence;
+import preprocessor.delegates.LineChains;
+import preprocessor.delegates.SegmentGrid;
+import preprocessor.delegates.SegmentTable;
+import utilities.math.FixedPointContext;
+import utilities.math.MathUtilities;
+import utilities.math.analytic_geometry.GeometryUtilities;
+
+/**
+ * Bookkeeping that lets a Preprocessor absorb one edit at a time.
+ *
+ * Every minimal segment is attributed to the given segment that produced it:
+ *    * the pieces of a given segment split at its implicit points, or
+ *    * the given segment itself (when no other point lies on it).
+ * Non-minimal segments are the spans of the chains of minimal segments.
+ *
+ * An edit therefore only recomputes the contributions of the given segments
+ * it touches (the edited segment and the segments it crosses) and rebuilds
+ * only the chains those contributions belong to. Spatial hashes restrict
+ * the search for touched segments / points to the neighborhood of the edit.
+ *
+ * Results are those of analyze() on the edited figure, down to the instance
+ * of each point: pairs of given segments are taken in analyze()'s order
+ * (the given segments in the order added) and chains are walked in it.
+ * With a fixed-point precision, crossings are found as analyze() finds them:
+ * exactly, on the coordinates snapped to its grid.
+ */
+class IncrementalUpdater
+{
+	private final Preprocessor _pp;
+
+	private final DynamicGrid<Segment> _segmentGrid;
+	private final DynamicGrid<Point> _pointGrid;
+
+	// Given segment -> its stored instance / its position in the order the given segments were added
+	private final Map<Segment, Segment> _stored;
+	private final Map<Segment, Long> _order;
+	private long _nextOrder;
+
+	// Given segment -> (crossing given segment -> the crossing point)
+	private final Map<Segment, Map<Segment, Point>> _partners;
+
+	// Crossing point -> given segments through it (with the number of partners at that point)
+	private final Map<Point, Map<Segment, Integer>> _crossings;
+
+	// Crossing point -> the one instance of that point used in every collection
+	private final SnappingPointMap<Point> _crossingPoints;
+
+	// Crossing point -> the first pair (in analyze()'s order) crossing there; its intersection is the instance
+	private final Map<Point, Segment[]> _firstPair;
+
+	// The minimal segments contributed by each given segment
+	private final Map<Segment, List<Segment>> _implicitPieces;
+	private final Set<Segment> _selfMinimal;
+
+	private final Counts _implicitSegments;
+	private final Counts _minimalSegments;
+	private final Counts _nonMinimalSegments;
+
+	// Minimal segment -> the chain (ordered points along a line) containing it
+	private final Map<Segment, List<Point>> _chainOf;
+	private final SnappingPointMap<List<Segment>> _minimalAt;
+
+	/*
+	 * A multiset of segments remembering, for each segment touched by the
+	 * current edit, whether it was present before the edit.
+	 */
+	private static class Counts
+	{
+		private final Map<Segment, Integer> _counts = new HashMap<Segment, Integer>();
+		private final Map<Segment, Boolean> _before = new LinkedHashMap<Segment, Boolean>();
+
+		boolean contains(Segment seg) { return _counts.containsKey(seg); }
+
+		void increment(Segment seg)
+		{
+			_before.putIfAbsent(seg, contains(seg));
+			_counts.merge(seg, 1, Integer::sum);
+		}
+
+		void decrement(Segment seg)
+		{
+			_before.putIfAbsent(seg, contains(seg));
+			_counts.computeIfPresent(seg, (k, count) -> count == 1 ? null : count - 1);
+		}
+
+		/*
+		 * @return the segments (absent before the edit, present after) and clears the edit
+		 */
+		List<Segment> added()   { return changed(true); }
+		List<Segment> removed() { return changed(false); }
+
+		private List<Segment> changed(boolean present)
+		{
+			List<Segment> changed = new ArrayList<Segment>();
+			_before.forEach((seg, before) -> { if (before != present && contains(seg) == present) changed.add(seg); });
+			return changed;
+		}
+
+		void endEdit() { _before.clear(); }
+	}
+
+	IncrementalUpdater(Preprocessor pp)
+	{
+		_pp = pp;
+
+		List<Segment> given = new ArrayList<Segment>(pp._givenSegments);
+		double cellSize = given.isEmpty() ? 1 : new SegmentGrid(given).getCellSize();
+
+		_segmentGrid = new DynamicGrid<Segment>(cellSize);
+		_pointGrid = new DynamicGrid<Point>(cellSize);
+		_stored = new HashMap<Segment, Segment>();
+		_order = new HashMap<Segment, Long>();
+		_partners = new HashMap<Segment, Map<Segment, Point>>();
+		_crossings = new HashMap<Point, Map<Segment, Integer>>();
+		_crossingPoints = new SnappingPointMap<Point>();
+		_firstPair = new HashMap<Point, Segment[]>();
+		_implicitPieces = new HashMap<Segment, List<Segment>>();
+		_selfMinimal = new LinkedHashSet<Segment>();
+		_implicitSegments = new Counts();
+		_minimalSegments = new Counts();
+		_nonMinimalSegments = new Counts();
+		_chainOf = new HashMap<Segment, List<Point>>();
+		_minimalAt = new SnappingPointMap<List<Segment>>();
+
+		//
+		// Rebuild the preprocessor's collections from this bookkeeping so both agree
+		//
+		pp._implicitPoints.clear();
+		pp._segments.clear();
+		pp._segments.addAll(given, SegmentTable.GIVEN);
+
+		for (Point pt : pp._pointDatabase.getPoints()) addToGrid(pt);
+		for (Segment seg : given) addToGrid(seg);
+		for (Segment seg : given) store(seg);
+
+		// Record crossings in (i, j) order so implicit points keep the analyze() order
+		PreprocessorDelta ignored = new PreprocessorDelta();
+		Set<Segment> affected = new LinkedHashSet<Segment>(given);
+		for (Segment seg : given)
+		{
+			List<Segment> later = new ArrayList<Segment>();
+			for (Segment other : nearSegments(seg))
+			{
+				if (_order.get(other) > _order.get(seg)) later.add(other);
+			}
+
+			for (Segment other : inOrder(later)) recordCrossing(seg, other, ignored, affected);
+		}
+
+		update(affected, ignored);
+	}
+
+	PreprocessorDelta addSegment(Segment seg)
+	{
+		PreprocessorDelta delta = new PreprocessorDelta();
+		if (_pp._givenSegments.contains(seg)) return delta;
+
+		Set<Segment> affected = new LinkedHashSet<Segment>();
+
+		// Endpoints become points of the figure (the segment uses their stored instances)
+		addPoint(seg.getPoint1(), delta, affected);
+		addPoint(seg.getPoint2(), delta, affected);
+		seg = Preprocessor.withDatabasePoints(_pp._pointDatabase, seg);
+		store(seg);
+
+		// Every other given segment precedes the new one: pairs are (other, seg)
+		for (Segment other : inOrder(nearSegments(seg))) recordCrossing(other, seg, delta, affected);
+
+		_pp._givenSegments.add(seg);
+		_pp._segments.add(seg, SegmentTable.GIVEN);
+		addToGrid(seg);
+		affected.add(seg);
+
+		update(affected, delta);
+		return delta;
+	}
+
+	PreprocessorDelta removeSegment(Segment seg)
+	{
+		PreprocessorDelta delta = new PreprocessorDelta();
+		// Use the stored instance (the one keyed in the bookkeeping)
+		seg = _stored.get(seg);
+		if (seg == null) return delta;
+
+		Set<Segment> affected = new LinkedHashSet<Segment>();
+
+		Map<Segment, Point> partners = _partners.getOrDefault(seg, Collections.emptyMap());
+		for (Map.Entry<Segment, Point> entry : new ArrayList<Map.Entry<Segment, Point>>(partners.entrySet()))
+		{
+			unrecordCrossing(seg, entry.getKey(), entry.getValue(), delta);
+			affected.add(entry.getKey());
+		}
+		_partners.remove(seg);
+
+		// Crossing points first met by a pair with seg now take the next pair's intersection
+		for (Point pt : new LinkedHashSet<Point>(partners.values()))
+		{
+			Segment[] pair = _firstPair.get(pt);
+			if (pair != null && (pair[0] == seg || pair[1] == seg)) resetFirstPair(pt, affected);
+		}
+
+		_stored.remove(seg);
+		_order.remove(seg);
+		_pp._givenSegments.remove(seg);
+		_pp._segments.remove(seg, SegmentTable.GIVEN);
+		removeFromGrid(seg);
+		affected.add(seg);
+
+		update(affected, delta);
+		return delta;
+	}
+
+	PreprocessorDelta addPoint(String name, double x, double y)
+	{
+		PreprocessorDelta delta = new PreprocessorDelta();
+		Set<Segment> affected = new LinkedHashSet<Segment>();
+
+		addPoint(new Point(name, x, y), delta, affected);
+
+		update(affected, delta);
+		return delta;
+	}
+
+	/*
+	 * Add a named point to the database; collect the given segments it lies on.
+	 */
+	private void addPoint(Point pt, PreprocessorDelta delta, Set<Segment> affected)
+	{
+		if (_pp._pointDatabase.getPoint(pt) != null) return;
+
+		_pp._pointDatabase.put(pt.getName(), pt.getX(), pt.getY());
+		Point stored = _pp._pointDatabase.getPoint(pt);
+		addToGrid(stored);
+		delta.pointAdded(stored);
+
+		// A named point can no longer be implicit
+		Point implicit = _crossingPoints.get(stored);
+		if (implicit != null)
+		{
+			_pp._implicitPoints.remove(implicit);
+			delta.pointRemoved(implicit);
+			affected.addAll(_crossings.get(implicit).keySet());
+		}
+
+		for (Segment seg : _segmentGrid.near(stored.getX(), stored.getY(), stored.getX(), stored.getY()))
+		{
+			if (seg.pointLiesOnSegment(stored)) affected.add(seg);
+		}
+	}
+
+	/*
+	 * Record the crossing of two given segments (if any); a crossing pair is
+	 * collected in affected.
+	 * @param seg -- the given segment preceding other (see _order)
+	 */
+	private void recordCrossing(Segment seg, Segment other, PreprocessorDelta delta, Set<Segment> affected)
+	{
+		Point pt = intersection(seg, other);
+		if (pt == null) return;
+
+		// Use the existing instance of a known crossing point, unless analyze() meets this pair first
+		Point canonical = _crossingPoints.get(pt);
+		if (canonical == null)
+		{
+			_crossingPoints.put(pt, canonical = pt);
+			_firstPair.put(pt, new Segment[] { seg, other });
+		}
+		else if (precedes(seg, other, _firstPair.get(canonical)))
+		{
+			canonical = takeFirstPair(canonical, seg, other, pt, affected);
+		}
+
+		boolean wasImplicit = isImplicit(canonical);
+
+		Map<Segment, Integer> through = _crossings.computeIfAbsent(canonical, k -> new LinkedHashMap<Segment, Integer>());
+		through.merge(seg, 1, Integer::sum);
+		through.merge(other, 1, Integer::sum);
+
+		_partners.computeIfAbsent(seg, k -> new LinkedHashMap<Segment, Point>()).put(other, canonical);
+		_partners.computeIfAbsent(other, k -> new LinkedHashMap<Segment, Point>()).put(seg, canonical);
+
+		if (!wasImplicit && isImplicit(canonical))
+		{
+			_pp._implicitPoints.add(canonical);
+			delta.pointAdded(canonical);
+		}
+
+		affected.add(seg);
+		affected.add(other);
+	}
+
+	/*
+	 * @return the point at which two given segments properly cross (null if they
+	 *         do not), in the arithmetic of analyze(): floating point, or exact on
+	 *         the grid of the preprocessor's precision
+	 */
+	private Point intersection(Segment seg, Segment other)
+	{
+		FixedPointContext precision = _pp._precision;
+		if (precision == null) return IntersectionDelegate.segmentIntersection(seg, other);
+
+		RationalPoint crossing = FixedPointContext.crossing(precision.toFixed(seg.getPoint1().getX()), precision.toFixed(seg.getPoint1().getY()),
+				                                            precision.toFixed(seg.getPoint2().getX()), precision.toFixed(seg.getPoint2().getY()),
+				                                            precision.toFixed(other.getPoint1().getX()), precision.toFixed(other.getPoint1().getY()),
+				                                            precision.toFixed(other.getPoint2().getX()), precision.toFixed(other.getPoint2().getY()));
+
+		return crossing == null ? null : precision.toPoint(crossing);
+	}
+
+	/*
+	 * Make (seg, other) the first pair crossing at a known crossing point: the
+	 * point takes their intersection as its instance, as in analyze(). (The
+	 * instances are equal points; the change is not reported in the delta.)
+	 * @return the instance of the point
+	 */
+	private Point takeFirstPair(Point pt, Segment seg, Segment other, Point intersection, Set<Segment> affected)
+	{
+		_firstPair.remove(pt);
+
+		if (intersection.getX() == pt.getX() && intersection.getY() == pt.getY())
+		{
+			_firstPair.put(pt, new Segment[] { seg, other });
+			return pt;
+		}
+
+		Map<Segment, Integer> through = _crossings.remove(pt);
+		if (through != null)
+		{
+			_crossings.put(intersection, through);
+
+			for (Segment crossing : through.keySet())
+			{
+				_partners.get(crossing).replaceAll((partner, at) -> at == pt ? intersection : at);
+				affected.add(crossing);
+			}
+		}
+
+		_crossingPoints.remove(pt);
+		_crossingPoints.put(intersection, intersection);
+		_firstPair.put(intersection, new Segment[] { seg, other });
+
+		if (_pp._implicitPoints.remove(pt)) _pp._implicitPoints.add(intersection);
+
+		return intersection;
+	}
+
+	/*
+	 * The first pair crossing at a point was removed: the next pair (in
+	 * analyze()'s order) becomes the first.
+	 */
+	private void resetFirstPair(Point pt, Set<Segment> affected)
+	{
+		Map<Segment, Integer> through = _crossings.get(pt);
+		if (through == null) return;
+
+		Segment[] first = null;
+		for (Segment seg : through.keySet())
+		{
+			for (Map.Entry<Segment, Point> entry : _partners.get(seg).entrySet())
+			{
+				Segment other = entry.getKey();
+
+				if (entry.getValue() == pt && _order.get(seg) < _order.get(other) && precedes(seg, other, first))
+				{
+					first = new Segment[] { seg, other };
+				}
+			}
+		}
+
+		takeFirstPair(pt, first[0], first[1], intersection(first[0], first[1]), affected);
+	}
+
+	/*
+	 * @return true if the pair (seg, other) precedes pair in analyze()'s order (or pair is null)
+	 */
+	private boolean precedes(Segment seg, Segment other, Segment[] pair)
+	{
+		if (pair == null) return true;
+
+		int first = Long.compare(_order.get(seg), _order.get(pair[0]));
+		return first < 0 || (first == 0 && _order.get(other) < _order.get(pair[1]));
+	}
+
+	private void store(Segment seg)
+	{
+		_stored.put(seg, seg);
+		_order.put(seg, _nextOrder++);
+	}
+
+	/*
+	 * @return the given segments in the order they were added
+	 */
+	private List<Segment> inOrder(Collection<Segment> given)
+	{
+		List<Segment> ordered = new ArrayList<Segment>(given);
+		ordered.sort(Comparator.comparing(_order::get));
+		return ordered;
+	}
+
+	private void unrecordCrossing(Segment seg, Segment other, Point pt, PreprocessorDelta delta)
+	{
+		boolean wasImplicit = isImplicit(pt);
+
+		Map<Segment, Integer> through = _crossings.get(pt);
+		through.computeIfPresent(seg, (k, count) -> count == 1 ? null : count - 1);
+		through.computeIfPresent(other, (k, count) -> count == 1 ? null : count - 1);
+		if (through.isEmpty())
+		{
+			_crossings.remove(pt);
+			_crossingPoints.remove(pt);
+			_firstPair.remove(pt);
+		}
+
+		Map<Segment, Point> otherPartners = _partners.get(other);
+		otherPartners.remove(seg);
+		if (otherPartners.isEmpty()) _partners.remove(other);
+
+		if (wasImplicit && !isImplicit(pt))
+		{
+			_pp._implicitPoints.remove(pt);
+			delta.pointRemoved(pt);
+		}
+	}
+
+	/*
+	 * @return the current implicit points with the given segments crossing at each
+	 */
+	ImplicitPointIncidence incidence()
+	{
+		ImplicitPointIncidence incidence = new ImplicitPointIncidence();
+
+		for (Point pt : _pp._implicitPoints)
+		{
+			for (Segment seg : _crossings.get(pt).keySet()) incidence.add(pt, seg);
+		}
+
+		return incidence;
+	}
+
+	private boolean isImplicit(Point pt)
+	{
+		return _crossings.containsKey(pt) && _pp._pointDatabase.getPoint(pt) == null;
+	}
+
+	/*
+	 * @return the implicit points on a given segment
+	 */
+	private Set<Point> implicitPointsOn(Segment seg)
+	{
+		Set<Point> points = new LinkedHashSet<Point>();
+
+		for (Point pt : _partners.getOrDefault(seg, Collections.emptyMap()).values())
+		{
+			if (isImplicit(pt)) points.add(pt);
+		}
+
+		return points;
+	}
+
+	/*
+	 * @return the number of named points on a given segment
+	 */
+	private int namedPointsOn(Segment seg)
+	{
+		int count = 0;
+
+		for (Point pt : _pointGrid.near(minX(seg), minY(seg), maxX(seg), maxY(seg)))
+		{
+			if (seg.pointLiesOnSegment(pt)) count++;
+		}
+
+		return count;
+	}
+
+	/*
+	 * Recompute the contributions of the affected given segments, then
+	 * the chains of every minimal segment that appeared or disappeared.
+	 */
+	private void update(Set<Segment> affected, PreprocessorDelta delta)
+	{
+		for (Segment seg : affected)
+		{
+			for (Segment piece : _implicitPieces.getOrDefault(seg, Collections.emptyList()))
+			{
+				_implicitSegments.decrement(piece);
+				_minimalSegments.decrement(piece);
+			}
+			_implicitPieces.remove(seg);
+
+			if (_selfMinimal.remove(seg)) _minimalSegments.decrement(seg);
+		}
+
+		for (Segment seg : affected)
+		{
+			if (!_pp._givenSegments.contains(seg)) continue;
+
+			// Same rules as computeImplicitBaseSegments and identifyAllMinimalSegments
+			Set<Point> implicit = implicitPointsOn(seg);
+
+			SortedSet<Point> pointsOn = new TreeSet<Point>(implicit);
+			pointsOn.add(seg.getPoint1());
+			pointsOn.add(seg.getPoint2());
+
+			List<Segment> pieces = new ArrayList<Segment>(_pp.getAllSegments(pointsOn));
+			_implicitPieces.put(seg, pieces);
+			for (Segment piece : pieces)
+			{
+				_implicitSegments.increment(piece);
+				_minimalSegments.increment(piece);
+			}
+
+			if (implicit.size() + namedPointsOn(seg) <= 2)
+			{
+				_selfMinimal.add(seg);
+				_minimalSegments.increment(seg);
+			}
+		}
+
+		List<Segment> removedImplicit = _implicitSegments.removed();
+		List<Segment> addedImplicit = _implicitSegments.added();
+		_implicitSegments.endEdit();
+
+		List<Segment> removedMinimal = _minimalSegments.removed();
+		List<Segment> addedMinimal = _minimalSegments.added();
+		_minimalSegments.endEdit();
+
+		rechain(removedMinimal, addedMinimal);
+
+		List<Segment> removedNonMinimal = _nonMinimalSegments.removed();
+		List<Segment> addedNonMinimal = _nonMinimalSegments.added();
+		_nonMinimalSegments.endEdit();
+
+		//
+		// Apply the changes to the segment table, noting changes to the
+		// segment database (every minimal and non-minimal segment)
+		//
+		SegmentTable table = _pp._segments;
+
+		Map<Segment, Boolean> inDatabase = new LinkedHashMap<Segment, Boolean>();
+		for (Segment seg : concat(concat(removedMinimal, removedNonMinimal), concat(addedMinimal, addedNonMinimal)))
+		{
+			inDatabase.putIfAbsent(seg, table.has(seg, SegmentTable.DATABASE));
+		}
+
+		removedImplicit.forEach(seg -> table.remove(seg, SegmentTable.IMPLICIT));
+		removedMinimal.forEach(seg -> table.remove(seg, SegmentTable.MINIMAL));
+		removedNonMinimal.forEach(seg -> table.remove(seg, SegmentTable.NON_MINIMAL));
+		addedImplicit.forEach(seg -> table.add(seg, SegmentTable.IMPLICIT));
+		addedMinimal.forEach(seg -> table.add(seg, SegmentTable.MINIMAL));
+		addedNonMinimal.forEach(seg -> table.add(seg, SegmentTable.NON_MINIMAL));
+
+		inDatabase.forEach((seg, before) ->
+		{
+			boolean after = table.has(seg, SegmentTable.DATABASE);
+
+			if (before && !after) delta.segmentRemoved(seg);
+			if (!before && after) delta.segmentAdded(table.get(seg, SegmentTable.DATABASE));
+		});
+	}
+
+	/*
+	 * Rebuild the chains containing removed minimal segments or continuing
+	 * added minimal segments (with, in turn, the chains continuing those).
+	 */
+	private void rechain(List<Segment> removedMinimal, List<Segment> addedMinimal)
+	{
+		Map<List<Point>, Boolean> affectedChains = new IdentityHashMap<List<Point>, Boolean>();
+		List<Segment> reached = new ArrayList<Segment>(addedMinimal);
+
+		for (Segment seg : removedMinimal)
+		{
+			affectChain(_chainOf.get(seg), affectedChains, reached);
+			incidentAt(seg.getPoint1()).remove(seg);
+			incidentAt(seg.getPoint2()).remove(seg);
+		}
+
+		for (Segment seg : addedMinimal)
+		{
+			incidentAt(seg.getPoint1()).add(seg);
+			incidentAt(seg.getPoint2()).add(seg);
+		}
+
+		//
+		// A walk (see LineChains) may continue from a reached segment into
+		// any segment in line with it at an endpoint; that segment's chain
+		// is rebuilt as well
+		//
+		for (int k = 0; k < reached.size(); k++)
+		{
+			Segment seg = reached.get(k);
+
+			for (Point endpoint : new Point[] { seg.getPoint1(), seg.getPoint2() })
+			{
+				for (Segment neighbor : incidentAt(endpoint))
+				{
+					Point ahead = neighbor.other(endpoint);
+
+					if (ahead != null && GeometryUtilities.between(endpoint, seg.other(endpoint), ahead))
+					{
+						affectChain(_chainOf.get(neighbor), affectedChains, reached);
+					}
+				}
+			}
+		}
+
+		//
+		// Tear down the affected chains and their spans
+		//
+		Set<Segment> pool = new LinkedHashSet<Segment>();
+		for (List<Point> chain : affectedChains.keySet())
+		{
+			forEachSpan(chain, _nonMinimalSegments::decrement);
+
+			for (int i = 0; i < chain.size() - 1; i++)
+			{
+				Segment seg = new Segment(chain.get(i), chain.get(i + 1));
+				_chainOf.remove(seg);
+				if (_minimalSegments.contains(seg)) pool.add(seg);
+			}
+		}
+		pool.addAll(addedMinimal);
+
+		//
+		// Rebuild chains from the remaining and added minimal segments
+		//
+		for (List<Point> chain : LineChains.compute(inAnalyzeOrder(pool)))
+		{
+			for (int i = 0; i < chain.size() - 1; i++)
+			{
+				_chainOf.put(new Segment(chain.get(i), chain.get(i + 1)), chain);
+			}
+
+			forEachSpan(chain, _nonMinimalSegments::increment);
+		}
+	}
+
+	private static void affectChain(List<Point> chain, Map<List<Point>, Boolean> affectedChains, List<Segment> reached)
+	{
+		if (chain == null || affectedChains.put(chain, true) != null) return;
+
+		for (int i = 0; i < chain.size() - 1; i++) reached.add(new Segment(chain.get(i), chain.get(i + 1)));
+	}
+
+	/*
+	 * The minimal segments as analyze() stores (and walks) them: a given
+	 * segment first, in the order given; otherwise the piece of the first
+	 * given segment split into it. Where collinear minimal segments overlap
+	 * (a named point inside an implicit piece), the chains depend on this order.
+	 */
+	private List<Segment> inAnalyzeOrder(Collection<Segment> minimal)
+	{
+		Map<Segment, long[]> positions = new HashMap<Segment, long[]>();
+
+		for (Segment seg : minimal)
+		{
+			Segment given = _stored.get(seg);
+			if (given != null)
+			{
+				positions.put(given, new long[] { 0, _order.get(given), 0 });
+				continue;
+			}
+
+			// A piece has an implicit endpoint; the given segments split into it cross there
+			Segment instance = seg;
+			long[] position = { 2, 0, 0 };
+
+			for (Point endpoint : new Point[] { seg.getPoint1(), seg.getPoint2() })
+			{
+				for (Segment split : _crossings.getOrDefault(endpoint, Collections.emptyMap()).keySet())
+				{
+					List<Segment> pieces = _implicitPieces.getOrDefault(split, Collections.emptyList());
+					int index = pieces.indexOf(seg);
+					long[] candidate = { 1, _order.get(split), index };
+
+					if (index >= 0 && Arrays.compare(candidate, position) < 0)
+					{
+						position = candidate;
+						instance = pieces.get(index);
+					}
+				}
+			}
+
+			positions.put(instance, position);
+		}
+
+		List<Segment> ordered = new ArrayList<Segment>(positions.keySet());
+		ordered.sort((left, right) -> Arrays.compare(positions.get(left), positions.get(right)));
+		return ordered;
+	}
+
+	private static void forEachSpan(List<Point> chain, java.util.function.Consumer<Segment> action)
+	{
+		for (int i = 0; i < chain.size(); i++)
+		{
+			for (int j = i + 2; j < chain.size(); j++)
+			{
+				action.accept(new Segment(chain.get(i), chain.get(j)));
+			}
+		}
+	}
+
+	private List<Segment> incidentAt(Point pt)
+	{
+		List<Segment> incident = _minimalAt.get(pt);
+		if (incident == null) _minimalAt.put(pt, incident = new ArrayList<Segment>(2));
+
+		return incident;
+	}
+
+	private static List<Segment> concat(List<Segment> first, List<Segment> second)
+	{
+		List<Segment> all = new ArrayList<Segment>(first);
+		all.addAll(second);
+		return all;
+	}
+
+	//
+	// Spatial hashing of given segments and named points
+	//
+	private Set<Segment> nearSegments(Segment seg)
+	{
+		Set<Segment> near = _segmentGrid.near(minX(seg), minY(seg), maxX(seg), maxY(seg));
+		near.remove(seg);
+		return near;
+	}
+
+	private void addToGrid(Segment seg)      { _segmentGrid.add(seg, minX(seg), minY(seg), maxX(seg), maxY(seg)); }
+	private void removeFromGrid(Segment seg) { _segmentGrid.remove(seg, minX(seg), minY(seg), maxX(seg), maxY(seg)); }
+
+	private void addToGrid(Point pt)
+	{
+		_pointGrid.add(pt, pt.getX() - MathUtilities.EPSILON, pt.getY() - MathUtilities.EPSILON,
+				           pt.getX() + MathUtilities.EPSILON, pt.getY() + MathUtilities.EPSILON);
+	}
+
+	private static double minX(Segment seg) { return Math.min(seg.getPoint1().getX(), seg.getPoint2().getX()) - MathUtilities.EPSILON; }
+	private static double minY(Segment seg) { return Math.min(seg.getPoint1().getY(), seg.getPoint2().getY()) - MathUtilities.EPSILON; }
+	private static double maxX(Segment seg) { return Math.max(seg.getPoint1().getX(), seg.getPoint2().getX()) + MathUtilities.EPSILON; }
+	private static double maxY(Segment seg) { return Math.max(seg.getPoint1().getY(), seg.getPoint2().getY()) + MathUtilities.EPSILON; }
+}
@@ -0,0 +1,633 @@
+package preprocessor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+import geometry_objects.points.PointDatabase;
+import preprocessor.delegates.ImplicitPointIncidence;
+import preprocessor.delegates.IntersectionEngine;
+import utilities.math.FixedPointContext;
+import utilities.math.MathUtilities;
+
+/**
+ * A preprocessed figure read straight from a (memory-mapped) file written by
+ * PreprocessorFile: the sections of the file are arrays of fixed-width
+ * records, so record k of a section is found without reading the others.
+ *
+ * Layout (version 2; ints and doubles big-endian; P points, K chain points):
+ *    header              -- 14 ints: magic, version, precision decimals (-1: floating point),
+ *                           length of the engine name, the counts of named points,
+ *                           implicit points, given, implicit and minimal segments,
+ *                           incidence entries, chains, K and string bytes; one int unused
+ *    points              -- P x (double x, double y): the named, then the implicit points
+ *    names               -- per named point (int offset, int length) in the strings
+ *    points by x         -- P x int: the point ids sorted by x (then y)
+ *    given segments      -- pairs of point ids (int, int), in the given order
+ *    implicit segments   -- pairs of point ids, sorted by (smaller id, larger id)
+ *    minimal segments    -- pairs of point ids, sorted by (smaller id, larger id)
+ *    incidence           -- per implicit point a start (and one end) int, then the
+ *                           indices of the given segments through each point
+ *    chains              -- per chain a start (and one end) int, then the point ids
+ *                           of each chain, in order along its line
+ *    chain memberships   -- per point a start (and one end) int, then (chain, position)
+ *                           of each chain through the point, by chain
+ *    strings             -- UTF-8: the engine name, then the names
+ *
+ * Only the named points and the given segments (the figure the preprocessor
+ * is built on) are decoded when the file is opened. Everything else is
+ * decoded from its records when it is read and is never stored: a point is
+ * looked up by a binary search on x, a segment by its point ids (a binary
+ * search, or the chains through one endpoint for the spans of the chains).
+ *
+ * The segment database holds exactly the spans of the chains: a span shared
+ * by several chains (minimal segments may overlap) belongs to the first.
+ *
+ * A record found damaged after the file was opened is reported with an
+ * UncheckedIOException.
+ */
+class MappedFigure
+{
+	// Ints of the header (padded to keep the points 8-byte aligned)
+	static final int HEADER_INTS = 14;
+
+	private static final int POINT_BYTES = 16;
+	private static final int PAIR_BYTES = 8;
+	private static final int INT_BYTES = 4;
+
+	private final ByteBuffer _bytes;
+	private final String _source;
+
+	private final IntersectionEngine _engine;
+	private final FixedPointContext _precision;
+
+	private final int _namedCount;
+	private final int _pointCount;
+	private final int _implicitSegmentCount;
+	private final int _minimalCount;
+	private final int _incidenceCount;
+	private final int _chainCount;
+	private final int _chainPointCount;
+
+	// Offsets of the sections
+	private final int _points;
+	private final int _byX;
+	private final int _implicitSegmentRecords;
+	private final int _minimalRecords;
+	private final int _incidenceStarts;
+	private final int _incidence;
+	private final int _chainStarts;
+	private final int _chainPoints;
+	private final int _memberStarts;
+	private final int _members;
+
+	// The named points (the database's instances) and the given segments
+	private final PointDatabase _database;
+	private final Point[] _named;
+	private final List<Segment> _given;
+
+	private final Set<Point> _implicitPoints;
+	private final Set<Segment> _implicitSegments;
+	private final Set<Segment> _minimalSegments;
+	private final SpanSet _nonMinimalSegments;
+	private final SpanSet _spans;
+	private final Map<Segment, Segment> _segmentDatabase;
+	private final List<List<Point>> _chains;
+
+	// Decoded when first asked for (see incidence)
+	private ImplicitPointIncidence _decodedIncidence;
+
+	/**
+	 * @param bytes -- the contents of a file written by PreprocessorFile (not copied)
+	 * @param source -- names the file in errors
+	 * @throws IOException if the bytes are not a preprocessed figure (of this version),
+	 *                     or the header, the names or the given segments are damaged
+	 */
+	MappedFigure(ByteBuffer bytes, String source) throws IOException
+	{
+		_bytes = bytes;
+		_source = source;
+
+		if (bytes.capacity() < HEADER_INTS * INT_BYTES || bytes.getInt(0) != PreprocessorFile.MAGIC) throw new IOException("not a preprocessed figure");
+		int version = bytes.getInt(INT_BYTES);
+		if (version != PreprocessorFile.VERSION) throw new IOException("unsupported version " + version);
+
+		int[] header = new int[HEADER_INTS];
+		for (int k = 2; k < HEADER_INTS; k++)
+		{
+			header[k] = bytes.getInt(k * INT_BYTES);
+			if (header[k] < 0 && k > 2) throw damaged();
+		}
+
+		int decimals = header[2];
+		int engineLength = header[3];
+		_namedCount = header[4];
+		int implicitCount = header[5];
+		int givenCount = header[6];
+		_implicitSegmentCount = header[7];
+		_minimalCount = header[8];
+		_incidenceCount = header[9];
+		_chainCount = header[10];
+		_chainPointCount = header[11];
+		int stringBytes = header[12];
+		_pointCount = _namedCount + implicitCount;
+		if (_pointCount < 0) throw damaged();
+
+		long offset = HEADER_INTS * INT_BYTES;
+		_points = section(offset);
+		offset += (long)POINT_BYTES * _pointCount;
+		int names = section(offset);
+		offset += (long)PAIR_BYTES * _namedCount;
+		_byX = section(offset);
+		offset += (long)INT_BYTES * _pointCount;
+		int given = section(offset);
+		offset += (long)PAIR_BYTES * givenCount;
+		_implicitSegmentRecords = section(offset);
+		offset += (long)PAIR_BYTES * _implicitSegmentCount;
+		_minimalRecords = section(offset);
+		offset += (long)PAIR_BYTES * _minimalCount;
+		_incidenceStarts = section(offset);
+		offset += (long)INT_BYTES * (implicitCount + 1L);
+		_incidence = section(offset);
+		offset += (long)INT_BYTES * _incidenceCount;
+		_chainStarts = section(offset);
+		offset += (long)INT_BYTES * (_chainCount + 1L);
+		_chainPoints = section(offset);
+		offset += (long)INT_BYTES * _chainPointCount;
+		_memberStarts = section(offset);
+		offset += (long)INT_BYTES * (_pointCount + 1L);
+		_members = section(offset);
+		offset += (long)PAIR_BYTES * _chainPointCount;
+		int strings = section(offset);
+		offset += stringBytes;
+		if (offset != bytes.capacity()) throw damaged();
+
+		try
+		{
+			_engine = IntersectionEngine.valueOf(string(strings, 0, engineLength, stringBytes));
+			_precision = decimals < 0 ? null : new FixedPointContext(decimals);
+
+			List<Point> named = new ArrayList<Point>(_namedCount);
+			for (int k = 0; k < _namedCount; k++)
+			{
+				String name = string(strings, _bytes.getInt(names + PAIR_BYTES * k), _bytes.getInt(names + PAIR_BYTES * k + INT_BYTES), stringBytes);
+				named.add(new Point(name, x(k), y(k)));
+			}
+
+			_database = new PointDatabase(named);
+			_named = new Point[_namedCount];
+			for (int k = 0; k < _namedCount; k++) _named[k] = _database.getPoint(named.get(k).getName(), x(k), y(k));
+
+			_given = new ArrayList<Segment>(givenCount);
+			for (int k = 0; k < givenCount; k++) _given.add(segment(given, k));
+		}
+		catch (UncheckedIOException | IllegalArgumentException e)
+		{
+			throw damaged();
+		}
+
+		_implicitPoints = new ImplicitPoints();
+		_implicitSegments = new SegmentRecords(_implicitSegmentRecords, _implicitSegmentCount);
+		_minimalSegments = new SegmentRecords(_minimalRecords, _minimalCount);
+		_nonMinimalSegments = new SpanSet(2);
+		_spans = new SpanSet(1);
+		_segmentDatabase = new SpanMap();
+		_chains = new Chains();
+	}
+
+	private int section(long offset) throws IOException
+	{
+		if (offset > _bytes.capacity()) throw damaged();
+
+		return (int)offset;
+	}
+
+	private IOException damaged() { return new IOException(_source + " is damaged"); }
+
+	private String string(int strings, int offset, int length, int stringBytes)
+	{
+		if (offset < 0 || length < 0 || offset > stringBytes - length) throw new IllegalArgumentException("bad string");
+
+		byte[] encoded = new byte[length];
+		_bytes.duplicate().position(strings + offset).get(encoded);
+
+		return new String(encoded, StandardCharsets.UTF_8);
+	}
+
+	IntersectionEngine engine() { return _engine; }
+	FixedPointContext precision() { return _precision; }
+	PointDatabase pointDatabase() { return _database; }
+	List<Segment> givenSegments() { return _given; }
+
+	Set<Point> implicitPoints() { return _implicitPoints; }
+	Set<Segment> implicitSegments() { return _implicitSegments; }
+	Set<Segment> minimalSegments() { return _minimalSegments; }
+	Set<Segment> nonMinimalSegments() { return _nonMinimalSegments; }
+	Map<Segment, Segment> segmentDatabase() { return _segmentDatabase; }
+	List<List<Point>> chains() { return _chains; }
+
+	/**
+	 * @return the implicit points with the given segments crossing at each
+	 *         (decoded on the first call)
+	 */
+	synchronized ImplicitPointIncidence incidence()
+	{
+		if (_decodedIncidence != null) return _decodedIncidence;
+
+		ImplicitPointIncidence incidence = new ImplicitPointIncidence();
+		for (int k = 0; k < _pointCount - _namedCount; k++)
+		{
+			Point pt = point(_namedCount + k);
+
+			int end = start(_incidenceStarts, k + 1, _incidenceCount);
+			for (int n = start(_incidenceStarts, k, end); n < end; n++) incidence.add(pt, _given.get(check(intAt(_incidence, n), _given.size())));
+		}
+
+		return _decodedIncidence = incidence;
+	}
+
+	/*
+	 * Records
+	 */
+	private int intAt(int section, int index) { return _bytes.getInt(section + INT_BYTES * index); }
+	private double x(int id) { return _bytes.getDouble(_points + POINT_BYTES * id); }
+	private double y(int id) { return _bytes.getDouble(_points + POINT_BYTES * id + 8); }
+
+	/*
+	 * @return value, if it indexes items of the given number
+	 */
+	private int check(int value, int size)
+	{
+		if (value < 0 || value >= size) throw new UncheckedIOException(damaged());
+
+		return value;
+	}
+
+	/*
+	 * @return start k of a section of starts (no later than the next start, end)
+	 */
+	private int start(int starts, int k, int end)
+	{
+		int start = intAt(starts, k);
+		if (start < 0 || start > end) throw new UncheckedIOException(damaged());
+
+		return start;
+	}
+
+	private Point point(int id)
+	{
+		check(id, _pointCount);
+
+		return id < _namedCount ? _named[id] : new Point(x(id), y(id));
+	}
+
+	private int point1(int section, int k) { return check(intAt(section, 2 * k), _pointCount); }
+	private int point2(int section, int k) { return check(intAt(section, 2 * k + 1), _pointCount); }
+
+	private Segment segment(int section, int k) { return new Segment(point(point1(section, k)), point(point2(section, k))); }
+
+	/*
+	 * @return the id of the point equal to obj (-1 if there is none): the first
+	 *         of the points by x with an equal x and y
+	 */
+	private int idOf(Object obj)
+	{
+		if (!(obj instanceof Point)) return -1;
+		Point pt = (Point)obj;
+
+		int lo = 0;
+		int hi = _pointCount;
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (x(byX(mid)) <= pt.getX() - MathUtilities.EPSILON) lo = mid + 1;
+			else hi = mid;
+		}
+
+		for (int k = lo; k < _pointCount; k++)
+		{
+			int id = byX(k);
+			if (!MathUtilities.doubleEquals(x(id), pt.getX())) break;
+			if (MathUtilities.doubleEquals(y(id), pt.getY())) return id;
+		}
+
+		return -1;
+	}
+
+	private int byX(int k) { return check(intAt(_byX, k), _pointCount); }
+
+	/*
+	 * @return the ids of the endpoints of obj (null if it is not a segment of points of the figure)
+	 */
+	private int[] idsOf(Object obj)
+	{
+		if (!(obj instanceof Segment)) return null;
+		Segment seg = (Segment)obj;
+
+		int p = idOf(seg.getPoint1());
+		int q = idOf(seg.getPoint2());
+
+		return p < 0 || q < 0 ? null : new int[] { p, q };
+	}
+
+	private static long key(int p, int q) { return ((long)Math.min(p, q) << 32) | Math.max(p, q); }
+
+	/*
+	 * Chains: each chain is a run of point ids; each point lists the chains through it
+	 */
+	private int chainStart(int c) { return start(_chainStarts, c, _chainPointCount); }
+	private int chainLength(int c)
+	{
+		int length = chainStart(c + 1) - chainStart(c);
+		if (length < 0) throw new UncheckedIOException(damaged());
+
+		return length;
+	}
+
+	private int chainPoint(int c, int position) { return check(intAt(_chainPoints, chainStart(c) + position), _pointCount); }
+
+	private int memberStart(int id) { return start(_memberStarts, id, _chainPointCount); }
+	private int memberChain(int m) { return check(intAt(_members, 2 * m), _chainCount); }
+	private int memberPosition(int m) { return intAt(_members, 2 * m + 1); }
+
+	/*
+	 * @return the position of point id on chain c (-1 if it is not on it)
+	 */
+	private int position(int id, int c)
+	{
+		int end = memberStart(id + 1);
+		for (int m = memberStart(id); m < end; m++)
+		{
+			if (memberChain(m) == c) return memberPosition(m);
+		}
+
+		return -1;
+	}
+
+	/*
+	 * @return the first chain through points p and q with them at least gap
+	 *         positions apart (-1 if there is none)
+	 */
+	private int spanningChain(int p, int q, int gap)
+	{
+		int end = memberStart(p + 1);
+		for (int m = memberStart(p); m < end; m++)
+		{
+			int position = position(q, memberChain(m));
+			if (position >= 0 && Math.abs(position - memberPosition(m)) >= gap) return memberChain(m);
+		}
+
+		return -1;
+	}
+
+	/*
+	 * The implicit points: the points after the named ones, in discovery order
+	 */
+	private class ImplicitPoints extends AbstractSet<Point>
+	{
+		@Override public int size() { return _pointCount - _namedCount; }
+		@Override public boolean contains(Object obj) { return idOf(obj) >= _namedCount; }
+
+		@Override
+		public Iterator<Point> iterator()
+		{
+			return new Iterator<Point>()
+			{
+				private int _next = _namedCount;
+
+				@Override public boolean hasNext() { return _next < _pointCount; }
+
+				@Override
+				public Point next()
+				{
+					if (!hasNext()) throw new NoSuchElementException();
+
+					return point(_next++);
+				}
+			};
+		}
+	}
+
+	/*
+	 * A section of segments sorted by (smaller id, larger id)
+	 */
+	private class SegmentRecords extends AbstractSet<Segment>
+	{
+		private final int _section;
+		private final int _count;
+
+		SegmentRecords(int section, int count)
+		{
+			_section = section;
+			_count = count;
+		}
+
+		@Override public int size() { return _count; }
+
+		@Override
+		public boolean contains(Object obj)
+		{
+			int[] ids = idsOf(obj);
+			if (ids == null) return false;
+
+			long key = key(ids[0], ids[1]);
+
+			int lo = 0;
+			int hi = _count - 1;
+			while (lo <= hi)
+			{
+				int mid = (lo + hi) >>> 1;
+				long midKey = key(point1(_section, mid), point2(_section, mid));
+
+				if (midKey == key) return true;
+				if (midKey < key) lo = mid + 1;
+				else hi = mid - 1;
+			}
+
+			return false;
+		}
+
+		@Override
+		public Iterator<Segment> iterator()
+		{
+			return new Iterator<Segment>()
+			{
+				private int _next = 0;
+
+				@Override public boolean hasNext() { return _next < _count; }
+
+				@Override
+				public Segment next()
+				{
+					if (!hasNext()) throw new NoSuchElementException();
+
+					return segment(_section, _next++);
+				}
+			};
+		}
+	}
+
+	/*
+	 * The spans (i, j) with j >= i + gap of the chains: the non-minimal
+	 * segments (gap 2) or the segment database (gap 1), in the order of the chains
+	 */
+	private class SpanSet extends AbstractSet<Segment>
+	{
+		private final int _gap;
+
+		// Counted on the first call of size (-1 until then)
+		private volatile int _size = -1;
+
+		SpanSet(int gap) { _gap = gap; }
+
+		@Override
+		public int size()
+		{
+			if (_size < 0)
+			{
+				int size = 0;
+				for (Iterator<Segment> it = iterator(); it.hasNext(); it.next()) size++;
+				_size = size;
+			}
+
+			return _size;
+		}
+
+		@Override public boolean contains(Object obj) { return get(obj) != null; }
+
+		/*
+		 * @return the segment of the figure equal to obj (null if it is not a span)
+		 */
+		Segment get(Object obj)
+		{
+			int[] ids = idsOf(obj);
+			if (ids == null) return null;
+
+			int c = spanningChain(ids[0], ids[1], _gap);
+			if (c < 0) return null;
+
+			// Endpoints in the order of the chain
+			return position(ids[0], c) < position(ids[1], c) ? new Segment(point(ids[0]), point(ids[1]))
+					                                          : new Segment(point(ids[1]), point(ids[0]));
+		}
+
+		@Override
+		public Iterator<Segment> iterator()
+		{
+			return new Iterator<Segment>()
+			{
+				// The next span (i, j) of chain c to consider
+				private int _c = 0;
+				private int _i = 0;
+				private int _j = _gap;
+				private Segment _next = advance();
+
+				/*
+				 * @return the next span that belongs to its chain (null after the last)
+				 */
+				private Segment advance()
+				{
+					for ( ; _c < _chainCount; _c++, _i = 0, _j = _gap)
+					{
+						int length = chainLength(_c);
+						for ( ; _i + _gap < length; _i++, _j = _i + _gap)
+						{
+							int p = chainPoint(_c, _i);
+							for ( ; _j < length; _j++)
+							{
+								int q = chainPoint(_c, _j);
+								if (spanningChain(p, q, _gap) != _c) continue;
+
+								_j++;
+								return new Segment(point(p), point(q));
+							}
+						}
+					}
+
+					return null;
+				}
+
+				@Override public boolean hasNext() { return _next != null; }
+
+				@Override
+				public Segment next()
+				{
+					if (_next == null) throw new NoSuchElementException();
+
+					Segment seg = _next;
+					_next = advance();
+					return seg;
+				}
+			};
+		}
+	}
+
+	/*
+	 * The segment database: each span maps to itself
+	 */
+	private class SpanMap extends AbstractMap<Segment, Segment>
+	{
+		@Override public int size() { return _spans.size(); }
+		@Override public boolean containsKey(Object key) { return _spans.get(key) != null; }
+		@Override public Segment get(Object key) { return _spans.get(key); }
+
+		@Override
+		public Set<Map.Entry<Segment, Segment>> entrySet()
+		{
+			return new AbstractSet<Map.Entry<Segment, Segment>>()
+			{
+				@Override public int size() { return _spans.size(); }
+
+				@Override
+				public Iterator<Map.Entry<Segment, Segment>> iterator()
+				{
+					Iterator<Segment> spans = _spans.iterator();
+
+					return new Iterator<Map.Entry<Segment, Segment>>()
+					{
+						@Override public boolean hasNext() { return spans.hasNext(); }
+
+						@Override
+						public Map.Entry<Segment, Segment> next()
+						{
+							Segment seg = spans.next();
+							return new AbstractMap.SimpleImmutableEntry<Segment, Segment>(seg, seg);
+						}
+					};
+				}
+			};
+		}
+	}
+
+	/*
+	 * The chains as lists of points
+	 */
+	private class Chains extends AbstractList<List<Point>>
+	{
+		@Override public int size() { return _chainCount; }
+
+		@Override
+		public List<Point> get(int c)
+		{
+			check(c, _chainCount);
+
+			return new AbstractList<Point>()
+			{
+				@Override public int size() { return chainLength(c); }
+				@Override public Point get(int position) { return point(chainPoint(c, check(position, size()))); }
+			};
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package preprocessor;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A live, read-only view of a map computed by a phase of the preprocessor:
+ * every access first runs the phase (a no-op once the phase is complete),
+ * holding the lock of the phases; see PhaseView.
+ */
+class PhaseMapView<K, V> extends AbstractMap<K, V>
+{
+	private final Supplier<Map<K, V>> _target;
+	private final Runnable _phase;
+	private final Object _lock;
+
+	/**
+	 * @param target -- the map the phase fills
+	 * @param phase -- completes the phase (if it is not complete)
+	 * @param lock -- held by the phases as they run
+	 */
+	PhaseMapView(Supplier<Map<K, V>> target, Runnable phase, Object lock)
+	{
+		_target = target;
+		_phase = phase;
+		_lock = lock;
+	}
+
+	@Override public Set<Map.Entry<K, V>> entrySet() { return new PhaseView<Map.Entry<K, V>>(() -> _target.get().entrySet(), _phase, _lock); }
+	@Override public int size() { synchronized (_lock) { _phase.run(); return _target.get().size(); } }
+	@Override public boolean containsKey(Object key) { synchronized (_lock) { _phase.run(); return _target.get().containsKey(key); } }
+	@Override public V get(Object key) { synchronized (_lock) { _phase.run(); return _target.get().get(key); } }
+}
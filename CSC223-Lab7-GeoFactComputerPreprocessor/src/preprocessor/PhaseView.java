@@ -0,0 +1,60 @@
+package preprocessor;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A live view of a set computed by a phase of the preprocessor: every
+ * access first runs the phase (a no-op once the phase is complete).
+ *
+ * Each access (and each step of an iterator) holds the given lock, the one
+ * the phases run under, so the set is never read while a phase (of this
+ * view or a later one) is filling the storage it shares with other views.
+ *
+ * The set is asked for on each access: the preprocessor may read a stored
+ * figure (see Preprocessor.restore) until its phases are next computed.
+ */
+class PhaseView<E> extends AbstractSet<E>
+{
+	private final Supplier<Set<E>> _target;
+	private final Runnable _phase;
+	private final Object _lock;
+
+	/**
+	 * @param target -- the set the phase fills
+	 * @param phase -- completes the phase (if it is not complete)
+	 * @param lock -- held by the phases as they run
+	 */
+	PhaseView(Supplier<Set<E>> target, Runnable phase, Object lock)
+	{
+		_target = target;
+		_phase = phase;
+		_lock = lock;
+	}
+
+	@Override public int size() { synchronized (_lock) { _phase.run(); return _target.get().size(); } }
+	@Override public boolean contains(Object obj) { synchronized (_lock) { _phase.run(); return _target.get().contains(obj); } }
+	@Override public boolean add(E e) { synchronized (_lock) { _phase.run(); return _target.get().add(e); } }
+	@Override public boolean remove(Object obj) { synchronized (_lock) { _phase.run(); return _target.get().remove(obj); } }
+	@Override public void clear() { synchronized (_lock) { _phase.run(); _target.get().clear(); } }
+
+	@Override
+	public Iterator<E> iterator()
+	{
+		Iterator<E> iterator;
+		synchronized (_lock)
+		{
+			_phase.run();
+			iterator = _target.get().iterator();
+		}
+
+		return new Iterator<E>()
+		{
+			@Override public boolean hasNext() { synchronized (_lock) { return iterator.hasNext(); } }
+			@Override public E next() { synchronized (_lock) { return iterator.next(); } }
+			@Override public void remove() { synchronized (_lock) { iterator.remove(); } }
+		};
+	}
+}
@@ -1,17 +1,33 @@
 package preprocessor;
 
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import geometry_objects.points.Point;
 import geometry_objects.points.PointDatabase;
+import geometry_objects.points.PointRegistry;
+import preprocessor.delegates.AnalysisControl;
+import preprocessor.delegates.ImplicitPointIncidence;
 import preprocessor.delegates.ImplicitPointPreprocessor;
+import preprocessor.delegates.IntersectionEngine;
+import preprocessor.delegates.LineChains;
+import preprocessor.delegates.ParallelSettings;
+import preprocessor.delegates.PointLineIndex;
+import preprocessor.delegates.SegmentSpliterator;
+import preprocessor.delegates.SegmentTable;
+import preprocessor.delegates.SpanCounter;
+import preprocessor.exception.AnalysisInterruptedException;
+import utilities.math.FixedPointContext;
 import geometry_objects.Segment;
 
 public class Preprocessor
@@ -21,23 +37,38 @@ public class Preprocessor
 	// points (i.e., all points in the figure).
 	protected PointDatabase _pointDatabase;
 
-	// Minimal ('Base') segments provided by the user
+	// Minimal ('Base') segments provided by the user; their endpoints are the
+	// database's instances, so equal points are (usually) one object
 	protected Set<Segment> _givenSegments;
 
 	// The set of implicitly defined points caused by segments
 	// at implicit points.
 	protected Set<Point> _implicitPoints;
+	public Set<Point> getImplicitPoints() { return _implicitPoints; }
+
+	// Implicit point <-> the given segments crossing at it
+	protected ImplicitPointIncidence _incidence;
+
+	// Every segment of the figure is stored once in this table, flagged with its
+	// roles (given, implicit, minimal, non-minimal); segments are keyed by the
+	// ids the registry assigns to their endpoints. The segment collections below
+	// are live views of the table.
+	protected PointRegistry _pointRegistry;
+	protected SegmentTable _segments;
 
 	// The set of implicitly defined segments resulting from implicit points.
 	protected Set<Segment> _implicitSegments;
+	public Set<Segment> getImplicitSegments() { return _implicitSegments; }
 
 	// Given all explicit and implicit points, we have a set of
 	// segments that contain no other subsegments; these are minimal ('base') segments
 	// That is, minimal segments uniquely define the figure.
 	protected Set<Segment> _allMinimalSegments;
+	public Set<Segment> getMinimalSegments() { return _allMinimalSegments; }
 
 	// A collection of non-basic segments
 	protected Set<Segment> _nonMinimalSegments;
+	public Set<Segment> getNonMinimalSegments() { return _nonMinimalSegments; }
 
 	// A collection of all possible segments: maximal, minimal, and everything in between
 	// For lookup capability, we use a map; each <key, value> has the same segment object
@@ -45,48 +76,510 @@ public class Preprocessor
 	protected Map<Segment, Segment> _segmentDatabase;
 	public Map<Segment, Segment> getAllSegments() { return _segmentDatabase; }
 
+	// The phases of the precomputation, in order of dependence: each phase needs
+	// the ones before it. A phase is computed when its result is first used
+	// (the collections above are views that complete their phase on access)
+	// and is then kept until the next analyze().
+	//
+	// A phase runs under the preprocessor's lock, as does every access to the
+	// collections above (each step of an iterator included), so several threads
+	// may read the figure and make the first calls to the getters at once: one
+	// computes a phase, the others wait for it. An iterator is not disturbed by a
+	// later phase another thread computes (see SegmentTable). analyze() and the
+	// edits (addSegment, removeSegment, addPoint) take the lock as well; an
+	// iteration they change under fails fast.
+	public enum Phase { NONE, IMPLICIT_POINTS, IMPLICIT_SEGMENTS, MINIMAL_SEGMENTS, NON_MINIMAL_SEGMENTS, SEGMENT_DATABASE }
+
+	// The last phase computed (written last by each phase, after its results)
+	protected volatile Phase _phase;
+
+	// Filled by the implicit point phase (viewed through _implicitPoints)
+	private Set<Point> _discoveredPoints;
+
+	// The stored figure the collections above read from (see restore); null
+	// once the phases are computed or the figure is edited
+	private volatile MappedFigure _figure;
+
+	// Checked by the phases as they go (see analyze(AnalysisControl))
+	protected AnalysisControl _control;
+
+	// Progress tasks of the phases after the implicit points (see AnalysisControl)
+	public static final String IMPLICIT_SEGMENT_TASK = "implicit segments";
+	public static final String MINIMAL_SEGMENT_TASK = "minimal segments";
+	public static final String NON_MINIMAL_SEGMENT_TASK = "non-minimal segments";
+
+	// The implementation used to discover implicit points
+	protected IntersectionEngine _engine;
+
+	// Fixed-point precision for exact implicit point discovery (null: floating point)
+	protected FixedPointContext _precision;
+
+	// The pool and sequential threshold of the PARALLEL engine
+	protected ParallelSettings _parallel;
+	public void setParallelSettings(ParallelSettings settings) { _parallel = settings; }
+
+	// Bookkeeping for incremental edits (created on the first edit)
+	protected IncrementalUpdater _updater;
+
 	public Preprocessor(PointDatabase points, Set<Segment> segments)
 	{
+		this(points, segments, IntersectionEngine.ALL_PAIRS);
+	}
+
+	public Preprocessor(PointDatabase points, Set<Segment> segments, IntersectionEngine engine)
+	{
+		this(points, segments, engine, null);
+	}
+
+	/**
+	 * @param points -- the named points
+	 * @param segments -- the given segments
+	 * @param engine -- the implementation used to discover implicit points
+	 * @param precision -- a fixed-point context: implicit points are found exactly on
+	 *                     coordinates snapped to its grid (null: floating point)
+	 * @throws IllegalArgumentException if a point or an endpoint is off the grid of the precision
+	 */
+	public Preprocessor(PointDatabase points, Set<Segment> segments, IntersectionEngine engine, FixedPointContext precision)
+	{
+		if (precision != null) requireOnGrid(precision, points, segments);
+
 		_pointDatabase  = points;
-		_givenSegments = segments;
+		_givenSegments = withDatabasePoints(points, segments);
+		_engine = engine;
+		_precision = precision;
+		_parallel = ParallelSettings.COMMON;
+
+		_pointRegistry = new PointRegistry();
+		_segments = new SegmentTable(_pointRegistry);
+
+		_discoveredPoints = new LinkedHashSet<Point>();
+		_control = new AnalysisControl();
+		Set<Segment> implicitSegments = _segments.view(SegmentTable.IMPLICIT);
+		Set<Segment> minimalSegments = _segments.view(SegmentTable.MINIMAL);
+		Set<Segment> nonMinimalSegments = _segments.view(SegmentTable.NON_MINIMAL);
+		Map<Segment, Segment> segmentDatabase = _segments.mapView(SegmentTable.DATABASE);
+
+		_implicitPoints = new PhaseView<Point>(() -> _figure != null ? _figure.implicitPoints() : _discoveredPoints, this::implicitPointPhase, this);
+		_implicitSegments = new PhaseView<Segment>(() -> _figure != null ? _figure.implicitSegments() : implicitSegments, this::implicitSegmentPhase, this);
+		_allMinimalSegments = new PhaseView<Segment>(() -> _figure != null ? _figure.minimalSegments() : minimalSegments, this::minimalSegmentPhase, this);
+		_nonMinimalSegments = new PhaseView<Segment>(() -> _figure != null ? _figure.nonMinimalSegments() : nonMinimalSegments, this::nonMinimalSegmentPhase, this);
+		_segmentDatabase = new PhaseMapView<Segment, Segment>(() -> _figure != null ? _figure.segmentDatabase() : segmentDatabase, this::segmentDatabasePhase, this);
+
+		reset();
+	}
+
+	/*
+	 * Every coordinate must be on the grid: only the search for crossings is run
+	 * on snapped coordinates (see FixedPointContext.toFixed)
+	 */
+	private static void requireOnGrid(FixedPointContext precision, PointDatabase points, Set<Segment> segments)
+	{
+		List<Point> all = new ArrayList<Point>(points.getPoints());
+		for (Segment seg : segments)
+		{
+			all.add(seg.getPoint1());
+			all.add(seg.getPoint2());
+		}
+
+		for (Point pt : all) requireOnGrid(precision, pt.getX(), pt.getY());
+	}
+
+	private static void requireOnGrid(FixedPointContext precision, double x, double y)
+	{
+		precision.toFixed(x);
+		precision.toFixed(y);
+	}
+
+	/*
+	 * The segments over the database's instances of their endpoints, in a set
+	 * owned by the preprocessor (edits change it, never the caller's set)
+	 */
+	private static Set<Segment> withDatabasePoints(PointDatabase points, Set<Segment> segments)
+	{
+		Set<Segment> canonical = new LinkedHashSet<Segment>();
+		for (Segment seg : segments) canonical.add(withDatabasePoints(points, seg));
+
+		return canonical;
+	}
+
+	/*
+	 * @return the segment over the database's instances of its endpoints (seg
+	 *         itself if it already is, or if the database lacks an endpoint)
+	 */
+	static Segment withDatabasePoints(PointDatabase points, Segment seg)
+	{
+		Point p1 = points.getPoint(seg.getPoint1());
+		Point p2 = points.getPoint(seg.getPoint2());
+
+		if (p1 == null || p2 == null || (p1 == seg.getPoint1() && p2 == seg.getPoint2())) return seg;
+
+		return new Segment(p1, p2);
+	}
+
+	/**
+	 * Invoke the precomputation procedure (every phase).
+	 */
+	public synchronized void analyze()
+	{
+		reset();
+
+		segmentDatabasePhase();
+	}
+
+	/**
+	 * Invoke the precomputation procedure within a time budget.
+	 * 
+	 * @param budget -- the time allowed
+	 * @return the phases completed (all of them unless the budget ran out)
+	 */
+	public AnalysisResult analyze(Duration budget)
+	{
+		return analyze(new AnalysisControl(budget));
+	}
+
+	/**
+	 * Invoke the precomputation procedure under a control: the phases check it
+	 * (and report their progress to it) as they go, and stop once its budget
+	 * runs out or it is cancelled. The phases completed are kept; the phase
+	 * stopped leaves nothing behind and is computed again when next needed.
+	 * 
+	 * @param control -- a time budget / cancellation flag / progress listener
+	 * @return the phases completed, with their results
+	 */
+	public synchronized AnalysisResult analyze(AnalysisControl control)
+	{
+		reset();
+
+		AnalysisResult.Status status = AnalysisResult.Status.COMPLETE;
+
+		_control = control;
+		try
+		{
+			segmentDatabasePhase();
+		}
+		catch (AnalysisInterruptedException e)
+		{
+			status = e.isTimedOut() ? AnalysisResult.Status.TIMED_OUT : AnalysisResult.Status.CANCELLED;
+		}
+		finally
+		{
+			_control = new AnalysisControl();
+		}
+
+		return new AnalysisResult(status, _phase,
+				                  completedView(Phase.IMPLICIT_POINTS, _implicitPoints),
+				                  completedView(Phase.IMPLICIT_SEGMENTS, _implicitSegments),
+				                  completedView(Phase.MINIMAL_SEGMENTS, _allMinimalSegments),
+				                  completedView(Phase.NON_MINIMAL_SEGMENTS, _nonMinimalSegments));
+	}
+
+	/*
+	 * @return a read-only view of the results of the phase (null if the phase is not complete)
+	 */
+	private <E> Set<E> completedView(Phase phase, Set<E> view)
+	{
+		return completed(phase) ? Collections.unmodifiableSet(view) : null;
+	}
+
+	/*
+	 * Discard the results of every phase; the points and given segments
+	 * are read again when the first phase is next needed.
+	 */
+	private void reset()
+	{
+		_updater = null;
+		_phase = Phase.NONE;
+
+		_incidence = null;
+		_discoveredPoints.clear();
+		_figure = null;
+
+		_pointRegistry.clear();
+		_segments.clear();
+	}
+
+	/*
+	 * @return whether the phase (and so every phase before it) is complete
+	 */
+	private boolean completed(Phase phase) { return _phase.compareTo(phase) >= 0; }
+
+	/**
+	 * Implicit Points (needs: nothing)
+	 */
+	protected void implicitPointPhase()
+	{
+		if (completed(Phase.IMPLICIT_POINTS)) return;
+
+		synchronized (this)
+		{
+			if (completed(Phase.IMPLICIT_POINTS)) return;
+
+			// Ids for the named points first
+			_pointDatabase.getPoints().forEach(_pointRegistry::register);
+			_segments.addAll(_givenSegments, SegmentTable.GIVEN);
+
+			_incidence = ImplicitPointPreprocessor.computeIncidence(_pointDatabase, new ArrayList<Segment>(_givenSegments), _engine, _precision, _control, _parallel);
+			_discoveredPoints.addAll(_incidence.getPoints());
+
+			_phase = Phase.IMPLICIT_POINTS;
+		}
+	}
+
+	/**
+	 * Implicit Segments attributed to implicit points (needs: implicit points)
+	 */
+	protected void implicitSegmentPhase()
+	{
+		if (completed(Phase.IMPLICIT_SEGMENTS)) return;
+
+		synchronized (this)
+		{
+			if (completed(Phase.IMPLICIT_SEGMENTS)) return;
+			implicitPointPhase();
 
-		_segmentDatabase = new HashMap<Segment, Segment>();
+			_segments.addAll(computeImplicitBaseSegments(_incidence), SegmentTable.IMPLICIT);
 
-		analyze();
+			_phase = Phase.IMPLICIT_SEGMENTS;
+		}
 	}
 
 	/**
-	 * Invoke the precomputation procedure.
+	 * Combine the given minimal segments and implicit segments into a true set of minimal segments
+	 *     * givenSegments may not be minimal
+	 * (needs: implicit segments)
 	 */
-	public void analyze()
+	protected void minimalSegmentPhase()
 	{
-		//
-		// Implicit Points
-		//
-		_implicitPoints = ImplicitPointPreprocessor.compute(_pointDatabase, new ArrayList<Segment>(_givenSegments));
+		if (completed(Phase.MINIMAL_SEGMENTS)) return;
+
+		synchronized (this)
+		{
+			if (completed(Phase.MINIMAL_SEGMENTS)) return;
+			implicitSegmentPhase();
 
-		//
-		// Implicit Segments attributed to implicit points
-		//
-		_implicitSegments = computeImplicitBaseSegments(_implicitPoints);
+			_segments.addAll(identifyAllMinimalSegments(_incidence, _givenSegments, _implicitSegments), SegmentTable.MINIMAL);
+
+			_phase = Phase.MINIMAL_SEGMENTS;
+		}
+	}
+
+	/**
+	 * Construct all segments inductively from the base segments (needs: minimal segments)
+	 */
+	protected void nonMinimalSegmentPhase()
+	{
+		if (completed(Phase.NON_MINIMAL_SEGMENTS)) return;
 
-		//
-		// Combine the given minimal segments and implicit segments into a true set of minimal segments
-		//     *givenSegments may not be minimal
-		//     * implicitSegmen
-		//
-		_allMinimalSegments = identifyAllMinimalSegments(_implicitPoints, _givenSegments, _implicitSegments);
+		synchronized (this)
+		{
+			if (completed(Phase.NON_MINIMAL_SEGMENTS)) return;
+			minimalSegmentPhase();
 
-		//
-		// Construct all segments inductively from the base segments
-		//
-		_nonMinimalSegments = constructAllNonMinimalSegments(_allMinimalSegments);
+			_segments.addAll(constructAllNonMinimalSegments(_allMinimalSegments), SegmentTable.NON_MINIMAL);
+
+			_phase = Phase.NON_MINIMAL_SEGMENTS;
+		}
+	}
+
+	/**
+	 * Minimal and non-minimal segments together are our database, a view of the
+	 * table (needs: minimal and non-minimal segments)
+	 */
+	protected void segmentDatabasePhase()
+	{
+		if (completed(Phase.SEGMENT_DATABASE)) return;
+
+		synchronized (this)
+		{
+			if (completed(Phase.SEGMENT_DATABASE)) return;
+			nonMinimalSegmentPhase();
+
+			_phase = Phase.SEGMENT_DATABASE;
+		}
+	}
+
+	/*
+	 * Complete every phase with a stored figure (see PreprocessorFile): the
+	 * collections read it (decoding only what is read) until the next
+	 * analyze() or edit computes the figure again.
+	 */
+	synchronized void restore(MappedFigure figure)
+	{
+		reset();
 
-		//
-		// Combine minimal and non-minimal into one package: our database
-		//
-		_allMinimalSegments.forEach((segment) -> _segmentDatabase.put(segment, segment));
-		_nonMinimalSegments.forEach((segment) -> _segmentDatabase.put(segment, segment));
+		_figure = figure;
+		_phase = Phase.SEGMENT_DATABASE;
+	}
+
+	/**
+	 * The size of the figure without building it: the implicit points are
+	 * found (the first phase), but minimal and non-minimal segments are only
+	 * counted. Each line chain of k points spans k * (k - 1) / 2 segments of
+	 * the segment database; no Segment is created.
+	 * 
+	 * The counts are exact unless minimal segments overlap (a named point inside
+	 * an implicit piece leaves both the piece and its parts minimal); the
+	 * segment count is then an upper bound.
+	 * 
+	 * @return the numbers of implicit points, minimal segments and segments
+	 */
+	public FigureCounts count()
+	{
+		if (completed(Phase.SEGMENT_DATABASE))
+		{
+			return new FigureCounts(_implicitPoints.size(), _allMinimalSegments.size(), _segmentDatabase.size());
+		}
+
+		implicitPointPhase();
+
+		SpanCounter counter = new SpanCounter(new PointRegistry(_pointDatabase));
+
+		if (completed(Phase.MINIMAL_SEGMENTS))
+		{
+			for (Segment seg : _allMinimalSegments) counter.add(seg.getPoint1(), seg.getPoint2());
+		}
+		else
+		{
+			// As (and in the order) the implicit and minimal segment phases would
+			// find them: see computeImplicitBaseSegments and identifyAllMinimalSegments
+			for (Segment seg : _givenSegments)
+			{
+				if (_incidence.pointsOn(seg).isEmpty()) continue;
+
+				// The pieces of the segment split at its implicit points
+				SortedSet<Point> pointsOn = new TreeSet<Point>(_incidence.pointsOn(seg));
+				pointsOn.add(seg.getPoint1());
+				pointsOn.add(seg.getPoint2());
+
+				Point previous = null;
+				for (Point pt : pointsOn)
+				{
+					if (previous != null) counter.add(previous, pt);
+					previous = pt;
+				}
+			}
+
+			PointLineIndex index = new PointLineIndex(new ArrayList<Segment>(_givenSegments), _pointDatabase.getPoints());
+			for (Segment seg : _givenSegments)
+			{
+				if (_incidence.pointsOn(seg).isEmpty() && index.pointsOn(seg).size() <= 2) counter.add(seg.getPoint1(), seg.getPoint2());
+			}
+		}
+
+		return new FigureCounts(_implicitPoints.size(), counter.minimalCount(), counter.spanCount());
+	}
+
+	/**
+	 * The segment database without building it: its segments are spanned by
+	 * the chains of minimal segments along each line and are produced as
+	 * they are consumed. Only the minimal segments are computed (and stored).
+	 * 
+	 * @return the segments of the segment database (in the order of the chains)
+	 */
+	public Spliterator<Segment> segmentSpliterator()
+	{
+		MappedFigure figure = _figure;
+
+		return SegmentSpliterator.of(figure != null ? figure.chains() : LineChains.compute(_allMinimalSegments));
+	}
+
+	/**
+	 * @return a stream of the segment database (see segmentSpliterator);
+	 *         it may be made parallel
+	 */
+	public Stream<Segment> segmentStream()
+	{
+		return StreamSupport.stream(segmentSpliterator(), false);
+	}
+
+	/**
+	 * Hand each segment of the segment database to the sink as it is
+	 * produced (see segmentSpliterator).
+	 * 
+	 * @param sink -- receives the segments
+	 */
+	public void forEachSegment(SegmentSink sink)
+	{
+		segmentSpliterator().forEachRemaining(sink::accept);
+	}
+
+	/**
+	 * Add a segment to the figure (its endpoints are added to the point database)
+	 * and update the preprocessed figure accordingly; only segments near the
+	 * new segment are reexamined.
+	 * 
+	 * @param segment -- a segment
+	 * @return the points and segments (of the segment database) added or removed
+	 * @throws IllegalArgumentException if an endpoint is off the grid of the precision (if any)
+	 */
+	public synchronized PreprocessorDelta addSegment(Segment segment)
+	{
+		if (_precision != null)
+		{
+			requireOnGrid(_precision, segment.getPoint1().getX(), segment.getPoint1().getY());
+			requireOnGrid(_precision, segment.getPoint2().getX(), segment.getPoint2().getY());
+		}
+
+		return updater().addSegment(segment);
+	}
+
+	/**
+	 * Remove a given segment from the figure (its endpoints remain in the point database).
+	 * 
+	 * @param segment -- a given segment
+	 * @return the points and segments (of the segment database) added or removed
+	 */
+	public synchronized PreprocessorDelta removeSegment(Segment segment)
+	{
+		return updater().removeSegment(segment);
+	}
+
+	/**
+	 * Add a named point to the figure; an implicit point at the same
+	 * location becomes a named point.
+	 * 
+	 * @param name -- the name of the point
+	 * @param x, y -- the coordinates of the point
+	 * @return the points and segments (of the segment database) added or removed
+	 * @throws IllegalArgumentException if the point is off the grid of the precision (if any)
+	 */
+	public synchronized PreprocessorDelta addPoint(String name, double x, double y)
+	{
+		if (_precision != null) requireOnGrid(_precision, x, y);
+
+		return updater().addPoint(name, x, y);
+	}
+
+	/**
+	 * @return the implicit points with the given segments crossing at each
+	 *         (and the implicit points on each given segment)
+	 */
+	public ImplicitPointIncidence getImplicitPointIncidence()
+	{
+		// Edits keep their own bookkeeping of crossings
+		if (_updater != null) return _updater.incidence();
+
+		MappedFigure figure = _figure;
+		if (figure != null) return figure.incidence();
+
+		implicitPointPhase();
+		return _incidence;
+	}
+
+	private IncrementalUpdater updater()
+	{
+		if (_updater == null)
+		{
+			// The updater rebuilds every collection from its own bookkeeping;
+			// the phases it replaces are not computed
+			reset();
+			_pointDatabase.getPoints().forEach(_pointRegistry::register);
+			_phase = Phase.SEGMENT_DATABASE;
+
+			_updater = new IncrementalUpdater(this);
+		}
+
+		return _updater;
 	}
 
 	/**
@@ -102,9 +595,11 @@ public class Preprocessor
 
 		Set<Segment> segments = new LinkedHashSet<Segment>();
 
+		PointLineIndex index = new PointLineIndex(new ArrayList<Segment>(_givenSegments), implicitPoints);
+
 		for(Segment seg: _givenSegments) {
 			//get the internal points on current segment and add the endpoints
-			SortedSet<Point> pointsOn = seg.collectOrderedPointsOnSegment(implicitPoints);
+			SortedSet<Point> pointsOn = index.pointsOn(seg);
 			pointsOn.add(seg.getPoint1());
 			pointsOn.add(seg.getPoint2());
 
@@ -116,6 +611,33 @@ public class Preprocessor
 		return segments;
 	}
 
+	/**
+	 * Implicit base segments from the recorded incidence: each given segment
+	 * is split at the implicit points it crosses (no geometric search).
+	 * 
+	 * @param incidence -- the implicit points on each given segment
+	 * @return a set of implicit base segments
+	 */
+	protected Set<Segment> computeImplicitBaseSegments(ImplicitPointIncidence incidence){
+
+		Set<Segment> segments = new LinkedHashSet<Segment>();
+
+		_control.begin(IMPLICIT_SEGMENT_TASK, _givenSegments.size());
+
+		for(Segment seg: _givenSegments) {
+			_control.advance(1);
+			if (incidence.pointsOn(seg).isEmpty()) continue;
+
+			SortedSet<Point> pointsOn = new TreeSet<Point>(incidence.pointsOn(seg));
+			pointsOn.add(seg.getPoint1());
+			pointsOn.add(seg.getPoint2());
+
+			segments.addAll(getAllSegments(pointsOn));
+		}
+
+		return segments;
+	}
+
 	/**
 	 * Creates a list of all segments using a given set of points
 	 * if there are more than just the two endpoints.
@@ -157,16 +679,16 @@ public class Preprocessor
 		//all implicit segments will be in the Minimal Segments
 		minSegments.addAll(implicitSegments);
 
-		Set<Point> points = new HashSet<Point>();
+		List<Point> points = new ArrayList<Point>(_pointDatabase.getPoints());
 
-		points.addAll(_pointDatabase.getPoints());
 		points.addAll(implicitPoints);
 
+		PointLineIndex index = new PointLineIndex(new ArrayList<Segment>(givenSegments), points);
 
 		for (Segment seg : givenSegments) {
 			//check all the points for the givenSegments to make sure we have added 
 			//all valid minimalSegments
-			SortedSet <Point> segmentPoints = seg.collectOrderedPointsOnSegment(points);
+			SortedSet <Point> segmentPoints = index.pointsOn(seg);
 
 			//shouldn't be more than 2 points on a segment
 			if(segmentPoints.size() <= 2)
@@ -181,39 +703,62 @@ public class Preprocessor
 
 	}
 
-	//rewrite: add minimal segments onto things:
-	// 		while loop based on a queue
-	//		then for loop adding a segment each time
-	// 		do test on A------B----C----D----E  (transitive closure)
-	
-	//		ex: 1seg + 1seg = 2seg
-	//			2seg + 1seg = 3seg
-	//			3seg + 1seg = 4seg, etc 
+	/**
+	 * Minimal segments using the recorded incidence: only the named points
+	 * on each given segment are searched for; its implicit points are known.
+	 * @param incidence -- the implicit points on each given segment
+	 * @param givenSegments
+	 * @param implicitSegments
+	 * @return set of all minimal segments in the given figure
+	 */
+	protected Set<Segment> identifyAllMinimalSegments(ImplicitPointIncidence incidence, Set<Segment> givenSegments, Set<Segment> implicitSegments){
+
+		Set<Segment> minSegments = new LinkedHashSet<Segment>(implicitSegments);
+
+		_control.begin(MINIMAL_SEGMENT_TASK, givenSegments.size());
+
+		PointLineIndex index = new PointLineIndex(new ArrayList<Segment>(givenSegments), _pointDatabase.getPoints());
+
+		for (Segment seg : givenSegments) {
+			if (incidence.pointsOn(seg).size() + index.pointsOn(seg).size() <= 2) minSegments.add(seg);
+			_control.advance(1);
+		}
+
+		return minSegments;
+	}
+
+	/**
+	 * Constructs every non-minimal segment: the transitive closure of the
+	 * minimal segments joined end to end along a line.
+	 * ex:
+	 * 		A------B----C----D----E -> minimal: AB, BC, CD, DE
+	 * 		                        -> non-minimal: AC, AD, AE, BD, BE, CE
+	 * 
+	 * Minimal segments are grouped by supporting line (as chains of ordered points);
+	 * every span (i, j) with j > i + 1 of a chain is a non-minimal segment.
+	 * 
+	 * @param minimalSegments
+	 * @return the set of all non-minimal segments
+	 */
 	protected Set<Segment> constructAllNonMinimalSegments(Set<Segment> minimalSegments){
 
-		Set<Segment> segments = new HashSet<Segment>();
+		Set<Segment> segments = new LinkedHashSet<Segment>();
 
-		for(Segment minSeg1: minimalSegments) {
-			//test all minimal segments against each other
-			for(Segment minSeg2: minimalSegments) {
-				if(!minSeg1.equals(minSeg2) && minSeg1.coincideWithoutOverlap(minSeg2)) {
-					//find point that is shared by both segments
-					Point sharedPoint = minSeg1.sharedVertex(minSeg2);
+		List<List<Point>> chains = LineChains.compute(minimalSegments);
 
-					if(sharedPoint != null) {
-						//create segment of the points that are not shared (non-minimal)
-						Segment nonMinSeg = new Segment(minSeg1.other(sharedPoint), minSeg2.other(sharedPoint));
-						segments.add(nonMinSeg);
-					}	
-				}
-			}
+		long total = 0;
+		for (List<Point> chain : chains) total += (long)Math.max(chain.size() - 2, 0) * Math.max(chain.size() - 1, 0) / 2;
+		_control.begin(NON_MINIMAL_SEGMENT_TASK, total);
 
-			//also must check the given segments against the minimal segments
-			for(Segment s: _givenSegments) {
-				if(!s.equals(minSeg1) && s.HasSubSegment(minSeg1))
-					segments.add(s); 
+		for (List<Point> chain : chains) {
+			for (int i = 0; i < chain.size(); i++) {
+				for (int j = i + 2; j < chain.size(); j++) {
+					segments.add(new Segment(chain.get(i), chain.get(j)));
+				}
+				if (i + 2 < chain.size()) _control.advance(chain.size() - i - 2);
 			}
 		}
+
 		return segments;
 	}
 }
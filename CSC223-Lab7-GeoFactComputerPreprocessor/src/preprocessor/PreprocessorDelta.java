@@ -0,0 +1,67 @@
+package preprocessor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+
+/**
+ * The change to a preprocessed figure caused by one edit
+ * (see Preprocessor.addSegment, removeSegment and addPoint).
+ *
+ * Segments refer to the segment database (minimal and non-minimal segments);
+ * points refer to both named points and implicit points.
+ */
+public class PreprocessorDelta
+{
+	protected List<Point> _addedPoints;
+	protected List<Point> _removedPoints;
+
+	// Net change of each segment touched by the edit: +1 added, -1 removed, 0 unchanged
+	protected Map<Segment, Integer> _segmentChanges;
+
+	public PreprocessorDelta()
+	{
+		_addedPoints = new ArrayList<Point>();
+		_removedPoints = new ArrayList<Point>();
+		_segmentChanges = new LinkedHashMap<Segment, Integer>();
+	}
+
+	public List<Point> getAddedPoints() { return Collections.unmodifiableList(_addedPoints); }
+	public List<Point> getRemovedPoints() { return Collections.unmodifiableList(_removedPoints); }
+
+	public List<Segment> getAddedSegments() { return segmentsWithChange(1); }
+	public List<Segment> getRemovedSegments() { return segmentsWithChange(-1); }
+
+	public boolean isEmpty()
+	{
+		return _addedPoints.isEmpty() && _removedPoints.isEmpty() &&
+			   getAddedSegments().isEmpty() && getRemovedSegments().isEmpty();
+	}
+
+	void pointAdded(Point pt) { _addedPoints.add(pt); }
+	void pointRemoved(Point pt) { _removedPoints.add(pt); }
+
+	void segmentAdded(Segment seg) { _segmentChanges.merge(seg, 1, Integer::sum); }
+	void segmentRemoved(Segment seg) { _segmentChanges.merge(seg, -1, Integer::sum); }
+
+	private List<Segment> segmentsWithChange(int change)
+	{
+		List<Segment> segments = new ArrayList<Segment>();
+
+		_segmentChanges.forEach((seg, net) -> { if (net == change) segments.add(seg); });
+
+		return segments;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "+points " + _addedPoints + " -points " + _removedPoints +
+			   " +segments " + getAddedSegments() + " -segments " + getRemovedSegments();
+	}
+}
@@ -0,0 +1,264 @@
+package preprocessor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+import geometry_objects.points.PointRegistry;
+import preprocessor.delegates.ImplicitPointIncidence;
+import preprocessor.delegates.LineChains;
+
+/**
+ * A preprocessed figure in a compact binary file, so a figure is analyzed
+ * once and later opened without parsing or recomputing anything.
+ *
+ * The file is a header and sections of fixed-width records (see MappedFigure
+ * for the layout): the points, the given, implicit and minimal segments as
+ * pairs of point ids, the incidence of the implicit points and the chains of
+ * minimal segments along each line. Non-minimal segments are not stored: they
+ * are the spans of the chains.
+ *
+ * A file is memory-mapped read-only and its records are decoded when they
+ * are read, so opening a figure and querying getAllSegments costs almost
+ * nothing, and processes opening one file share its pages. A file is written
+ * beside its target and moved into place: a reader never sees a partly written
+ * file, and a mapped file never changes under its readers.
+ */
+public class PreprocessorFile
+{
+	public static final int MAGIC = 0x47465050; // "GFPP"
+	public static final int VERSION = 2;
+
+	/**
+	 * Write the preprocessed figure (analyzing the phases through the minimal
+	 * segments if they are not complete).
+	 *
+	 * @param pp -- a preprocessor
+	 * @param path -- the file to (over)write
+	 * @throws IOException
+	 */
+	public static void write(Preprocessor pp, Path path) throws IOException
+	{
+		Set<Segment> minimal = pp.getMinimalSegments();
+
+		List<Point> named = new ArrayList<Point>(pp._pointDatabase.getPoints());
+		List<Point> implicit = new ArrayList<Point>(pp.getImplicitPoints());
+		List<Segment> given = new ArrayList<Segment>(pp._givenSegments);
+		List<Segment> implicitSegments = new ArrayList<Segment>(pp.getImplicitSegments());
+		List<Segment> minimalSegments = new ArrayList<Segment>(minimal);
+		ImplicitPointIncidence incidence = pp.getImplicitPointIncidence();
+		List<List<Point>> chains = LineChains.compute(minimal);
+
+		// Ids: the named points, then the implicit points
+		PointRegistry ids = new PointRegistry(pp._pointDatabase);
+		for (Point pt : implicit) ids.register(pt);
+		if (ids.size() != named.size() + implicit.size()) throw new IllegalStateException("implicit points repeat");
+
+		List<Point> points = new ArrayList<Point>(named);
+		points.addAll(implicit);
+
+		Map<Segment, Integer> givenIndex = new HashMap<Segment, Integer>();
+		for (int k = 0; k < given.size(); k++) givenIndex.put(given.get(k), k);
+
+		int incidenceCount = 0;
+		for (Point pt : implicit) incidenceCount += incidence.segmentsThrough(pt).size();
+
+		int chainPointCount = 0;
+		for (List<Point> chain : chains) chainPointCount += chain.size();
+
+		byte[] engine = pp._engine.name().getBytes(StandardCharsets.UTF_8);
+		List<byte[]> names = new ArrayList<byte[]>();
+		int stringBytes = engine.length;
+		for (Point pt : named)
+		{
+			names.add(pt.getName().getBytes(StandardCharsets.UTF_8));
+			stringBytes += names.get(names.size() - 1).length;
+		}
+
+		long size = 4L * MappedFigure.HEADER_INTS + 16L * points.size() + 8L * named.size() + 4L * points.size()
+				  + 8L * (given.size() + implicitSegments.size() + minimalSegments.size())
+				  + 4L * (implicit.size() + 1 + incidenceCount) + 4L * (chains.size() + 1 + chainPointCount)
+				  + 4L * (points.size() + 1) + 8L * chainPointCount + stringBytes;
+		if (size > Integer.MAX_VALUE) throw new IOException("the figure is too large for a file");
+
+		ByteBuffer out = ByteBuffer.allocate((int)size);
+
+		//
+		// Header
+		//
+		out.putInt(MAGIC).putInt(VERSION);
+		out.putInt(pp._precision == null ? -1 : pp._precision.getDecimals());
+		out.putInt(engine.length);
+		out.putInt(named.size()).putInt(implicit.size());
+		out.putInt(given.size()).putInt(implicitSegments.size()).putInt(minimalSegments.size());
+		out.putInt(incidenceCount).putInt(chains.size()).putInt(chainPointCount).putInt(stringBytes);
+		out.putInt(0);
+
+		//
+		// Points: coordinates, names and the ids sorted by x
+		//
+		for (Point pt : points) out.putDouble(pt.getX()).putDouble(pt.getY());
+
+		int offset = engine.length;
+		for (byte[] name : names)
+		{
+			out.putInt(offset).putInt(name.length);
+			offset += name.length;
+		}
+
+		Integer[] byX = new Integer[points.size()];
+		for (int id = 0; id < byX.length; id++) byX[id] = id;
+		Arrays.sort(byX, Comparator.comparingDouble((Integer id) -> points.get(id).getX()).thenComparingDouble(id -> points.get(id).getY()));
+		for (int id : byX) out.putInt(id);
+
+		//
+		// Segments: the given ones in order, the others sorted for lookup
+		//
+		putSegments(out, given, ids, false);
+		putSegments(out, implicitSegments, ids, true);
+		putSegments(out, minimalSegments, ids, true);
+
+		//
+		// Incidence: the given segments through each implicit point
+		//
+		int start = 0;
+		for (Point pt : implicit)
+		{
+			out.putInt(start);
+			start += incidence.segmentsThrough(pt).size();
+		}
+		out.putInt(start);
+
+		for (Point pt : implicit)
+		{
+			for (Segment seg : incidence.segmentsThrough(pt)) out.putInt(givenIndex.get(seg));
+		}
+
+		//
+		// Chains, then the chains through each point (by chain)
+		//
+		start = 0;
+		for (List<Point> chain : chains)
+		{
+			out.putInt(start);
+			start += chain.size();
+		}
+		out.putInt(start);
+
+		int[] memberCounts = new int[points.size()];
+		for (List<Point> chain : chains)
+		{
+			for (Point pt : chain)
+			{
+				int id = id(ids, pt);
+				out.putInt(id);
+				memberCounts[id]++;
+			}
+		}
+
+		int[] memberStarts = new int[points.size() + 1];
+		for (int id = 0; id < points.size(); id++) memberStarts[id + 1] = memberStarts[id] + memberCounts[id];
+		for (int memberStart : memberStarts) out.putInt(memberStart);
+
+		int members = out.position();
+		int[] next = Arrays.copyOf(memberStarts, points.size());
+		for (int c = 0; c < chains.size(); c++)
+		{
+			List<Point> chain = chains.get(c);
+			for (int position = 0; position < chain.size(); position++)
+			{
+				int member = next[id(ids, chain.get(position))]++;
+				out.putInt(members + 8 * member, c).putInt(members + 8 * member + 4, position);
+			}
+		}
+		out.position(members + 8 * chainPointCount);
+
+		//
+		// Strings
+		//
+		out.put(engine);
+		for (byte[] name : names) out.put(name);
+
+		Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+		try
+		{
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+			{
+				out.flip();
+				while (out.hasRemaining()) channel.write(out);
+			}
+
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally
+		{
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/*
+	 * Pairs of point ids; sorted by (smaller id, larger id) if sorted
+	 */
+	private static void putSegments(ByteBuffer out, List<Segment> segments, PointRegistry ids, boolean sorted)
+	{
+		int[][] pairs = new int[segments.size()][];
+		for (int k = 0; k < pairs.length; k++)
+		{
+			pairs[k] = new int[] { id(ids, segments.get(k).getPoint1()), id(ids, segments.get(k).getPoint2()) };
+		}
+
+		if (sorted)
+		{
+			Arrays.sort(pairs, Comparator.comparingInt((int[] pair) -> Math.min(pair[0], pair[1])).thenComparingInt(pair -> Math.max(pair[0], pair[1])));
+		}
+
+		for (int[] pair : pairs) out.putInt(pair[0]).putInt(pair[1]);
+	}
+
+	/**
+	 * @param path -- a file written by write
+	 * @return a preprocessor with every phase complete: its collections read
+	 *         the mapped file, decoding only the records read (a record found
+	 *         damaged then is reported with an UncheckedIOException)
+	 * @throws IOException if the file is not a preprocessed figure (of this version)
+	 */
+	public static Preprocessor read(Path path) throws IOException
+	{
+		MappedFigure figure;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			if (channel.size() > Integer.MAX_VALUE) throw new IOException(path + " is too large to map");
+
+			figure = new MappedFigure(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), path.toString());
+		}
+
+		Preprocessor pp = new Preprocessor(figure.pointDatabase(), new LinkedHashSet<Segment>(figure.givenSegments()),
+				                           figure.engine(), figure.precision());
+		pp.restore(figure);
+
+		return pp;
+	}
+
+	private static int id(PointRegistry ids, Point pt)
+	{
+		int id = ids.idOf(pt);
+		if (id == PointRegistry.UNREGISTERED) throw new IllegalStateException(pt + " is not a point of the figure");
+
+		return id;
+	}
+}
@@ -0,0 +1,13 @@
+package preprocessor;
+
+import geometry_objects.Segment;
+
+/*
+ * Receives the segments of the segment database one at a time, as they are
+ * produced (see Preprocessor.forEachSegment); nothing is stored for it.
+ */
+@FunctionalInterface
+public interface SegmentSink
+{
+	void accept(Segment segment);
+}
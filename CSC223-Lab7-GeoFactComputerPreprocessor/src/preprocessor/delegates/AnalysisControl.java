@@ -0,0 +1,123 @@
+package preprocessor.delegates;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import preprocessor.exception.AnalysisInterruptedException;
+
+/**
+ * Cooperative control of a long analysis: a time budget, a cancellation
+ * flag and a progress listener.
+ *
+ * The loops of an analysis call advance (or check) as they go; once the
+ * budget has run out or the analysis has been cancelled, the call throws
+ * an AnalysisInterruptedException. A control may be cancelled from any
+ * thread and is shared by the tasks of a parallel computation.
+ */
+public class AnalysisControl
+{
+	/**
+	 * Receives the progress of each task of an analysis; it may be called
+	 * from several threads at once.
+	 */
+	@FunctionalInterface
+	public interface ProgressListener
+	{
+		/**
+		 * @param task -- the task in progress
+		 * @param done -- the units of work done (e.g., pairs of segments examined)
+		 * @param total -- the units of work of the task
+		 */
+		void progress(String task, long done, long total);
+	}
+
+	// System.nanoTime() at which the budget runs out
+	private final long _deadline;
+	private final boolean _bounded;
+
+	private volatile boolean _cancelled;
+
+	private final ProgressListener _listener;
+	private volatile String _task;
+	private volatile long _total;
+	private final AtomicLong _done;
+
+	/**
+	 * No time budget and no listener: only cancellation stops the analysis.
+	 */
+	public AnalysisControl()
+	{
+		this(null, null);
+	}
+
+	/**
+	 * @param budget -- the time allowed (from now); null for no limit
+	 */
+	public AnalysisControl(Duration budget)
+	{
+		this(budget, null);
+	}
+
+	/**
+	 * @param budget -- the time allowed (from now); null for no limit
+	 * @param listener -- receives progress; null for none
+	 */
+	public AnalysisControl(Duration budget, ProgressListener listener)
+	{
+		_bounded = budget != null;
+		_deadline = _bounded ? System.nanoTime() + budget.toNanos() : 0;
+		_listener = listener;
+
+		_task = "";
+		_done = new AtomicLong();
+	}
+
+	/**
+	 * Stop the analysis at its next check.
+	 */
+	public void cancel() { _cancelled = true; }
+
+	public boolean isCancelled() { return _cancelled; }
+
+	/**
+	 * @throws AnalysisInterruptedException if the analysis is to stop
+	 */
+	public void check()
+	{
+		if (_cancelled) throw new AnalysisInterruptedException(false);
+
+		if (_bounded && System.nanoTime() - _deadline > 0) throw new AnalysisInterruptedException(true);
+	}
+
+	/**
+	 * Start a task (reporting no work done).
+	 * 
+	 * @param task -- the name of the task
+	 * @param total -- the units of work of the task
+	 */
+	public void begin(String task, long total)
+	{
+		_task = task;
+		_total = total;
+		_done.set(0);
+
+		report(0);
+		check();
+	}
+
+	/**
+	 * Record work done on the current task, then check.
+	 * 
+	 * @param units -- the units of work done since the last call
+	 */
+	public void advance(long units)
+	{
+		report(_done.addAndGet(units));
+		check();
+	}
+
+	private void report(long done)
+	{
+		if (_listener != null) _listener.progress(_task, done, _total);
+	}
+}
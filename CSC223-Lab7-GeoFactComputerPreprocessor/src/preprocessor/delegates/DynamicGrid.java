@@ -0,0 +1,113 @@
+package preprocessor.delegates;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A hashed uniform grid supporting insertion and removal of items by bounding box.
+ *
+ * Unlike SegmentGrid (built once for a fixed list), this grid is meant to be
+ * updated one item at a time; only the cells an item covers are touched.
+ * Items covering too many cells are kept in a separate list that every
+ * query examines.
+ *
+ * @param <T> -- the type of item stored
+ */
+public class DynamicGrid<T>
+{
+	// Items whose bounding box covers more than this many cells are 'oversized'
+	private static final long MAX_CELLS_PER_ITEM = 64;
+
+	private final double _cellSize;
+	private final Map<Long, List<T>> _cells;
+	private final List<T> _oversized;
+
+	public DynamicGrid(double cellSize)
+	{
+		_cellSize = cellSize > 0 ? cellSize : 1;
+		_cells = new HashMap<Long, List<T>>();
+		_oversized = new ArrayList<T>();
+	}
+
+	/**
+	 * @param item -- an item
+	 * @param minX, minY, maxX, maxY -- the bounding box of the item
+	 */
+	public void add(T item, double minX, double minY, double maxX, double maxY)
+	{
+		if (isOversized(minX, minY, maxX, maxY)) { _oversized.add(item); return; }
+
+		for (long row = cell(minY); row <= cell(maxY); row++)
+		{
+			for (long col = cell(minX); col <= cell(maxX); col++)
+			{
+				_cells.computeIfAbsent(key(col, row), k -> new ArrayList<T>(2)).add(item);
+			}
+		}
+	}
+
+	/**
+	 * @param item -- an item previously added with the same bounding box
+	 */
+	public void remove(T item, double minX, double minY, double maxX, double maxY)
+	{
+		if (isOversized(minX, minY, maxX, maxY)) { _oversized.remove(item); return; }
+
+		for (long row = cell(minY); row <= cell(maxY); row++)
+		{
+			for (long col = cell(minX); col <= cell(maxX); col++)
+			{
+				List<T> items = _cells.get(key(col, row));
+				if (items == null) continue;
+
+				items.remove(item);
+				if (items.isEmpty()) _cells.remove(key(col, row));
+			}
+		}
+	}
+
+	/**
+	 * @return every item whose cells overlap the given box (a superset of the
+	 *         items whose bounding boxes overlap it)
+	 */
+	public Set<T> near(double minX, double minY, double maxX, double maxY)
+	{
+		Set<T> found = new LinkedHashSet<T>(_oversized);
+
+		if (isOversized(minX, minY, maxX, maxY))
+		{
+			_cells.values().forEach(found::addAll);
+			return found;
+		}
+
+		for (long row = cell(minY); row <= cell(maxY); row++)
+		{
+			for (long col = cell(minX); col <= cell(maxX); col++)
+			{
+				List<T> items = _cells.get(key(col, row));
+				if (items != null) found.addAll(items);
+			}
+		}
+
+		return found;
+	}
+
+	private boolean isOversized(double minX, double minY, double maxX, double maxY)
+	{
+		return (cell(maxX) - cell(minX) + 1) * (cell(maxY) - cell(minY) + 1) > MAX_CELLS_PER_ITEM;
+	}
+
+	private long cell(double coordinate)
+	{
+		return (long)Math.floor(coordinate / _cellSize);
+	}
+
+	private static long key(long col, long row)
+	{
+		return (col << 32) ^ (row & 0xffffffffL);
+	}
+}
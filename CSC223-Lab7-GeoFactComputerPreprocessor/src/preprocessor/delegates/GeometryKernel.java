@@ -0,0 +1,275 @@
+package preprocessor.delegates;
+
+import java.util.List;
+
+import geometry_objects.Segment;
+import geometry_objects.points.PointRegistry;
+import utilities.math.MathUtilities;
+import utilities.math.analytic_geometry.GeometryPredicates;
+
+/**
+ * A columnar (structure-of-arrays) view of a list of segments:
+ *    points:   xs[p], ys[p]
+ *    segments: p1[s], p2[s] (indices into the point columns)
+ * along with the (padded) bounding box of each segment.
+ *
+ * The batch predicates test one segment against a range of points, or a
+ * range of segments against one segment. Each is a counted loop over
+ * primitive arrays with no allocation or early exits (and no calls beyond
+ * small static helpers the JIT inlines), so the JIT is free to unroll and
+ * vectorize it. liesOn and liesBetween then give the points the tolerance
+ * test rejects within the bounding box of the segment the exact test of
+ * GeometryPredicates.onSegment (one at a time; few points reach it).
+ *
+ * The predicates agree with their one-at-a-time counterparts:
+ *    liesOn      -- Segment.pointLiesOnSegment
+ *    liesBetween -- Segment.pointLiesBetweenEndpoints
+ *    overlapping -- a necessary condition for Segment.segmentIntersection
+ *    crossing    -- a necessary condition for a proper crossing (as found by
+ *                   SegmentPairClassifier.crossing)
+ */
+public class GeometryKernel
+{
+	// Point columns
+	private final double[] _xs;
+	private final double[] _ys;
+
+	// Segment columns
+	private final int[] _p1;
+	private final int[] _p2;
+
+	// Padded bounding box of each segment
+	private final double[] _minX;
+	private final double[] _minY;
+	private final double[] _maxX;
+	private final double[] _maxY;
+
+	/**
+	 * @param segments -- a list of segments; segment s of the kernel is segments.get(s)
+	 */
+	public GeometryKernel(List<Segment> segments)
+	{
+		int n = segments.size();
+
+		PointRegistry registry = new PointRegistry();
+		_p1 = new int[n];
+		_p2 = new int[n];
+
+		for (int s = 0; s < n; s++)
+		{
+			_p1[s] = registry.register(segments.get(s).getPoint1());
+			_p2[s] = registry.register(segments.get(s).getPoint2());
+		}
+
+		_xs = new double[registry.size()];
+		_ys = new double[registry.size()];
+		for (int p = 0; p < registry.size(); p++)
+		{
+			_xs[p] = registry.get(p).getX();
+			_ys[p] = registry.get(p).getY();
+		}
+
+		_minX = new double[n];
+		_minY = new double[n];
+		_maxX = new double[n];
+		_maxY = new double[n];
+
+		for (int s = 0; s < n; s++)
+		{
+			_minX[s] = Math.min(_xs[_p1[s]], _xs[_p2[s]]) - MathUtilities.EPSILON;
+			_minY[s] = Math.min(_ys[_p1[s]], _ys[_p2[s]]) - MathUtilities.EPSILON;
+			_maxX[s] = Math.max(_xs[_p1[s]], _xs[_p2[s]]) + MathUtilities.EPSILON;
+			_maxY[s] = Math.max(_ys[_p1[s]], _ys[_p2[s]]) + MathUtilities.EPSILON;
+		}
+	}
+
+	public int segmentCount() { return _p1.length; }
+	public int pointCount() { return _xs.length; }
+
+	public double x(int p) { return _xs[p]; }
+	public double y(int p) { return _ys[p]; }
+
+	public int point1(int s) { return _p1[s]; }
+	public int point2(int s) { return _p2[s]; }
+
+	/**
+	 * Many segments against one: collect the segments in [from, to) whose
+	 * (padded) bounding boxes overlap that of segment s. Segments that
+	 * intersect s are always among them.
+	 *
+	 * @param s -- index of a segment
+	 * @param from, to -- a range of segment indices
+	 * @param out -- receives the overlapping segments (capacity at least to - from)
+	 * @return the number of segments written to out
+	 */
+	public int overlapping(int s, int from, int to, int[] out)
+	{
+		double minX = _minX[s], minY = _minY[s];
+		double maxX = _maxX[s], maxY = _maxY[s];
+
+		int count = 0;
+		for (int t = from; t < to; t++)
+		{
+			boolean overlaps = _minX[t] <= maxX & minX <= _maxX[t] &
+			                   _minY[t] <= maxY & minY <= _maxY[t];
+
+			// Branch-free compaction: always write, advance only on a hit
+			out[count] = t;
+			count += overlaps ? 1 : 0;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Many segments against one: of the candidates, keep those that may
+	 * properly cross segment s. A candidate is dropped when the orientation
+	 * signs show one segment clear to one side of the other (the test of
+	 * SegmentPairClassifier, which then finds no crossing); a sign too close
+	 * to zero to certify keeps the candidate for the one-at-a-time test.
+	 *
+	 * @param s -- index of a segment
+	 * @param candidates -- indices of segments (e.g., from overlapping)
+	 * @param count -- the number of candidates
+	 * @param out -- receives the kept segments (may be candidates itself)
+	 * @return the number of segments written to out
+	 */
+	public int crossing(int s, int[] candidates, int count, int[] out)
+	{
+		double ax = _xs[_p1[s]], ay = _ys[_p1[s]];
+		double bx = _xs[_p2[s]], by = _ys[_p2[s]];
+
+		int kept = 0;
+		for (int c = 0; c < count; c++)
+		{
+			int t = candidates[c];
+			double cx = _xs[_p1[t]], cy = _ys[_p1[t]];
+			double dx = _xs[_p2[t]], dy = _ys[_p2[t]];
+
+			boolean apart = clearOfLine(ax, ay, bx, by, cx, cy, dx, dy) | clearOfLine(cx, cy, dx, dy, ax, ay, bx, by);
+
+			// Branch-free compaction (as in overlapping); out[kept] is never ahead of candidates[c]
+			out[kept] = t;
+			kept += apart ? 0 : 1;
+		}
+
+		return kept;
+	}
+
+	/*
+	 * @return true if C and D certainly lie strictly on the same side of the line AB
+	 *         and clear of it by more than twice EPSILON (see SegmentPairClassifier.separates)
+	 */
+	private static boolean clearOfLine(double ax, double ay, double bx, double by,
+			                           double cx, double cy, double dx, double dy)
+	{
+		int sideC = certainOrientation(ax, ay, bx, by, cx, cy);
+		int sideD = certainOrientation(ax, ay, bx, by, dx, dy);
+
+		double clearance = 2 * MathUtilities.EPSILON;
+		double bound = clearance * clearance * ((bx - ax) * (bx - ax) + (by - ay) * (by - ay));
+		double crossC = GeometryPredicates.cross(ax, ay, bx, by, cx, cy);
+		double crossD = GeometryPredicates.cross(ax, ay, bx, by, dx, dy);
+
+		return sideC != 0 & sideC == sideD & crossC * crossC > bound & crossD * crossD > bound;
+	}
+
+	/*
+	 * @return GeometryPredicates.orientation of a, b, c where its floating point
+	 *         sign is certified by the error bound; 0 where it is not (or is 0)
+	 */
+	private static int certainOrientation(double ax, double ay, double bx, double by, double cx, double cy)
+	{
+		double left = (ax - cx) * (by - cy);
+		double right = (ay - cy) * (bx - cx);
+		double det = left - right;
+
+		boolean certain = Math.abs(det) >= GeometryPredicates.ORIENTATION_ERROR_BOUND * (Math.abs(left) + Math.abs(right));
+
+		return certain ? (det > 0 ? 1 : 0) - (det < 0 ? 1 : 0) : 0;
+	}
+
+	/**
+	 * One segment against many points.
+	 *
+	 * @param s -- index of a segment
+	 * @param xs, ys -- point columns
+	 * @param from, to -- a range of point indices
+	 * @param out -- out[k - from] is set to whether point k lies on the segment
+	 */
+	public void liesOn(int s, double[] xs, double[] ys, int from, int to, boolean[] out)
+	{
+		liesOn(_xs[_p1[s]], _ys[_p1[s]], _xs[_p2[s]], _ys[_p2[s]], xs, ys, from, to, out);
+	}
+
+	/**
+	 * One segment against many points; endpoints are excluded.
+	 */
+	public void liesBetween(int s, double[] xs, double[] ys, int from, int to, boolean[] out)
+	{
+		liesBetween(_xs[_p1[s]], _ys[_p1[s]], _xs[_p2[s]], _ys[_p2[s]], xs, ys, from, to, out);
+	}
+
+	/**
+	 * @param ax, ay, bx, by -- the endpoints of a segment
+	 * @param xs, ys -- point columns
+	 * @param from, to -- a range of point indices
+	 * @param out -- out[k - from] is set to whether point k lies on the segment (endpoints included)
+	 */
+	public static void liesOn(double ax, double ay, double bx, double by,
+			                  double[] xs, double[] ys, int from, int to, boolean[] out)
+	{
+		// See GeometryPredicates.onSegment: the tolerance test (written here without branches) ...
+		double rx = bx - ax, ry = by - ay;
+		double lengthSquared = rx * rx + ry * ry;
+		double epsilonSquared = MathUtilities.EPSILON * MathUtilities.EPSILON;
+
+		for (int k = from; k < to; k++)
+		{
+			double px = xs[k] - ax, py = ys[k] - ay;
+			double qx = xs[k] - bx, qy = ys[k] - by;
+
+			double along = rx * px + ry * py;
+			double cross = rx * py - ry * px;
+
+			double toA = px * px + py * py;
+			double toB = qx * qx + qy * qy;
+			double toLine = cross * cross / lengthSquared;
+
+			double distanceSquared = along <= 0 ? toA : (along >= lengthSquared ? toB : toLine);
+
+			out[k - from] = distanceSquared < epsilonSquared;
+		}
+
+		// ... then, for the few points that fail it within the bounding box, exact collinearity
+		double minX = Math.min(ax, bx), maxX = Math.max(ax, bx);
+		double minY = Math.min(ay, by), maxY = Math.max(ay, by);
+
+		for (int k = from; k < to; k++)
+		{
+			if (out[k - from] || xs[k] < minX || maxX < xs[k] || ys[k] < minY || maxY < ys[k]) continue;
+
+			out[k - from] = GeometryPredicates.orientation(ax, ay, bx, by, xs[k], ys[k]) == 0;
+		}
+	}
+
+	/**
+	 * @param ax, ay, bx, by -- the endpoints of a segment
+	 * @param xs, ys -- point columns
+	 * @param from, to -- a range of point indices
+	 * @param out -- out[k - from] is set to whether point k lies on the segment (endpoints excluded)
+	 */
+	public static void liesBetween(double ax, double ay, double bx, double by,
+			                       double[] xs, double[] ys, int from, int to, boolean[] out)
+	{
+		liesOn(ax, ay, bx, by, xs, ys, from, to, out);
+
+		for (int k = from; k < to; k++)
+		{
+			boolean isA = Math.abs(xs[k] - ax) < MathUtilities.EPSILON & Math.abs(ys[k] - ay) < MathUtilities.EPSILON;
+			boolean isB = Math.abs(xs[k] - bx) < MathUtilities.EPSILON & Math.abs(ys[k] - by) < MathUtilities.EPSILON;
+
+			out[k - from] &= !(isA | isB);
+		}
+	}
+}
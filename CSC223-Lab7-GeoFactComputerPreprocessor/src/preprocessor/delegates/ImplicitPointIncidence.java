@@ -0,0 +1,132 @@
+package preprocessor.delegates;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+import geometry_objects.points.SnappingPointMap;
+
+/**
+ * The incidence between implicit points and the given segments producing them:
+ *    implicit point -> the given segments crossing at the point
+ *    given segment  -> the implicit points in its interior
+ *
+ * Recorded while implicit points are discovered (each crossing pair of
+ * segments contributes both segments), so later phases need not search
+ * for the points on each segment.
+ *
+ * Implicit points are kept in discovery order; a point is identified with
+ * the first equal point recorded.
+ */
+public class ImplicitPointIncidence
+{
+	// Implicit points in discovery order (each canonical instance once)
+	protected List<Point> _points;
+
+	// Keyed by canonical instance
+	protected Map<Point, Set<Segment>> _segmentsThrough;
+
+	// Given segment -> implicit points (in discovery order)
+	protected Map<Segment, Set<Point>> _pointsOn;
+
+	// Lookup of the canonical instance equal to a point
+	protected SnappingPointMap<Point> _canonical;
+
+	public ImplicitPointIncidence()
+	{
+		_points = new ArrayList<Point>();
+		_segmentsThrough = new IdentityHashMap<Point, Set<Segment>>();
+		_pointsOn = new LinkedHashMap<Segment, Set<Point>>();
+		_canonical = new SnappingPointMap<Point>();
+	}
+
+	public int size() { return _points.size(); }
+
+	/**
+	 * @return the implicit points (in discovery order)
+	 */
+	public Set<Point> getPoints() { return new LinkedHashSet<Point>(_points); }
+
+	/**
+	 * @param pt -- a point
+	 * @return the given segments crossing at the (implicit) point; empty if it is not implicit
+	 */
+	public Set<Segment> segmentsThrough(Point pt)
+	{
+		Set<Segment> segments = _segmentsThrough.get(pt);
+		if (segments == null && _canonical.get(pt) != null) segments = _segmentsThrough.get(_canonical.get(pt));
+
+		return segments == null ? Collections.emptySet() : Collections.unmodifiableSet(segments);
+	}
+
+	/**
+	 * @param seg -- a given segment
+	 * @return the implicit points in the interior of the segment (in discovery order)
+	 */
+	public Set<Point> pointsOn(Segment seg)
+	{
+		Set<Point> points = _pointsOn.get(seg);
+
+		return points == null ? Collections.emptySet() : Collections.unmodifiableSet(points);
+	}
+
+	/*
+	 * @param pt -- an implicit point
+	 * @return the recorded point equal to pt (pt itself if there is none)
+	 */
+	Point canonical(Point pt)
+	{
+		Point canonical = _canonical.get(pt);
+
+		return canonical == null ? pt : canonical;
+	}
+
+	/**
+	 * Record that a given segment crosses at an implicit point.
+	 *
+	 * @param pt -- the implicit point (the instance used for it everywhere)
+	 * @param seg -- a given segment through the point
+	 */
+	public void add(Point pt, Segment seg)
+	{
+		Set<Segment> through = _segmentsThrough.get(pt);
+		if (through == null)
+		{
+			_segmentsThrough.put(pt, through = new LinkedHashSet<Segment>());
+			_points.add(pt);
+			if (!_canonical.containsKey(pt)) _canonical.put(pt, pt);
+		}
+
+		through.add(seg);
+		_pointsOn.computeIfAbsent(seg, k -> new LinkedHashSet<Point>()).add(pt);
+	}
+
+	/*
+	 * Record the crossing of two given segments.
+	 */
+	void add(Point pt, Segment seg1, Segment seg2)
+	{
+		add(pt, seg1);
+		add(pt, seg2);
+	}
+
+	/*
+	 * Append the records of another incidence (discovered after those of this one).
+	 */
+	void addAll(ImplicitPointIncidence that)
+	{
+		for (Point pt : that._points)
+		{
+			Point canonical = canonical(pt);
+
+			for (Segment seg : that._segmentsThrough.get(pt)) add(canonical, seg);
+		}
+	}
+}
@@ -1,45 +1,320 @@
 package preprocessor.delegates;
 
-import java.util.LinkedHashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import geometry_objects.Segment;
 import geometry_objects.delegates.intersections.IntersectionDelegate;
-import geometry_objects.delegates.intersections.SegmentIntersectionDelegate;
 import geometry_objects.points.Point;
 import geometry_objects.points.PointDatabase;
+import geometry_objects.points.RationalPoint;
+import preprocessor.exception.AnalysisInterruptedException;
+import utilities.math.FixedPointContext;
 
 public class ImplicitPointPreprocessor
 {
+	// Progress tasks (see AnalysisControl)
+	public static final String PAIRS = "segment pairs";
+	public static final String CANDIDATE_PAIRS = "candidate pairs";
+
+	// Candidate pairs examined between checks of the control
+	private static final int CHECK_INTERVAL = 1 << 12;
+
 	/**
 	 * It is possible that some of the defined segments intersect
 	 * and points that are not named; we need to capture those
 	 * points and name them.
 	 * 
 	 * Algorithm:
-	 *    TODO
+	 *    For each pair of segments (i < j), in order, compute the
+	 *    intersection; any intersection point not already in the
+	 *    database is implicit.
 	 */
 	public static Set<Point> compute(PointDatabase givenPoints, List<Segment> givenSegments)
 	{
-		Set<Point> implicitPoints = new LinkedHashSet<Point>();
+		return compute(givenPoints, givenSegments, IntersectionEngine.ALL_PAIRS);
+	}
 
+	/**
+	 * @param givenPoints -- the database of named points
+	 * @param givenSegments -- the segments provided by the user
+	 * @param engine -- the implementation used to find intersecting pairs of segments
+	 * @return the implicit points; every engine produces the same points
+	 *         in the same (insertion) order
+	 */
+	public static Set<Point> compute(PointDatabase givenPoints, List<Segment> givenSegments, IntersectionEngine engine)
+	{
+		return computeIncidence(givenPoints, givenSegments, engine, null).getPoints();
+	}
 
-		for (Segment seg1 : givenSegments) {
+	/**
+	 * @param givenPoints -- the database of named points
+	 * @param givenSegments -- the segments provided by the user
+	 * @param engine -- the implementation used to find intersecting pairs of segments
+	 * @param precision -- a fixed-point context; null for floating point (with EPSILON)
+	 * @return the implicit points (in the order of the pairs producing them)
+	 */
+	public static Set<Point> compute(PointDatabase givenPoints, List<Segment> givenSegments,
+			                         IntersectionEngine engine, FixedPointContext precision)
+	{
+		return computeIncidence(givenPoints, givenSegments, engine, precision).getPoints();
+	}
+
+	/**
+	 * Implicit points along with the given segments crossing at each.
+	 *
+	 * @param givenPoints -- the database of named points
+	 * @param givenSegments -- the segments provided by the user
+	 * @param engine -- the implementation used to find intersecting pairs of segments
+	 * @param precision -- a fixed-point context; null for floating point (with EPSILON)
+	 * @return the incidence of implicit points and given segments
+	 */
+	public static ImplicitPointIncidence computeIncidence(PointDatabase givenPoints, List<Segment> givenSegments,
+			                                              IntersectionEngine engine, FixedPointContext precision)
+	{
+		return computeIncidence(givenPoints, givenSegments, engine, precision, new AnalysisControl());
+	}
+
+	/**
+	 * Implicit points along with the given segments crossing at each, under a
+	 * time budget / cancellation: the control is checked as pairs of segments
+	 * are examined, and receives the progress of the task "segment pairs"
+	 * (or "candidate pairs" for the engines narrowing the pairs first).
+	 *
+	 * @param control -- checked (and advanced) cooperatively
+	 * @return the incidence of implicit points and given segments
+	 * @throws AnalysisInterruptedException if the budget runs out or the control is cancelled
+	 */
+	public static ImplicitPointIncidence computeIncidence(PointDatabase givenPoints, List<Segment> givenSegments,
+			                                              IntersectionEngine engine, FixedPointContext precision,
+			                                              AnalysisControl control)
+	{
+		return computeIncidence(givenPoints, givenSegments, engine, precision, control, ParallelSettings.COMMON);
+	}
+
+	/**
+	 * @param parallel -- the pool and threshold of the PARALLEL engine (ignored by the others)
+	 * @return the incidence of implicit points and given segments
+	 * @throws AnalysisInterruptedException if the budget runs out or the control is cancelled
+	 */
+	public static ImplicitPointIncidence computeIncidence(PointDatabase givenPoints, List<Segment> givenSegments,
+			                                              IntersectionEngine engine, FixedPointContext precision,
+			                                              AnalysisControl control, ParallelSettings parallel)
+	{
+		if (precision != null) return computeExact(givenPoints, givenSegments, precision, control);
 
-			for (Segment seg2 : givenSegments) {
-				
-				Point p = IntersectionDelegate.segmentIntersection(seg1, seg2);
-				
-				//check that doesn't exist
-				if(p!=null && givenPoints.getPoint(p) == null) {
-					implicitPoints.add(p);
-				}
+		return computeWith(givenPoints, givenSegments, engine, control, parallel);
+	}
+
+	private static ImplicitPointIncidence computeWith(PointDatabase givenPoints, List<Segment> givenSegments,
+			                                          IntersectionEngine engine, AnalysisControl control,
+			                                          ParallelSettings parallel)
+	{
+		switch (engine)
+		{
+			case SWEEP_LINE:
+				return computeFromCandidates(givenPoints, givenSegments,
+						                     consumer -> SweepLine.forEachIntersectingPair(givenSegments, consumer), control);
+
+			case GRID:
+				return computeFromCandidates(givenPoints, givenSegments,
+						                     consumer -> SegmentGrid.forEachCandidatePair(givenSegments, consumer), control);
+
+			case PARALLEL:
+				return ParallelImplicitPointPreprocessor.computeIncidence(givenPoints, givenSegments, parallel, control);
+
+			case ALL_PAIRS:
+			default:
+				return computeAllPairs(givenPoints, givenSegments, control);
+		}
+	}
+
+	/*
+	 * Each unordered pair of segments is examined exactly once; a row of
+	 * pairs (i, i+1..n) is first narrowed in one batch to the segments
+	 * whose bounding boxes overlap segment i, then in a second batch to
+	 * those the orientation signs do not show clear of segment i.
+	 */
+	private static ImplicitPointIncidence computeAllPairs(PointDatabase givenPoints, List<Segment> givenSegments, AnalysisControl control)
+	{
+		ImplicitPointIncidence implicitPoints = new ImplicitPointIncidence();
+
+		GeometryKernel kernel = new GeometryKernel(givenSegments);
+		int[] candidates = new int[givenSegments.size()];
+
+		long n = givenSegments.size();
+		control.begin(PAIRS, n * (n - 1) / 2);
+
+		for (int i = 0; i < givenSegments.size(); i++) {
+
+			int count = kernel.overlapping(i, i + 1, givenSegments.size(), candidates);
+			count = kernel.crossing(i, candidates, count, candidates);
+
+			for (int c = 0; c < count; c++) {
+
+				addImplicitPoint(givenPoints, givenSegments.get(i), givenSegments.get(candidates[c]), implicitPoints);
 			}
 
+			control.advance(n - 1 - i);
 		}
 
 		return implicitPoints;
 	}
 
+	/*
+	 * Engines find candidate pairs out of order; pairs are sorted so the
+	 * points are added in the same order as the all-pairs loop.
+	 */
+	private static ImplicitPointIncidence computeFromCandidates(PointDatabase givenPoints, List<Segment> givenSegments,
+			                                        Consumer<SegmentPairConsumer> engine, AnalysisControl control)
+	{
+		PairCollector pairs = new PairCollector(control);
+
+		control.check();
+		engine.accept(pairs);
+
+		ImplicitPointIncidence implicitPoints = new ImplicitPointIncidence();
+
+		long[] sorted = pairs.sortedDistinct();
+		control.begin(CANDIDATE_PAIRS, sorted.length);
+
+		for (int k = 0; k < sorted.length; k++)
+		{
+			if (k % CHECK_INTERVAL == 0 && k > 0) control.advance(CHECK_INTERVAL);
+
+			addImplicitPoint(givenPoints, givenSegments.get(first(sorted[k])), givenSegments.get(second(sorted[k])), implicitPoints);
+		}
+
+		if (sorted.length > 0) control.advance((sorted.length - 1) % CHECK_INTERVAL + 1);
+
+		return implicitPoints;
+	}
+
+	/*
+	 * Coordinates are snapped to the fixed-point grid; crossings are found
+	 * with exact integer arithmetic and are compared (with each other and with
+	 * the database) exactly, as rationals. Every exactly-crossing pair shares
+	 * a cell of the grid broad phase, whichever engine was requested.
+	 */
+	private static ImplicitPointIncidence computeExact(PointDatabase givenPoints, List<Segment> givenSegments,
+			                                           FixedPointContext precision, AnalysisControl control)
+	{
+		// Segment s: (fixed[4s], fixed[4s + 1]) -- (fixed[4s + 2], fixed[4s + 3])
+		long[] fixed = new long[4 * givenSegments.size()];
+		List<Segment> snapped = new ArrayList<Segment>(givenSegments.size());
+
+		for (int s = 0; s < givenSegments.size(); s++)
+		{
+			Segment seg = givenSegments.get(s);
+			fixed[4 * s]     = precision.toFixed(seg.getPoint1().getX());
+			fixed[4 * s + 1] = precision.toFixed(seg.getPoint1().getY());
+			fixed[4 * s + 2] = precision.toFixed(seg.getPoint2().getX());
+			fixed[4 * s + 3] = precision.toFixed(seg.getPoint2().getY());
+
+			snapped.add(new Segment(new Point(precision.toDouble(fixed[4 * s]), precision.toDouble(fixed[4 * s + 1])),
+					                new Point(precision.toDouble(fixed[4 * s + 2]), precision.toDouble(fixed[4 * s + 3]))));
+		}
+
+		Set<RationalPoint> known = new HashSet<RationalPoint>();
+		for (Point pt : givenPoints.getPoints())
+		{
+			known.add(new RationalPoint(precision.toFixed(pt.getX()), precision.toFixed(pt.getY())));
+		}
+
+		PairCollector pairs = new PairCollector(control);
+		control.check();
+		SegmentGrid.forEachCandidatePair(snapped, pairs);
+
+		// Each exact crossing becomes one Point
+		Map<RationalPoint, Point> crossings = new HashMap<RationalPoint, Point>();
+		ImplicitPointIncidence implicitPoints = new ImplicitPointIncidence();
+
+		long[] sorted = pairs.sortedDistinct();
+		control.begin(CANDIDATE_PAIRS, sorted.length);
+
+		for (int k = 0; k < sorted.length; k++)
+		{
+			if (k % CHECK_INTERVAL == 0 && k > 0) control.advance(CHECK_INTERVAL);
+
+			long pair = sorted[k];
+			int i = 4 * first(pair);
+			int j = 4 * second(pair);
+
+			RationalPoint crossing = FixedPointContext.crossing(fixed[i], fixed[i + 1], fixed[i + 2], fixed[i + 3],
+					                                            fixed[j], fixed[j + 1], fixed[j + 2], fixed[j + 3]);
+
+			if (crossing == null || known.contains(crossing)) continue;
+
+			Point pt = crossings.computeIfAbsent(crossing, precision::toPoint);
+			implicitPoints.add(pt, givenSegments.get(first(pair)), givenSegments.get(second(pair)));
+		}
+
+		if (sorted.length > 0) control.advance((sorted.length - 1) % CHECK_INTERVAL + 1);
+
+		return implicitPoints;
+	}
+
+	/*
+	 * Add the intersection of the segments (if any and if not already in the database);
+	 * equal intersections of several pairs are recorded as one point
+	 */
+	static void addImplicitPoint(PointDatabase givenPoints, Segment seg1, Segment seg2, ImplicitPointIncidence implicitPoints)
+	{
+		Point p = IntersectionDelegate.segmentIntersection(seg1, seg2);
+
+		//check that doesn't exist
+		if(p!=null && givenPoints.getPoint(p) == null) {
+			implicitPoints.add(implicitPoints.canonical(p), seg1, seg2);
+		}
+	}
+
+	private static int first(long pair) { return (int)(pair >>> 32); }
+	private static int second(long pair) { return (int)pair; }
+
+	/*
+	 * Accumulates (i, j) pairs packed into longs; ordering the packed values
+	 * orders the pairs by i, then j. The control is checked every CHECK_INTERVAL
+	 * pairs, so an engine reporting many candidates can still be interrupted.
+	 */
+	private static class PairCollector implements SegmentPairConsumer
+	{
+		private final AnalysisControl _control;
+		private long[] _pairs = new long[16];
+		private int _size = 0;
+
+		PairCollector(AnalysisControl control)
+		{
+			_control = control;
+		}
+
+		@Override
+		public void accept(int i, int j)
+		{
+			if (_size % CHECK_INTERVAL == 0 && _size > 0) _control.check();
+
+			if (_size == _pairs.length) _pairs = Arrays.copyOf(_pairs, 2 * _size);
+
+			_pairs[_size++] = ((long)i << 32) | j;
+		}
+
+		long[] sortedDistinct()
+		{
+			long[] sorted = Arrays.copyOf(_pairs, _size);
+			Arrays.sort(sorted);
+
+			int distinct = 0;
+			for (int k = 0; k < sorted.length; k++)
+			{
+				if (distinct == 0 || sorted[distinct - 1] != sorted[k]) sorted[distinct++] = sorted[k];
+			}
+
+			return Arrays.copyOf(sorted, distinct);
+		}
+	}
 }
@@ -0,0 +1,20 @@
+package preprocessor.delegates;
+
+/*
+ * The selectable implementations of implicit point discovery.
+ */
+public enum IntersectionEngine
+{
+	// Test every pair of given segments: O(n^2)
+	ALL_PAIRS,
+
+	// Bentley-Ottmann sweep: O((n + k) log n) for k intersecting pairs
+	SWEEP_LINE,
+
+	// Uniform-grid broad phase: only segments sharing a grid cell are tested;
+	// cheapest for dense, evenly spread figures
+	GRID,
+
+	// All pairs split across fork / join tasks; same output order as ALL_PAIRS
+	PARALLEL
+}
@@ -0,0 +1,103 @@
+package preprocessor.delegates;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+import utilities.math.analytic_geometry.GeometryUtilities;
+
+/**
+ * Groups minimal segments by their supporting line.
+ *
+ * A chain is a maximal run of collinear minimal segments joined end to end:
+ *
+ *       A-------B-----C---D---------E      chain: A, B, C, D, E
+ *
+ * Chains are found by following, at each endpoint, the one incident segment
+ * that continues in the same direction; the points of a chain are therefore
+ * produced already ordered along the line. Only the segments meeting at a
+ * point are ever compared: O(m + sum of deg(P)^2) predicate calls in total.
+ */
+public class LineChains
+{
+	/**
+	 * @param minimalSegments -- minimal segments (no two of them overlap)
+	 * @return each chain as the ordered list of points along it
+	 */
+	public static List<List<Point>> compute(Collection<Segment> minimalSegments)
+	{
+		Map<Point, List<Segment>> incident = new LinkedHashMap<Point, List<Segment>>();
+		for (Segment seg : minimalSegments)
+		{
+			incident.computeIfAbsent(seg.getPoint1(), k -> new ArrayList<Segment>()).add(seg);
+			incident.computeIfAbsent(seg.getPoint2(), k -> new ArrayList<Segment>()).add(seg);
+		}
+
+		List<List<Point>> chains = new ArrayList<List<Point>>();
+		Set<Segment> visited = new HashSet<Segment>();
+
+		for (Segment seg : minimalSegments)
+		{
+			if (visited.contains(seg)) continue;
+
+			//
+			// Walk backward to the start of the chain
+			//
+			Segment current = seg;
+			Point start = seg.getPoint1();
+			for (int steps = 0; steps < minimalSegments.size(); steps++)
+			{
+				Segment previous = continuation(incident, current, start);
+				if (previous == null || visited.contains(previous)) break;
+
+				start = previous.other(start);
+				current = previous;
+			}
+
+			//
+			// Walk forward collecting the ordered points
+			//
+			List<Point> chain = new ArrayList<Point>();
+			chain.add(start);
+
+			Point from = start;
+			while (current != null && visited.add(current))
+			{
+				Point to = current.other(from);
+				chain.add(to);
+
+				current = continuation(incident, current, to);
+				from = to;
+			}
+
+			chains.add(chain);
+		}
+
+		return chains;
+	}
+
+	/*
+	 * @return the segment incident to endpoint pt of seg that continues seg
+	 *         in a straight line through pt (null if there is none)
+	 */
+	private static Segment continuation(Map<Point, List<Segment>> incident, Segment seg, Point pt)
+	{
+		Point behind = seg.other(pt);
+
+		for (Segment candidate : incident.get(pt))
+		{
+			if (candidate == seg) continue;
+
+			Point ahead = candidate.other(pt);
+			if (ahead != null && GeometryUtilities.between(pt, behind, ahead)) return candidate;
+		}
+
+		return null;
+	}
+}
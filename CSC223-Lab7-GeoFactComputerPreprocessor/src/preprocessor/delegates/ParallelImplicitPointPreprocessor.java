@@ -0,0 +1,177 @@
+package preprocessor.delegates;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+import geometry_objects.points.PointDatabase;
+
+/**
+ * Fork / join implicit point discovery.
+ *
+ * The upper triangle of segment pairs (i < j) is split into bands of
+ * consecutive rows holding roughly the same number of pairs; each band
+ * is a task. Bands are merged in row order, so the resulting set has
+ * exactly the insertion order of the sequential all-pairs loop (and any
+ * names generated from that order are reproducible).
+ */
+public class ParallelImplicitPointPreprocessor
+{
+	// Below this many pairs, a band is not split any further
+	public static final long DEFAULT_SEQUENTIAL_THRESHOLD = 1 << 14;
+
+	/**
+	 * Compute implicit points in the common fork / join pool.
+	 */
+	public static Set<Point> compute(PointDatabase givenPoints, List<Segment> givenSegments)
+	{
+		return computeIncidence(givenPoints, givenSegments).getPoints();
+	}
+
+	/**
+	 * Compute implicit points (and the segments crossing at each) in the common fork / join pool.
+	 */
+	public static ImplicitPointIncidence computeIncidence(PointDatabase givenPoints, List<Segment> givenSegments)
+	{
+		return computeIncidence(givenPoints, givenSegments, new AnalysisControl());
+	}
+
+	/**
+	 * @param control -- checked (and advanced) by each band as it examines its rows
+	 */
+	public static ImplicitPointIncidence computeIncidence(PointDatabase givenPoints, List<Segment> givenSegments,
+			                                              AnalysisControl control)
+	{
+		return computeIncidence(givenPoints, givenSegments, ParallelSettings.COMMON, control);
+	}
+
+	/**
+	 * @param settings -- the pool in which tasks are run and the sequential threshold
+	 * @param control -- checked (and advanced) by each band as it examines its rows
+	 */
+	public static ImplicitPointIncidence computeIncidence(PointDatabase givenPoints, List<Segment> givenSegments,
+			                                              ParallelSettings settings, AnalysisControl control)
+	{
+		return computeIncidence(givenPoints, givenSegments, settings.getPool(), settings.getSequentialThreshold(), control);
+	}
+
+	/**
+	 * @param givenPoints -- the database of named points
+	 * @param givenSegments -- the segments provided by the user
+	 * @param parallelism -- the number of worker threads
+	 * @param sequentialThreshold -- number of pairs below which work is done sequentially
+	 * @return the implicit points (in the same order as the sequential computation)
+	 */
+	public static Set<Point> compute(PointDatabase givenPoints, List<Segment> givenSegments,
+			                         int parallelism, long sequentialThreshold)
+	{
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+
+		try { return computeIncidence(givenPoints, givenSegments, pool, sequentialThreshold, new AnalysisControl()).getPoints(); }
+		finally { pool.shutdown(); }
+	}
+
+	/**
+	 * @param pool -- the pool in which tasks are run
+	 * @param sequentialThreshold -- number of pairs below which work is done sequentially
+	 * @param control -- checked (and advanced) by each band as it examines its rows
+	 */
+	public static ImplicitPointIncidence computeIncidence(PointDatabase givenPoints, List<Segment> givenSegments,
+			                                              ForkJoinPool pool, long sequentialThreshold, AnalysisControl control)
+	{
+		GeometryKernel kernel = new GeometryKernel(givenSegments);
+		BandTask all = new BandTask(givenPoints, givenSegments, kernel, 0, givenSegments.size(), Math.max(1, sequentialThreshold), control);
+
+		control.begin(ImplicitPointPreprocessor.PAIRS, all.pairs());
+
+		// Sequential fallback: not worth handing small figures to the pool
+		if (all.pairs() <= sequentialThreshold) return all.compute();
+
+		return pool.invoke(all);
+	}
+
+	/*
+	 * The pairs (i, j) with lo <= i < hi and i < j.
+	 */
+	@SuppressWarnings("serial")
+	private static class BandTask extends RecursiveTask<ImplicitPointIncidence>
+	{
+		private final PointDatabase _givenPoints;
+		private final List<Segment> _givenSegments;
+		private final GeometryKernel _kernel;
+		private final int _lo;
+		private final int _hi;
+		private final long _threshold;
+		private final AnalysisControl _control;
+
+		private BandTask(PointDatabase givenPoints, List<Segment> givenSegments, GeometryKernel kernel,
+				         int lo, int hi, long threshold, AnalysisControl control)
+		{
+			_givenPoints = givenPoints;
+			_givenSegments = givenSegments;
+			_kernel = kernel;
+			_lo = lo;
+			_hi = hi;
+			_threshold = threshold;
+			_control = control;
+		}
+
+		/*
+		 * @return the number of pairs in rows [lo, hi)
+		 */
+		private long pairs() { return pairsBefore(_hi) - pairsBefore(_lo); }
+
+		/*
+		 * @return the number of pairs in rows [0, row)
+		 */
+		private long pairsBefore(int row)
+		{
+			long n = _givenSegments.size();
+			return row * (2 * n - row - 1) / 2;
+		}
+
+		@Override
+		protected ImplicitPointIncidence compute()
+		{
+			if (_hi - _lo <= 1 || pairs() <= _threshold) return computeSequentially();
+
+			// Split so that both halves hold (about) the same number of pairs
+			long half = pairsBefore(_lo) + pairs() / 2;
+			int mid = _lo + 1;
+			while (mid < _hi - 1 && pairsBefore(mid) < half) mid++;
+
+			BandTask upper = new BandTask(_givenPoints, _givenSegments, _kernel, _lo, mid, _threshold, _control);
+			BandTask lower = new BandTask(_givenPoints, _givenSegments, _kernel, mid, _hi, _threshold, _control);
+
+			lower.fork();
+			ImplicitPointIncidence points = upper.compute();
+			points.addAll(lower.join());
+
+			return points;
+		}
+
+		private ImplicitPointIncidence computeSequentially()
+		{
+			ImplicitPointIncidence implicitPoints = new ImplicitPointIncidence();
+			int[] candidates = new int[_givenSegments.size()];
+
+			for (int i = _lo; i < _hi; i++)
+			{
+				int count = _kernel.overlapping(i, i + 1, _givenSegments.size(), candidates);
+				count = _kernel.crossing(i, candidates, count, candidates);
+
+				for (int c = 0; c < count; c++)
+				{
+					ImplicitPointPreprocessor.addImplicitPoint(_givenPoints, _givenSegments.get(i), _givenSegments.get(candidates[c]), implicitPoints);
+				}
+
+				_control.advance(_givenSegments.size() - 1 - i);
+			}
+
+			return implicitPoints;
+		}
+	}
+}
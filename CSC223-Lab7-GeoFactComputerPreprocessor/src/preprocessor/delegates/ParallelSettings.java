@@ -0,0 +1,31 @@
+package preprocessor.delegates;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Where and how finely the PARALLEL engine splits its work (see
+ * ParallelImplicitPointPreprocessor); the settings do not change the result.
+ */
+public class ParallelSettings
+{
+	// The common fork / join pool with the default threshold
+	public static final ParallelSettings COMMON = new ParallelSettings(null, ParallelImplicitPointPreprocessor.DEFAULT_SEQUENTIAL_THRESHOLD);
+
+	private final ForkJoinPool _pool;
+	private final long _sequentialThreshold;
+
+	/**
+	 * @param pool -- the pool in which tasks are run (null: the common pool)
+	 * @param sequentialThreshold -- number of pairs below which work is done sequentially
+	 */
+	public ParallelSettings(ForkJoinPool pool, long sequentialThreshold)
+	{
+		if (sequentialThreshold < 1) throw new IllegalArgumentException("sequential threshold " + sequentialThreshold);
+
+		_pool = pool;
+		_sequentialThreshold = sequentialThreshold;
+	}
+
+	public ForkJoinPool getPool() { return _pool != null ? _pool : ForkJoinPool.commonPool(); }
+	public long getSequentialThreshold() { return _sequentialThreshold; }
+}
@@ -0,0 +1,190 @@
+package preprocessor.delegates;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+import geometry_objects.points.SnappingPointMap;
+import utilities.math.MathUtilities;
+
+/**
+ * An index of the points lying on a set of segments, grouped by line.
+ *
+ * Each line is identified canonically by its angle theta in [0, pi) and its
+ * signed distance rho from the origin. A point p on the line is located by
+ * its parameter t = p . (cos theta, sin theta). The points of a line are
+ * stored sorted by t. The points on a segment are therefore a range of its
+ * line, and retrieving them costs time proportional to their number
+ * (plus a binary search).
+ *
+ * Building the index tests each point only against the segments near it
+ * (see SegmentGrid).
+ *
+ * The result of pointsOn(segment) is the same as
+ * segment.collectOrderedPointsOnSegment(points) for the indexed points.
+ */
+public class PointLineIndex
+{
+	// The points on a line, sorted by parameter
+	private static class Line
+	{
+		private final double _cos;
+		private final double _sin;
+
+		private final List<Point> _collected = new ArrayList<Point>();
+		private double[] _parameters;
+		private Point[] _points;
+
+		// Coordinate columns of the points (for batch predicates)
+		private double[] _xs;
+		private double[] _ys;
+
+		Line(double theta)
+		{
+			_cos = Math.cos(theta);
+			_sin = Math.sin(theta);
+		}
+
+		double parameter(Point pt) { return pt.getX() * _cos + pt.getY() * _sin; }
+
+		void sort()
+		{
+			_collected.sort(Comparator.comparingDouble(this::parameter));
+
+			// Drop repeats (a point on several segments of the line)
+			List<Point> distinct = new ArrayList<Point>(_collected.size());
+			for (Point pt : _collected)
+			{
+				if (!distinct.isEmpty() && distinct.get(distinct.size() - 1) == pt) continue;
+				distinct.add(pt);
+			}
+
+			_points = distinct.toArray(new Point[0]);
+			_parameters = new double[_points.length];
+			_xs = new double[_points.length];
+			_ys = new double[_points.length];
+			for (int i = 0; i < _points.length; i++)
+			{
+				_parameters[i] = parameter(_points[i]);
+				_xs[i] = _points[i].getX();
+				_ys[i] = _points[i].getY();
+			}
+
+			_collected.clear();
+		}
+
+		/*
+		 * @return the index of the first point with parameter >= t
+		 */
+		int lowerBound(double t)
+		{
+			int lo = 0, hi = _parameters.length;
+			while (lo < hi)
+			{
+				int mid = (lo + hi) >>> 1;
+				if (_parameters[mid] < t) lo = mid + 1;
+				else hi = mid;
+			}
+			return lo;
+		}
+	}
+
+	private final Collection<Point> _points;
+	private final Map<Segment, Line> _lineOf;
+
+	/**
+	 * @param segments -- the segments to be queried
+	 * @param points -- the points to index
+	 */
+	public PointLineIndex(List<Segment> segments, Collection<Point> points)
+	{
+		_points = points;
+		_lineOf = new IdentityHashMap<Segment, Line>(segments.size());
+
+		//
+		// Collinear segments share a line: keyed by (theta, rho)
+		//
+		SnappingPointMap<Line> lines = new SnappingPointMap<Line>(segments.size());
+		for (Segment seg : segments)
+		{
+			double theta = angle(seg);
+			double rho = seg.getPoint1().getY() * Math.cos(theta) - seg.getPoint1().getX() * Math.sin(theta);
+
+			Line line = lines.get(theta, rho);
+			if (line == null)
+			{
+				line = new Line(theta);
+				lines.put(theta, rho, line);
+			}
+
+			_lineOf.put(seg, line);
+		}
+
+		//
+		// File each point under the lines of the segments it lies on
+		//
+		SegmentGrid grid = new SegmentGrid(segments);
+		for (Point pt : points)
+		{
+			grid.forEachSegmentNear(pt.getX(), pt.getY(), s ->
+			{
+				Segment seg = segments.get(s);
+				if (seg.pointLiesOnSegment(pt)) _lineOf.get(seg)._collected.add(pt);
+			});
+		}
+
+		_lineOf.values().stream().distinct().forEach(Line::sort);
+	}
+
+	/*
+	 * @return the angle in [0, pi) of the direction of the segment
+	 */
+	private static double angle(Segment seg)
+	{
+		double theta = Math.atan2(seg.getPoint2().getY() - seg.getPoint1().getY(),
+				                  seg.getPoint2().getX() - seg.getPoint1().getX());
+
+		if (theta < 0) theta += Math.PI;
+		if (theta >= Math.PI) theta -= Math.PI;
+
+		return theta;
+	}
+
+	/**
+	 * @param seg -- one of the indexed segments
+	 * @return the indexed points on the segment (ordered lexicographically)
+	 */
+	public SortedSet<Point> pointsOn(Segment seg)
+	{
+		Line line = _lineOf.get(seg);
+		if (line == null) return seg.collectOrderedPointsOnSegment(new HashSet<Point>(_points));
+
+		SortedSet<Point> pointsOn = new TreeSet<Point>();
+
+		double t1 = line.parameter(seg.getPoint1());
+		double t2 = line.parameter(seg.getPoint2());
+		int from = line.lowerBound(Math.min(t1, t2) - MathUtilities.EPSILON);
+		int to = line.lowerBound(Math.nextUp(Math.max(t1, t2) + MathUtilities.EPSILON));
+
+		// The range lies along the line; test it in one batch
+		boolean[] on = new boolean[to - from];
+		GeometryKernel.liesOn(seg.getPoint1().getX(), seg.getPoint1().getY(),
+				              seg.getPoint2().getX(), seg.getPoint2().getY(),
+				              line._xs, line._ys, from, to, on);
+
+		for (int i = from; i < to; i++)
+		{
+			if (on[i - from]) pointsOn.add(line._points[i]);
+		}
+
+		return pointsOn;
+	}
+}
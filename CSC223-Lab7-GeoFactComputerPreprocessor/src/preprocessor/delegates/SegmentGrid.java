@@ -0,0 +1,240 @@
+package preprocessor.delegates;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import geometry_objects.Segment;
+import utilities.math.MathUtilities;
+
+/**
+ * A uniform-grid spatial hash over a list of segments (a broad phase).
+ *
+ * Each segment is bucketed into every grid cell its (slightly padded)
+ * bounding box covers. Only segments sharing a cell can meet, so only
+ * those pairs are reported as candidates for the exact (narrow phase)
+ * tests such as SegmentIntersectionDelegate.findIntersection.
+ *
+ * The cell size is chosen from the extent of the figure, the number of
+ * segments and their average size so that a typical segment covers a
+ * handful of cells and a typical cell holds a handful of segments.
+ *
+ * A pair sharing several cells is reported exactly once: in the cell
+ * containing the lower-left corner of the overlap of their bounding boxes.
+ */
+public class SegmentGrid
+{
+	// Upper bound on the number of cells per segment in the grid
+	private static final int MAX_CELLS_PER_SEGMENT = 4;
+
+	// Padded bounding box of each segment
+	private final double[] _minX;
+	private final double[] _minY;
+	private final double[] _maxX;
+	private final double[] _maxY;
+
+	private double _originX;
+	private double _originY;
+	private double _cellSize;
+	private int _columns;
+	private int _rows;
+
+	// Compressed cell contents: segments of cell c are
+	//   _cellSegments[_cellStart[c]] ... _cellSegments[_cellStart[c + 1] - 1]
+	private int[] _cellStart;
+	private int[] _cellSegments;
+
+	public int size() { return _minX.length; }
+	public double getCellSize() { return _cellSize; }
+
+	/**
+	 * Report each candidate pair of segments (sharing a grid cell with
+	 * overlapping bounding boxes) exactly once.
+	 *
+	 * @param segments -- a list of segments
+	 * @param consumer -- receives each candidate pair (i < j)
+	 */
+	public static void forEachCandidatePair(List<Segment> segments, SegmentPairConsumer consumer)
+	{
+		new SegmentGrid(segments).forEachCandidatePair(consumer);
+	}
+
+	public SegmentGrid(List<Segment> segments)
+	{
+		int n = segments.size();
+
+		_minX = new double[n];
+		_minY = new double[n];
+		_maxX = new double[n];
+		_maxY = new double[n];
+
+		for (int s = 0; s < n; s++)
+		{
+			Segment seg = segments.get(s);
+			double x1 = seg.getPoint1().getX();
+			double y1 = seg.getPoint1().getY();
+			double x2 = seg.getPoint2().getX();
+			double y2 = seg.getPoint2().getY();
+
+			_minX[s] = Math.min(x1, x2) - MathUtilities.EPSILON;
+			_minY[s] = Math.min(y1, y2) - MathUtilities.EPSILON;
+			_maxX[s] = Math.max(x1, x2) + MathUtilities.EPSILON;
+			_maxY[s] = Math.max(y1, y2) + MathUtilities.EPSILON;
+		}
+
+		sizeGrid();
+		fillCells();
+	}
+
+	/*
+	 * Choose the origin, cell size and dimensions of the grid.
+	 */
+	private void sizeGrid()
+	{
+		int n = size();
+
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		double totalExtent = 0;
+
+		for (int s = 0; s < n; s++)
+		{
+			minX = Math.min(minX, _minX[s]);
+			minY = Math.min(minY, _minY[s]);
+			maxX = Math.max(maxX, _maxX[s]);
+			maxY = Math.max(maxY, _maxY[s]);
+			totalExtent += Math.max(_maxX[s] - _minX[s], _maxY[s] - _minY[s]);
+		}
+
+		if (n == 0)
+		{
+			minX = minY = maxX = maxY = 0;
+		}
+
+		double width = Math.max(maxX - minX, MathUtilities.EPSILON);
+		double height = Math.max(maxY - minY, MathUtilities.EPSILON);
+
+		// Cells roughly as large as a typical segment, but no smaller than
+		// needed to spread the segments evenly over the figure.
+		double averageExtent = n == 0 ? width : totalExtent / n;
+		double evenSpread = Math.sqrt(width * height / Math.max(n, 1));
+
+		_cellSize = Math.max(averageExtent, evenSpread);
+
+		// Guard against degenerate (very thin) figures creating too many cells
+		long maxCells = (long)MAX_CELLS_PER_SEGMENT * Math.max(n, 1);
+		while (cellsAlong(width) * cellsAlong(height) > maxCells) _cellSize *= 2;
+
+		_originX = minX;
+		_originY = minY;
+		_columns = (int)cellsAlong(width);
+		_rows = (int)cellsAlong(height);
+	}
+
+	private long cellsAlong(double length)
+	{
+		return Math.max(1, (long)Math.ceil(length / _cellSize));
+	}
+
+	/*
+	 * Bucket the segments into cells (counting sort into a compressed array).
+	 */
+	private void fillCells()
+	{
+		_cellStart = new int[_columns * _rows + 1];
+
+		for (int s = 0; s < size(); s++)
+		{
+			for (int row = row(_minY[s]); row <= row(_maxY[s]); row++)
+			{
+				for (int col = column(_minX[s]); col <= column(_maxX[s]); col++)
+				{
+					_cellStart[cell(col, row) + 1]++;
+				}
+			}
+		}
+
+		for (int c = 0; c < _columns * _rows; c++) _cellStart[c + 1] += _cellStart[c];
+
+		_cellSegments = new int[_cellStart[_columns * _rows]];
+		int[] next = new int[_columns * _rows];
+		System.arraycopy(_cellStart, 0, next, 0, next.length);
+
+		for (int s = 0; s < size(); s++)
+		{
+			for (int row = row(_minY[s]); row <= row(_maxY[s]); row++)
+			{
+				for (int col = column(_minX[s]); col <= column(_maxX[s]); col++)
+				{
+					_cellSegments[next[cell(col, row)]++] = s;
+				}
+			}
+		}
+	}
+
+	private int column(double x) { return clamp((int)Math.floor((x - _originX) / _cellSize), _columns); }
+	private int row(double y)    { return clamp((int)Math.floor((y - _originY) / _cellSize), _rows); }
+	private int cell(int col, int row) { return row * _columns + col; }
+
+	private static int clamp(int index, int count)
+	{
+		return Math.max(0, Math.min(count - 1, index));
+	}
+
+	/**
+	 * @param i -- index of a segment
+	 * @param j -- index of a segment
+	 * @return true if the (padded) bounding boxes of the segments overlap
+	 */
+	public boolean boundsOverlap(int i, int j)
+	{
+		return _minX[i] <= _maxX[j] && _minX[j] <= _maxX[i] &&
+			   _minY[i] <= _maxY[j] && _minY[j] <= _maxY[i];
+	}
+
+	/**
+	 * Report each candidate pair (i < j) exactly once.
+	 *
+	 * @param consumer -- receives each candidate pair
+	 */
+	public void forEachCandidatePair(SegmentPairConsumer consumer)
+	{
+		for (int c = 0; c < _columns * _rows; c++)
+		{
+			for (int a = _cellStart[c]; a < _cellStart[c + 1]; a++)
+			{
+				for (int b = a + 1; b < _cellStart[c + 1]; b++)
+				{
+					int i = _cellSegments[a];
+					int j = _cellSegments[b];
+
+					if (!boundsOverlap(i, j)) continue;
+
+					// Only the cell holding the corner of the overlap reports the pair
+					int corner = cell(column(Math.max(_minX[i], _minX[j])), row(Math.max(_minY[i], _minY[j])));
+					if (corner != c) continue;
+
+					consumer.accept(Math.min(i, j), Math.max(i, j));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Report each segment whose (padded) bounding box contains (x, y);
+	 * that is, each segment that may contain the point.
+	 *
+	 * @param x, y -- a point
+	 * @param consumer -- receives the index of each candidate segment
+	 */
+	public void forEachSegmentNear(double x, double y, IntConsumer consumer)
+	{
+		int c = cell(column(x), row(y));
+
+		for (int a = _cellStart[c]; a < _cellStart[c + 1]; a++)
+		{
+			int s = _cellSegments[a];
+
+			if (_minX[s] <= x && x <= _maxX[s] && _minY[s] <= y && y <= _maxY[s]) consumer.accept(s);
+		}
+	}
+}
@@ -0,0 +1,13 @@
+package preprocessor.delegates;
+
+/*
+ * Receives pairs of segments (by index into a list of segments)
+ * produced by a pair-generating engine.
+ *
+ * Engines always report a pair with i < j.
+ */
+@FunctionalInterface
+public interface SegmentPairConsumer
+{
+	void accept(int i, int j);
+}
@@ -0,0 +1,245 @@
+package preprocessor.delegates;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+
+/**
+ * The segments spanned by chains of points (see LineChains), produced one
+ * at a time: for a chain P0, P1, ..., Pn every span (i, j) with i < j is
+ * a segment. Over the chains of the minimal segments these are exactly
+ * the segment database:
+ *    j == i + 1 -- the minimal segments
+ *    j >  i + 1 -- the non-minimal segments
+ *
+ * Chains on one line may share points (a named point inside an implicit
+ * piece leaves both the piece and its parts minimal); a span is produced
+ * only by the first chain through both of its endpoints, so no segment
+ * repeats.
+ *
+ * Only the chains are stored. Each row of the enumeration (a chain and
+ * its start point i) is numbered, with the number of segments in the rows
+ * before it; splitting halves the remaining segments, so long chains are
+ * shared among the threads of a parallel stream as well as many short ones.
+ */
+public class SegmentSpliterator implements Spliterator<Segment>
+{
+	private final Point[][] _chains;
+
+	// _shared[c][i]: the earlier chains (sharing at least two points with
+	// chain c) through point i of chain c; null if there are none
+	private final BitSet[][] _shared;
+
+	// Row r: start point _rowPoint[r] of chain _rowChain[r]
+	private final int[] _rowChain;
+	private final int[] _rowPoint;
+
+	// _before[r]: the number of segments in the rows before r
+	private final long[] _before;
+
+	// Remaining: rows [_row, _end), starting at end point _column of row _row
+	private int _row;
+	private final int _end;
+	private int _column;
+
+	/**
+	 * @param chains -- chains of points, each ordered along its line
+	 * @return the segments spanned by the chains
+	 */
+	public static SegmentSpliterator of(List<List<Point>> chains)
+	{
+		int rows = 0;
+		for (List<Point> chain : chains) rows += Math.max(chain.size() - 1, 0);
+
+		Point[][] points = new Point[chains.size()][];
+		for (int c = 0; c < chains.size(); c++) points[c] = chains.get(c).toArray(new Point[0]);
+
+		BitSet[][] shared = shared(points);
+		int[] rowChain = new int[rows];
+		int[] rowPoint = new int[rows];
+		long[] before = new long[rows + 1];
+
+		int row = 0;
+		for (int c = 0; c < chains.size(); c++)
+		{
+			for (int i = 0; i < points[c].length - 1; i++, row++)
+			{
+				rowChain[row] = c;
+				rowPoint[row] = i;
+
+				long count = points[c].length - 1 - i;
+				if (shared[c] != null)
+				{
+					for (int j = i + 1; j < points[c].length; j++)
+					{
+						if (shared[c][i].intersects(shared[c][j])) count--;
+					}
+				}
+				before[row + 1] = before[row] + count;
+			}
+		}
+
+		return new SegmentSpliterator(points, shared, rowChain, rowPoint, before, 0, rows);
+	}
+
+	/*
+	 * Two chains sharing two points lie on one line, and every span between
+	 * the shared points belongs to both.
+	 */
+	private static BitSet[][] shared(Point[][] chains)
+	{
+		Map<Point, List<Integer>> chainsThrough = new HashMap<Point, List<Integer>>();
+		BitSet[][] shared = new BitSet[chains.length][];
+
+		for (int c = 0; c < chains.length; c++)
+		{
+			// The number of points shared with each earlier chain
+			Map<Integer, Integer> common = new HashMap<Integer, Integer>();
+			for (Point pt : chains[c])
+			{
+				for (int d : chainsThrough.getOrDefault(pt, List.of())) common.merge(d, 1, Integer::sum);
+			}
+
+			common.values().removeIf(count -> count < 2);
+			if (!common.isEmpty())
+			{
+				shared[c] = new BitSet[chains[c].length];
+				for (int i = 0; i < chains[c].length; i++)
+				{
+					shared[c][i] = new BitSet();
+					for (int d : chainsThrough.getOrDefault(chains[c][i], List.of()))
+					{
+						if (common.containsKey(d)) shared[c][i].set(d);
+					}
+				}
+			}
+
+			for (Point pt : chains[c]) chainsThrough.computeIfAbsent(pt, k -> new ArrayList<Integer>()).add(c);
+		}
+
+		return shared;
+	}
+
+	private SegmentSpliterator(Point[][] chains, BitSet[][] shared, int[] rowChain, int[] rowPoint, long[] before, int row, int end)
+	{
+		_chains = chains;
+		_shared = shared;
+		_rowChain = rowChain;
+		_rowPoint = rowPoint;
+		_before = before;
+
+		_row = row;
+		_end = end;
+		_column = row < end ? rowPoint[row] + 1 : 0;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Segment> action)
+	{
+		while (_row < _end)
+		{
+			Point[] chain = _chains[_rowChain[_row]];
+
+			while (_column < chain.length)
+			{
+				int column = _column++;
+				if (produces(_row, column))
+				{
+					action.accept(new Segment(chain[_rowPoint[_row]], chain[column]));
+					return true;
+				}
+			}
+
+			nextRow();
+		}
+
+		return false;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super Segment> action)
+	{
+		for ( ; _row < _end; nextRow())
+		{
+			Point[] chain = _chains[_rowChain[_row]];
+			Point start = chain[_rowPoint[_row]];
+
+			for ( ; _column < chain.length; _column++)
+			{
+				if (produces(_row, _column)) action.accept(new Segment(start, chain[_column]));
+			}
+		}
+	}
+
+	/*
+	 * @return whether the span to the given end point of a row is produced
+	 *         here (and not by an earlier chain)
+	 */
+	private boolean produces(int row, int column)
+	{
+		BitSet[] shared = _shared[_rowChain[row]];
+
+		return shared == null || !shared[_rowPoint[row]].intersects(shared[column]);
+	}
+
+	private void nextRow()
+	{
+		_row++;
+		if (_row < _end) _column = _rowPoint[_row] + 1;
+	}
+
+	/**
+	 * Split off the rows holding (about) the first half of the remaining segments.
+	 */
+	@Override
+	public Spliterator<Segment> trySplit()
+	{
+		if (_end - _row < 2) return null;
+
+		// The first row at or past the middle segment (in (_row, _end))
+		long middle = (_before[_row] + _before[_end]) >>> 1;
+		int lo = _row + 1, hi = _end - 1;
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (_before[mid] < middle) lo = mid + 1;
+			else hi = mid;
+		}
+
+		SegmentSpliterator prefix = new SegmentSpliterator(_chains, _shared, _rowChain, _rowPoint, _before, _row, lo);
+		prefix._column = _column;
+
+		_row = lo;
+		_column = _rowPoint[lo] + 1;
+
+		return prefix;
+	}
+
+	@Override
+	public long estimateSize()
+	{
+		if (_row >= _end) return 0;
+
+		// Less the segments of the current row already passed
+		long passed = 0;
+		for (int column = _rowPoint[_row] + 1; column < _column; column++)
+		{
+			if (produces(_row, column)) passed++;
+		}
+
+		return _before[_end] - _before[_row] - passed;
+	}
+
+	@Override
+	public int characteristics()
+	{
+		return ORDERED | DISTINCT | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
+	}
+}
@@ -0,0 +1,422 @@
+package preprocessor.delegates;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import geometry_objects.Segment;
+import geometry_objects.points.PointRegistry;
+
+/**
+ * One table holding every segment of a figure, each flagged with its roles
+ * (given, implicit, minimal, non-minimal); a segment playing several roles
+ * is stored once.
+ *
+ * A segment is keyed by the ids of its endpoints (see PointRegistry) packed
+ * into a long: (min id << 32) | max id. Keys are hashed into a primitive
+ * open-addressing (linear probing) table, so a lookup hashes one long and
+ * compares longs rather than hashing and comparing Points.
+ *
+ * Entries are kept in insertion order; views (sets / maps of the segments
+ * having some roles) iterate in that order. Iterators fail fast (with a
+ * ConcurrentModificationException) once a segment gains or loses one of
+ * their roles, or the table is cleared or compacted, under them; changes
+ * to other roles leave them be (a view of the minimal segments may be
+ * iterated while the non-minimal segments are added).
+ *
+ * Memory: an entry takes about 21 bytes (key, roles, reference and two hash
+ * slots) against about 80 for a segment held in two of the hash sets / maps
+ * the table replaces. Entries still refer to their Segments (about 115 bytes
+ * each, geometry cached), so a figure's segments take about 30% less memory
+ * in all, not an order of magnitude less. (Measured with 1M segments.)
+ */
+public class SegmentTable
+{
+	public static final int GIVEN       = 1;
+	public static final int IMPLICIT    = 1 << 1;
+	public static final int MINIMAL     = 1 << 2;
+	public static final int NON_MINIMAL = 1 << 3;
+
+	// The segment database: minimal and non-minimal segments
+	public static final int DATABASE = MINIMAL | NON_MINIMAL;
+
+	private static final int ROLES = 4;
+	private static final int ROLE_COMBINATIONS = 1 << ROLES;
+	private static final int INITIAL_CAPACITY = 16;
+
+	protected PointRegistry _registry;
+
+	// Entries in insertion order; a removed entry has no roles (and no segment)
+	private long[] _keys;
+	private Segment[] _segments;
+	private byte[] _roles;
+	private int _entries;
+
+	// Hash table over the entries: slot -> entry index + 1 (0 is an empty slot)
+	private int[] _slots;
+
+	// Number of entries with each combination of roles (combination 0: removed entries)
+	private int[] _roleCounts;
+
+	// Number of changes to the segments having each role; iterators fail fast when
+	// the count of one of their roles changes under them
+	private final int[] _modCounts = new int[ROLES];
+
+	public SegmentTable(PointRegistry registry)
+	{
+		_registry = registry;
+		clear();
+	}
+
+	public void clear()
+	{
+		_keys = new long[INITIAL_CAPACITY];
+		_segments = new Segment[INITIAL_CAPACITY];
+		_roles = new byte[INITIAL_CAPACITY];
+		_slots = new int[2 * INITIAL_CAPACITY];
+		_roleCounts = new int[ROLE_COMBINATIONS];
+		_entries = 0;
+		changed(DATABASE | GIVEN | IMPLICIT);
+	}
+
+	/**
+	 * @param roles -- a combination of roles
+	 * @return the number of segments having any of the roles
+	 */
+	public int size(int roles)
+	{
+		int size = 0;
+
+		for (int combination = 1; combination < ROLE_COMBINATIONS; combination++)
+		{
+			if ((combination & roles) != 0) size += _roleCounts[combination];
+		}
+
+		return size;
+	}
+
+	/**
+	 * Add a segment in the given roles (in addition to any roles it already has).
+	 *
+	 * @param seg -- a segment
+	 * @param roles -- a combination of roles
+	 * @return the stored segment (the first instance added)
+	 */
+	public Segment add(Segment seg, int roles)
+	{
+		long key = key(_registry.register(seg.getPoint1()), _registry.register(seg.getPoint2()));
+
+		int entry = find(key);
+		if (entry < 0) entry = append(key);
+
+		if (_roles[entry] == 0) _segments[entry] = seg;
+
+		setRoles(entry, _roles[entry] | roles);
+
+		return _segments[entry];
+	}
+
+	public void addAll(Collection<Segment> segments, int roles)
+	{
+		for (Segment seg : segments) add(seg, roles);
+	}
+
+	/**
+	 * Remove the given roles from a segment; a segment left without roles is removed.
+	 *
+	 * @param seg -- a segment
+	 * @param roles -- a combination of roles
+	 * @return true if the segment had any of the roles
+	 */
+	public boolean remove(Segment seg, int roles)
+	{
+		int entry = find(seg);
+		if (entry < 0 || (_roles[entry] & roles) == 0) return false;
+
+		setRoles(entry, _roles[entry] & ~roles);
+
+		if (_roles[entry] == 0)
+		{
+			_segments[entry] = null;
+			if (_roleCounts[0] > _entries / 2 && _entries > INITIAL_CAPACITY) compact();
+		}
+
+		return true;
+	}
+
+	/**
+	 * @param seg -- a segment
+	 * @return the combination of roles of the segment (0 if it is not in the table)
+	 */
+	public int rolesOf(Segment seg)
+	{
+		int entry = find(seg);
+
+		return entry < 0 ? 0 : _roles[entry];
+	}
+
+	/**
+	 * @return true if the segment has any of the roles
+	 */
+	public boolean has(Segment seg, int roles)
+	{
+		return (rolesOf(seg) & roles) != 0;
+	}
+
+	/**
+	 * @return the stored segment equal to seg if it has any of the roles; null otherwise
+	 */
+	public Segment get(Segment seg, int roles)
+	{
+		int entry = find(seg);
+
+		return entry >= 0 && (_roles[entry] & roles) != 0 ? _segments[entry] : null;
+	}
+
+	/**
+	 * @param roles -- a combination of roles
+	 * @return a live set of the segments having any of the roles;
+	 *         adding (removing) a segment adds (removes) all of the roles
+	 */
+	public Set<Segment> view(int roles)
+	{
+		return new AbstractSet<Segment>()
+		{
+			@Override public int size() { return SegmentTable.this.size(roles); }
+			@Override public Iterator<Segment> iterator() { return SegmentTable.this.iterator(roles); }
+
+			@Override
+			public boolean contains(Object obj)
+			{
+				return obj instanceof Segment && has((Segment)obj, roles);
+			}
+
+			@Override
+			public boolean add(Segment seg)
+			{
+				if ((rolesOf(seg) & roles) == roles) return false;
+
+				SegmentTable.this.add(seg, roles);
+				return true;
+			}
+
+			@Override
+			public boolean remove(Object obj)
+			{
+				return obj instanceof Segment && SegmentTable.this.remove((Segment)obj, roles);
+			}
+		};
+	}
+
+	/**
+	 * @param roles -- a combination of roles
+	 * @return a live, read-only map of the segments having any of the roles (key == value)
+	 */
+	public Map<Segment, Segment> mapView(int roles)
+	{
+		return new AbstractMap<Segment, Segment>()
+		{
+			@Override
+			public Set<Map.Entry<Segment, Segment>> entrySet()
+			{
+				return new AbstractSet<Map.Entry<Segment, Segment>>()
+				{
+					@Override public int size() { return SegmentTable.this.size(roles); }
+
+					@Override
+					public Iterator<Map.Entry<Segment, Segment>> iterator()
+					{
+						Iterator<Segment> segments = SegmentTable.this.iterator(roles);
+
+						return new Iterator<Map.Entry<Segment, Segment>>()
+						{
+							@Override public boolean hasNext() { return segments.hasNext(); }
+
+							@Override
+							public Map.Entry<Segment, Segment> next()
+							{
+								Segment seg = segments.next();
+								return new AbstractMap.SimpleImmutableEntry<Segment, Segment>(seg, seg);
+							}
+						};
+					}
+				};
+			}
+
+			@Override public int size() { return SegmentTable.this.size(roles); }
+
+			@Override
+			public boolean containsKey(Object key)
+			{
+				return key instanceof Segment && has((Segment)key, roles);
+			}
+
+			@Override
+			public Segment get(Object key)
+			{
+				return key instanceof Segment ? SegmentTable.this.get((Segment)key, roles) : null;
+			}
+		};
+	}
+
+	private Iterator<Segment> iterator(int roles)
+	{
+		return new Iterator<Segment>()
+		{
+			private final int _expectedModCount = modCount(roles);
+			private int _next = advance(0);
+
+			private int advance(int entry)
+			{
+				while (entry < _entries && (_roles[entry] & roles) == 0) entry++;
+				return entry;
+			}
+
+			@Override public boolean hasNext() { return _next < _entries; }
+
+			@Override
+			public Segment next()
+			{
+				if (modCount(roles) != _expectedModCount) throw new ConcurrentModificationException();
+				if (!hasNext()) throw new NoSuchElementException();
+
+				Segment seg = _segments[_next];
+				_next = advance(_next + 1);
+				return seg;
+			}
+		};
+	}
+
+	private void setRoles(int entry, int roles)
+	{
+		changed(_roles[entry] ^ roles);
+
+		_roleCounts[_roles[entry]]--;
+		_roles[entry] = (byte)roles;
+		_roleCounts[roles]++;
+	}
+
+	private void changed(int roles)
+	{
+		for (int role = 0; role < ROLES; role++)
+		{
+			if ((roles & (1 << role)) != 0) _modCounts[role]++;
+		}
+	}
+
+	private int modCount(int roles)
+	{
+		int count = 0;
+		for (int role = 0; role < ROLES; role++)
+		{
+			if ((roles & (1 << role)) != 0) count += _modCounts[role];
+		}
+
+		return count;
+	}
+
+	//
+	// Hashing
+	//
+	private static long key(int id1, int id2)
+	{
+		return ((long)Math.min(id1, id2) << 32) | Math.max(id1, id2);
+	}
+
+	private int slotOf(long key)
+	{
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int)(hash ^ (hash >>> 32)) & (_slots.length - 1);
+	}
+
+	/*
+	 * @return the entry of the segment (-1 if its endpoints are not registered or it is not in the table)
+	 */
+	private int find(Segment seg)
+	{
+		int id1 = _registry.idOf(seg.getPoint1());
+		int id2 = _registry.idOf(seg.getPoint2());
+		if (id1 == PointRegistry.UNREGISTERED || id2 == PointRegistry.UNREGISTERED) return -1;
+
+		return find(key(id1, id2));
+	}
+
+	private int find(long key)
+	{
+		for (int slot = slotOf(key); _slots[slot] != 0; slot = (slot + 1) & (_slots.length - 1))
+		{
+			int entry = _slots[slot] - 1;
+			if (_keys[entry] == key) return entry;
+		}
+
+		return -1;
+	}
+
+	private int append(long key)
+	{
+		if (_entries == _keys.length)
+		{
+			_keys = Arrays.copyOf(_keys, 2 * _entries);
+			_segments = Arrays.copyOf(_segments, 2 * _entries);
+			_roles = Arrays.copyOf(_roles, 2 * _entries);
+		}
+
+		int entry = _entries++;
+		_keys[entry] = key;
+		_segments[entry] = null;
+		_roles[entry] = 0;
+		_roleCounts[0]++;
+
+		// Keep the hash table at most half full
+		if (2 * _entries > _slots.length) rehash(2 * _slots.length);
+		else insert(entry);
+
+		return entry;
+	}
+
+	private void insert(int entry)
+	{
+		int slot = slotOf(_keys[entry]);
+		while (_slots[slot] != 0) slot = (slot + 1) & (_slots.length - 1);
+
+		_slots[slot] = entry + 1;
+	}
+
+	private void rehash(int capacity)
+	{
+		_slots = new int[capacity];
+		for (int entry = 0; entry < _entries; entry++) insert(entry);
+	}
+
+	/*
+	 * Drop removed entries (preserving the order of the others).
+	 */
+	private void compact()
+	{
+		int live = 0;
+		for (int entry = 0; entry < _entries; entry++)
+		{
+			if (_roles[entry] == 0) continue;
+
+			_keys[live] = _keys[entry];
+			_segments[live] = _segments[entry];
+			_roles[live] = _roles[entry];
+			live++;
+		}
+
+		Arrays.fill(_segments, live, _entries, null);
+		_roleCounts[0] = 0;
+		_entries = live;
+
+		// Entries moved: every iterator is invalidated
+		changed(DATABASE | GIVEN | IMPLICIT);
+
+		rehash(_slots.length);
+	}
+}
@@ -0,0 +1,147 @@
+package preprocessor.delegates;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import geometry_objects.points.Point;
+import geometry_objects.points.PointRegistry;
+import utilities.math.analytic_geometry.GeometryUtilities;
+
+/**
+ * Counts the segments spanned by a set of minimal segments without creating
+ * any of them.
+ *
+ * Minimal segments meeting end to end in a straight line form a chain; a
+ * chain through k points spans k * (k - 1) / 2 segments. Chains are walked
+ * exactly as LineChains walks them (minimal segments in the order added),
+ * over point ids rather than lists of points.
+ *
+ * Minimal segments are identified by the ids of their endpoints; a segment
+ * added twice is counted once.
+ */
+public class SpanCounter
+{
+	private final PointRegistry _registry;
+	private final Set<Long> _minimal;
+
+	// Endpoint ids of minimal segment e: _p[e], _q[e]
+	private int[] _p;
+	private int[] _q;
+	private int _size;
+
+	/**
+	 * @param registry -- ids for the endpoints of the minimal segments
+	 */
+	public SpanCounter(PointRegistry registry)
+	{
+		_registry = registry;
+		_minimal = new HashSet<Long>();
+
+		_p = new int[16];
+		_q = new int[16];
+	}
+
+	/**
+	 * @return the number of (distinct) minimal segments added
+	 */
+	public int minimalCount() { return _size; }
+
+	/**
+	 * Add the minimal segment pq.
+	 */
+	public void add(Point p, Point q)
+	{
+		int pId = _registry.register(p);
+		int qId = _registry.register(q);
+
+		long key = ((long)Math.min(pId, qId) << 32) | Math.max(pId, qId);
+		if (!_minimal.add(key)) return;
+
+		if (_size == _p.length)
+		{
+			_p = Arrays.copyOf(_p, 2 * _size);
+			_q = Arrays.copyOf(_q, 2 * _size);
+		}
+
+		_p[_size] = pId;
+		_q[_size] = qId;
+		_size++;
+	}
+
+	/**
+	 * @return the number of segments spanned: minimal and non-minimal
+	 */
+	public long spanCount()
+	{
+		// Minimal segments at each point
+		List<List<Integer>> incident = new ArrayList<List<Integer>>(_registry.size());
+		for (int id = 0; id < _registry.size(); id++) incident.add(new ArrayList<Integer>(2));
+		for (int e = 0; e < _size; e++)
+		{
+			incident.get(_p[e]).add(e);
+			incident.get(_q[e]).add(e);
+		}
+
+		//
+		// Walk the chains as LineChains does, counting the points of each
+		//
+		long spans = 0;
+		boolean[] visited = new boolean[_size];
+
+		for (int e = 0; e < _size; e++)
+		{
+			if (visited[e]) continue;
+
+			// Walk backward to the start of the chain
+			int current = e;
+			int start = _p[e];
+			for (int steps = 0; steps < _size; steps++)
+			{
+				int previous = continuation(incident, current, start);
+				if (previous < 0 || visited[previous]) break;
+
+				start = other(previous, start);
+				current = previous;
+			}
+
+			// Walk forward counting the points
+			long k = 1;
+			int from = start;
+			while (current >= 0 && !visited[current])
+			{
+				visited[current] = true;
+				k++;
+
+				int to = other(current, from);
+				current = continuation(incident, current, to);
+				from = to;
+			}
+
+			spans += k * (k - 1) / 2;
+		}
+
+		return spans;
+	}
+
+	/*
+	 * @return the first minimal segment at endpoint id of e continuing e in a
+	 *         straight line through the point (-1 if there is none); see LineChains
+	 */
+	private int continuation(List<List<Integer>> incident, int e, int id)
+	{
+		Point pt = _registry.get(id);
+		Point behind = _registry.get(other(e, id));
+
+		for (int f : incident.get(id))
+		{
+			if (f != e && GeometryUtilities.between(pt, behind, _registry.get(other(f, id)))) return f;
+		}
+
+		return -1;
+	}
+
+	private int other(int e, int id) { return _p[e] == id ? _q[e] : _p[e]; }
+}
@@ -0,0 +1,303 @@
+package preprocessor.delegates;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import geometry_objects.Segment;
+import utilities.math.MathUtilities;
+
+/**
+ * A Bentley-Ottmann sweep over a list of segments.
+ *
+ * The sweep reports every pair of segments (i < j) that meet at a common
+ * point (crossing, touching or sharing an endpoint) in O((n + k) log n) time
+ * where k is the number of such pairs.
+ *
+ * Events are processed lexicographically (x first, y second); this is the
+ * classic 'slightly rotated' sweep line, so vertical segments begin at their
+ * lower endpoint and are always ordered above everything else passing
+ * through the same event point.
+ *
+ * Algorithm (de Berg et al., Computational Geometry, chapter 2):
+ *    for each event point p:
+ *       U(p) -- segments whose left endpoint is p
+ *       C(p) -- segments in the status containing p in their interior
+ *       L(p) -- segments in the status whose right endpoint is p
+ *       report all pairs in U(p) + C(p) + L(p)
+ *       remove C(p) + L(p); insert U(p) + C(p) ordered just after p
+ *       test the new neighbors in the status for future events
+ */
+public class SweepLine
+{
+	// Probe 'segments' used to locate positions in the status structure
+	private static final int PROBE_BELOW = -1;
+	private static final int PROBE_ABOVE = -2;
+
+	// Left / right (lexicographic) endpoints of each segment
+	private final double[] _lx;
+	private final double[] _ly;
+	private final double[] _rx;
+	private final double[] _ry;
+	private final boolean[] _vertical;
+
+	// The current event point
+	private double _sweepX;
+	private double _sweepY;
+
+	private final TreeMap<Event, Event> _events;
+	private final TreeSet<Integer> _status;
+
+	/*
+	 * An event point in the queue; intersection events have no upper segments.
+	 */
+	private static class Event
+	{
+		private final double _x;
+		private final double _y;
+		private final List<Integer> _upper;
+
+		private Event(double x, double y)
+		{
+			_x = x;
+			_y = y;
+			_upper = new ArrayList<Integer>(1);
+		}
+	}
+
+	private static final Comparator<Event> EVENT_ORDER = (e1, e2) ->
+	{
+		if (!MathUtilities.doubleEquals(e1._x, e2._x)) return Double.compare(e1._x, e2._x);
+		if (!MathUtilities.doubleEquals(e1._y, e2._y)) return Double.compare(e1._y, e2._y);
+		return 0;
+	};
+
+	/**
+	 * Report every pair of segments that meet at a common point.
+	 *
+	 * @param segments -- a list of segments
+	 * @param consumer -- receives each pair (i < j) at least once
+	 */
+	public static void forEachIntersectingPair(List<Segment> segments, SegmentPairConsumer consumer)
+	{
+		new SweepLine(segments).sweep(consumer);
+	}
+
+	private SweepLine(List<Segment> segments)
+	{
+		int n = segments.size();
+
+		_lx = new double[n];
+		_ly = new double[n];
+		_rx = new double[n];
+		_ry = new double[n];
+		_vertical = new boolean[n];
+
+		_events = new TreeMap<Event, Event>(EVENT_ORDER);
+		_status = new TreeSet<Integer>(this::compareInStatus);
+
+		for (int s = 0; s < n; s++)
+		{
+			Segment seg = segments.get(s);
+			double x1 = seg.getPoint1().getX();
+			double y1 = seg.getPoint1().getY();
+			double x2 = seg.getPoint2().getX();
+			double y2 = seg.getPoint2().getY();
+
+			_vertical[s] = MathUtilities.doubleEquals(x1, x2);
+
+			boolean firstIsLeft = _vertical[s] ? y1 <= y2 : x1 < x2;
+
+			_lx[s] = firstIsLeft ? x1 : x2;
+			_ly[s] = firstIsLeft ? y1 : y2;
+			_rx[s] = firstIsLeft ? x2 : x1;
+			_ry[s] = firstIsLeft ? y2 : y1;
+
+			eventAt(_lx[s], _ly[s])._upper.add(s);
+			eventAt(_rx[s], _ry[s]);
+		}
+	}
+
+	/*
+	 * @return the event at (x, y), creating it if need be
+	 */
+	private Event eventAt(double x, double y)
+	{
+		Event candidate = new Event(x, y);
+		Event existing = _events.get(candidate);
+		if (existing != null) return existing;
+
+		_events.put(candidate, candidate);
+		return candidate;
+	}
+
+	private void sweep(SegmentPairConsumer consumer)
+	{
+		List<Integer> through = new ArrayList<Integer>();
+		List<Integer> reinsert = new ArrayList<Integer>();
+
+		while (!_events.isEmpty())
+		{
+			Event p = _events.pollFirstEntry().getKey();
+			_sweepX = p._x;
+			_sweepY = p._y;
+
+			//
+			// Remove C(p) + L(p): a contiguous run in the status
+			//
+			through.clear();
+			reinsert.clear();
+			Iterator<Integer> it = _status.tailSet(PROBE_BELOW, true).iterator();
+			while (it.hasNext())
+			{
+				int s = it.next();
+				if (s < 0) continue;
+
+				double y = yAt(s);
+				if (y < _sweepY && !MathUtilities.doubleEquals(y, _sweepY)) continue;
+				if (y > _sweepY && !MathUtilities.doubleEquals(y, _sweepY)) break;
+
+				it.remove();
+				through.add(s);
+				if (!isRightEndpoint(s, p)) reinsert.add(s);
+			}
+
+			//
+			// Report all pairs meeting at p
+			//
+			through.addAll(p._upper);
+			reportPairs(through, consumer);
+
+			//
+			// Insert U(p) + C(p) ordered just after p
+			//
+			reinsert.addAll(p._upper);
+			_status.addAll(reinsert);
+
+			if (reinsert.isEmpty())
+			{
+				findNewEvent(_status.lower(PROBE_BELOW), _status.higher(PROBE_ABOVE), p);
+			}
+			else
+			{
+				int lowest = reinsert.get(0);
+				int highest = reinsert.get(0);
+				for (int s : reinsert)
+				{
+					if (compareInStatus(s, lowest) < 0) lowest = s;
+					if (compareInStatus(s, highest) > 0) highest = s;
+				}
+
+				findNewEvent(_status.lower(lowest), lowest, p);
+				findNewEvent(highest, _status.higher(highest), p);
+			}
+		}
+	}
+
+	private void reportPairs(List<Integer> segments, SegmentPairConsumer consumer)
+	{
+		for (int a = 0; a < segments.size(); a++)
+		{
+			for (int b = a + 1; b < segments.size(); b++)
+			{
+				int i = segments.get(a);
+				int j = segments.get(b);
+				if (i < j) consumer.accept(i, j);
+				else if (j < i) consumer.accept(j, i);
+			}
+		}
+	}
+
+	private boolean isRightEndpoint(int s, Event p)
+	{
+		return MathUtilities.doubleEquals(_rx[s], p._x) && MathUtilities.doubleEquals(_ry[s], p._y);
+	}
+
+	/*
+	 * If segments s and t meet to the right of (or above) event p,
+	 * schedule an event at that point.
+	 */
+	private void findNewEvent(Integer s, Integer t, Event p)
+	{
+		if (s == null || t == null) return;
+
+		double d1x = _rx[s] - _lx[s];
+		double d1y = _ry[s] - _ly[s];
+		double d2x = _rx[t] - _lx[t];
+		double d2y = _ry[t] - _ly[t];
+
+		// Parallel (or collinear) segments share no single crossing point;
+		// any segment crossing both finds them together at its own event.
+		double denom = d1x * d2y - d1y * d2x;
+		if (MathUtilities.doubleEquals(denom, 0)) return;
+
+		double ex = _lx[t] - _lx[s];
+		double ey = _ly[t] - _ly[s];
+		double along1 = (ex * d2y - ey * d2x) / denom;
+		double along2 = (ex * d1y - ey * d1x) / denom;
+
+		if (!withinUnit(along1) || !withinUnit(along2)) return;
+
+		Event candidate = new Event(_lx[s] + along1 * d1x, _ly[s] + along1 * d1y);
+		if (EVENT_ORDER.compare(candidate, p) > 0) _events.putIfAbsent(candidate, candidate);
+	}
+
+	private static boolean withinUnit(double t)
+	{
+		return t > -MathUtilities.EPSILON && t < 1 + MathUtilities.EPSILON;
+	}
+
+	/*
+	 * @return the y-coordinate at which segment s crosses the sweep line
+	 */
+	private double yAt(int s)
+	{
+		if (_vertical[s]) return Math.max(_ly[s], Math.min(_ry[s], _sweepY));
+
+		if (_sweepX <= _lx[s]) return _ly[s];
+		if (_sweepX >= _rx[s]) return _ry[s];
+
+		return _ly[s] + (_sweepX - _lx[s]) * (_ry[s] - _ly[s]) / (_rx[s] - _lx[s]);
+	}
+
+	private double slope(int s)
+	{
+		if (_vertical[s]) return Double.POSITIVE_INFINITY;
+
+		return (_ry[s] - _ly[s]) / (_rx[s] - _lx[s]);
+	}
+
+	/*
+	 * Order of segments in the status: by height along the sweep line;
+	 * segments meeting at the sweep point are ordered as they leave it (by slope).
+	 * Probes sit just below / just above every segment through the sweep point.
+	 */
+	private int compareInStatus(int s, int t)
+	{
+		if (s == t) return 0;
+		if (s < 0) return probeOrder(s, t);
+		if (t < 0) return -probeOrder(t, s);
+
+		double ys = yAt(s);
+		double yt = yAt(t);
+		if (!MathUtilities.doubleEquals(ys, yt)) return Double.compare(ys, yt);
+
+		int bySlope = Double.compare(slope(s), slope(t));
+		if (bySlope != 0) return bySlope;
+
+		return Integer.compare(s, t);
+	}
+
+	private int probeOrder(int probe, int s)
+	{
+		if (s < 0) return probe == PROBE_BELOW ? -1 : 1;
+
+		double y = yAt(s);
+		if (!MathUtilities.doubleEquals(_sweepY, y)) return Double.compare(_sweepY, y);
+
+		return probe == PROBE_BELOW ? -1 : 1;
+	}
+}
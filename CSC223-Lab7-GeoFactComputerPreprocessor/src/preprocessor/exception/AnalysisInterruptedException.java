@@ -0,0 +1,24 @@
+package preprocessor.exception;
+
+/**
+ * Thrown (from a cooperative check; see AnalysisControl) when an analysis
+ * runs out of its time budget or is cancelled.
+ */
+public class AnalysisInterruptedException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+	private final boolean _timedOut;
+
+	/**
+	 * @param timedOut -- true if the time budget ran out; false if cancelled
+	 */
+	public AnalysisInterruptedException(boolean timedOut)
+	{
+		super(timedOut ? "Analysis ran out of time" : "Analysis was cancelled");
+
+		_timedOut = timedOut;
+	}
+
+	public boolean isTimedOut() { return _timedOut; }
+}
@@ -0,0 +1,150 @@
+package utilities.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * The text of a file, memory-mapped, with '//' comments (outside string
+ * literals) reading as blanks; the line breaks ending comments are kept, so
+ * positions and line numbers are those of the file.
+ *
+ * Comments are recognized as the text is scanned: no copy of the file is
+ * made (unless it holds non-ASCII text, which is decoded once) and nothing
+ * is allocated per line. Sequential access is cheapest; going back rescans
+ * from the start of the line.
+ *
+ * Not safe for use by several threads at once.
+ */
+public class CommentFilteredFile implements CharSequence
+{
+	// The text: ASCII bytes, or (non-ASCII files) the decoded characters
+	private final ByteBuffer _bytes;
+	private final CharBuffer _chars;
+	private final int _length;
+
+	// Scanning state before the character at _cursor
+	private int _cursor;
+	private boolean _inString;
+	private boolean _escaped;
+	private boolean _inComment;
+
+	/**
+	 * @param path -- a UTF-8 encoded text file (of less than 2GB)
+	 * @throws IOException
+	 */
+	public CommentFilteredFile(Path path) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(path))
+		{
+			if (channel.size() > Integer.MAX_VALUE) throw new IOException(path + " is too large to map");
+
+			ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+			if (isAscii(bytes))
+			{
+				_bytes = bytes;
+				_chars = null;
+				_length = bytes.limit();
+			}
+			else
+			{
+				_bytes = null;
+				_chars = StandardCharsets.UTF_8.decode(bytes);
+				_length = _chars.limit();
+			}
+		}
+	}
+
+	private static boolean isAscii(ByteBuffer bytes)
+	{
+		for (int k = 0; k < bytes.limit(); k++)
+		{
+			if (bytes.get(k) < 0) return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public int length() { return _length; }
+
+	@Override
+	public char charAt(int index)
+	{
+		if (index < 0 || index >= _length) throw new IndexOutOfBoundsException("index " + index);
+
+		scanTo(index);
+
+		char c = raw(index);
+		if (_inComment) return c == '\n' ? c : ' ';
+		if (!_inString && startsComment(index)) return ' ';
+
+		return c;
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end)
+	{
+		if (start < 0 || end > _length || start > end) throw new IndexOutOfBoundsException();
+
+		char[] text = new char[end - start];
+		for (int k = start; k < end; k++) text[k - start] = charAt(k);
+
+		return new String(text);
+	}
+
+	@Override
+	public String toString() { return subSequence(0, _length).toString(); }
+
+	private char raw(int index)
+	{
+		return _bytes != null ? (char)_bytes.get(index) : _chars.get(index);
+	}
+
+	private boolean startsComment(int index)
+	{
+		return raw(index) == '/' && index + 1 < _length && raw(index + 1) == '/';
+	}
+
+	/*
+	 * Advance the scanning state to just before the given index; strings and
+	 * comments end at line breaks, so scanning may restart at a line's start.
+	 */
+	private void scanTo(int index)
+	{
+		if (index < _cursor)
+		{
+			_cursor = index;
+			while (_cursor > 0 && raw(_cursor - 1) != '\n') _cursor--;
+
+			_inString = false;
+			_escaped = false;
+			_inComment = false;
+		}
+
+		for ( ; _cursor < index; _cursor++)
+		{
+			char c = raw(_cursor);
+
+			if (c == '\n')
+			{
+				_inString = false;
+				_escaped = false;
+				_inComment = false;
+			}
+			else if (_inComment) { }
+			else if (_inString)
+			{
+				if (_escaped) _escaped = false;
+				else if (c == '\\') _escaped = true;
+				else if (c == '"') _inString = false;
+			}
+			else if (c == '"') _inString = true;
+			else if (startsComment(_cursor)) _inComment = true;
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package utilities.io;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -28,31 +26,33 @@ public class FileUtilities
 	
 	/**
 	 * Filter all comments using    // ...
-	 * Must read the file 
+	 * (outside string literals; comments read as blanks)
 	 * 
 	 * @param filepath -- path to a specific file
 	 * @return string corresponding to the complete contents of the file (minus comments)
 	 */
 	public static String readFileFilterComments(String filepath)
 	{
-		StringBuilder builder = new StringBuilder();
-		try (BufferedReader br = new BufferedReader(new FileReader(filepath))) 
-		{
-		    String line;
-		    while ((line = br.readLine()) != null) 
-		    {
-		    	// Filter out '//'-style comments
-		    	int commentIndex = line.indexOf(global.Constants.INPUT_FILE_COMMENT_PREFIX);
-		    	if (commentIndex != -1) line = line.substring(0, commentIndex);
-		    	
-		    	if (line.length() >= 1) builder.append(line).append("\n");
-		    }
-		} 
+		try { return mapFileFilterComments(filepath).toString(); }
 		catch (IOException e)
 		{
-            System.err.println("Error reading file: " + filepath);
+			System.err.println("Error reading file: " + filepath);
 		}
 
-		return builder.toString();
+		return "";
+	}
+
+	/**
+	 * The file memory-mapped, with comments filtered as it is scanned (see
+	 * CommentFilteredFile); read it directly rather than as a String to
+	 * avoid copying it.
+	 * 
+	 * @param filepath -- path to a specific file
+	 * @return the contents of the file (minus comments)
+	 * @throws IOException
+	 */
+	public static CharSequence mapFileFilterComments(String filepath) throws IOException
+	{
+		return new CommentFilteredFile(Path.of(filepath));
 	}
 }
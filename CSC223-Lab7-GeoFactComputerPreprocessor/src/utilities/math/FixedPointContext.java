@@ -0,0 +1,148 @@
+package utilities.math;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+import geometry_objects.points.Point;
+import geometry_objects.points.RationalPoint;
+
+/**
+ * An (opt-in) precision context: coordinates are snapped to a fixed-point
+ * grid of 10^-decimals and represented as longs. Tests on snapped coordinates
+ * are exact integer arithmetic -- no EPSILON.
+ *
+ * Snapped coordinates are bounded by MAX_COORDINATE (2^30 - 1 grid units), so
+ * a difference fits in 31 bits and a 2 X 2 determinant of differences fits in
+ * a long; orientation never overflows. An intersection point is a rational
+ * (see RationalPoint) whose numerators may exceed 64 bits.
+ *
+ * Only the search for crossings runs on snapped coordinates; the rest of the
+ * preprocessing uses the coordinates as given (with EPSILON). A coordinate must
+ * therefore lie on the grid (within EPSILON), or the two would disagree.
+ */
+public class FixedPointContext
+{
+    public static final long MAX_COORDINATE = (1L << 30) - 1;
+
+    private final int _decimals;
+    private final long _scale;
+
+    /**
+     * @param decimals -- the number of decimal digits kept (0 for integer coordinates)
+     */
+    public FixedPointContext(int decimals)
+    {
+        if (decimals < 0 || decimals > 9) throw new IllegalArgumentException("Unsupported number of decimals: " + decimals);
+
+        _decimals = decimals;
+        _scale = BigInteger.TEN.pow(decimals).longValueExact();
+    }
+
+    public int getDecimals() { return _decimals; }
+    public long getScale() { return _scale; }
+
+    /**
+     * @param coordinate -- a coordinate
+     * @return the coordinate snapped to the grid (in grid units)
+     * @throws IllegalArgumentException if the coordinate is out of range, or is
+     *         off the grid by more than EPSILON (snapping would move it)
+     */
+    public long toFixed(double coordinate)
+    {
+        double scaled = Math.rint(coordinate * _scale);
+
+        if (!(Math.abs(scaled) <= MAX_COORDINATE))
+        {
+            throw new IllegalArgumentException("Coordinate out of range for " + _decimals + " decimals: " + coordinate);
+        }
+
+        if (!(Math.abs(coordinate - scaled / _scale) <= MathUtilities.EPSILON))
+        {
+            throw new IllegalArgumentException("Coordinate not on the grid of " + _decimals + " decimals: " + coordinate);
+        }
+
+        return (long)scaled;
+    }
+
+    /**
+     * @param fixed -- a coordinate in grid units
+     * @return the (nearest) double value of the coordinate
+     */
+    public double toDouble(long fixed)
+    {
+        return (double)fixed / _scale;
+    }
+
+    /**
+     * @param pt -- an exact point (in grid units)
+     * @return a point with the (nearest) double coordinates
+     */
+    public Point toPoint(RationalPoint pt)
+    {
+        return new Point(toDouble(pt.getXNumerator(), pt.getDenominator()),
+                         toDouble(pt.getYNumerator(), pt.getDenominator()));
+    }
+
+    private double toDouble(BigInteger numerator, BigInteger denominator)
+    {
+        // Both exactly representable as doubles: divide in floating point
+        if (numerator.bitLength() <= 53 && denominator.bitLength() <= 53)
+        {
+            return numerator.doubleValue() / denominator.doubleValue() / _scale;
+        }
+
+        BigDecimal scaled = new BigDecimal(denominator).multiply(BigDecimal.valueOf(_scale));
+
+        return new BigDecimal(numerator).divide(scaled, MathContext.DECIMAL64).doubleValue();
+    }
+
+    /**
+     * @return 1 if a, b, c turn counterclockwise; -1 if clockwise; 0 if collinear (exactly)
+     */
+    public static int orientation(long ax, long ay, long bx, long by, long cx, long cy)
+    {
+        return Long.signum((bx - ax) * (cy - ay) - (by - ay) * (cx - ax));
+    }
+
+    /**
+     * @param ax, ay, bx, by -- segment AB (grid units)
+     * @param cx, cy, dx, dy -- segment CD (grid units)
+     * @return the point at which the segments cross, interior to both (exactly); null otherwise
+     */
+    public static RationalPoint crossing(long ax, long ay, long bx, long by, long cx, long cy, long dx, long dy)
+    {
+        // C, D strictly on opposite sides of AB; A, B strictly on opposite sides of CD
+        if (orientation(ax, ay, bx, by, cx, cy) * orientation(ax, ay, bx, by, dx, dy) >= 0) return null;
+        if (orientation(cx, cy, dx, dy, ax, ay) * orientation(cx, cy, dx, dy, bx, by) >= 0) return null;
+
+        // A + t (B - A) with t = ((C - A) X (D - C)) / ((B - A) X (D - C))
+        long rx = bx - ax, ry = by - ay;
+        long sx = dx - cx, sy = dy - cy;
+
+        long denominator = rx * sy - ry * sx;
+        long t = (cx - ax) * sy - (cy - ay) * sx;
+
+        // Each product below 2^62: the numerators are computed exactly in longs
+        if (bits(ax) + bits(denominator) <= 62 && bits(ay) + bits(denominator) <= 62 &&
+            bits(t) + bits(Math.max(Math.abs(rx), Math.abs(ry))) <= 62)
+        {
+            return new RationalPoint(ax * denominator + t * rx, ay * denominator + t * ry, denominator);
+        }
+
+        return crossing(ax, ay, rx, ry, BigInteger.valueOf(denominator), BigInteger.valueOf(t));
+    }
+
+    /*
+     * @return the number of bits in the magnitude of the value
+     */
+    private static int bits(long value) { return 64 - Long.numberOfLeadingZeros(Math.abs(value)); }
+
+    private static RationalPoint crossing(long ax, long ay, long rx, long ry, BigInteger denominator, BigInteger t)
+    {
+        BigInteger x = BigInteger.valueOf(ax).multiply(denominator).add(t.multiply(BigInteger.valueOf(rx)));
+        BigInteger y = BigInteger.valueOf(ay).multiply(denominator).add(t.multiply(BigInteger.valueOf(ry)));
+
+        return new RationalPoint(x, y, denominator);
+    }
+}
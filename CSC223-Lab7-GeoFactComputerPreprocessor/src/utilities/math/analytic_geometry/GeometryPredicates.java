@@ -0,0 +1,151 @@
+package utilities.math.analytic_geometry;
+
+import java.math.BigDecimal;
+
+import utilities.math.MathUtilities;
+
+/**
+ * Geometric predicates built on cross and dot products (no square roots).
+ *
+ * orientation is exact: the sign of the orientation determinant is computed
+ * in floating point and certified with Shewchuk's error bound; only when the
+ * determinant is too close to zero to trust is it recomputed exactly.
+ *
+ * The on-segment / between / on-line predicates are tolerance-based (as is
+ * Point.equals): a point lies on a segment if it is within EPSILON of the
+ * segment. A point exactly on it (by orientation) lies on it as well, even
+ * where the floating point distance exceeds EPSILON by rounding (far from
+ * the origin); orientation is only consulted when the tolerance test fails.
+ */
+public class GeometryPredicates
+{
+    // Shewchuk: machine epsilon (half an ulp of 1) and the orient2d error bound
+    private static final double MACHINE_EPSILON = Math.ulp(1.0) / 2;
+
+    /**
+     * The sign of det = left - right (see orientation) is right whenever
+     * |det| >= ORIENTATION_ERROR_BOUND * (|left| + |right|).
+     */
+    public static final double ORIENTATION_ERROR_BOUND = (3.0 + 16.0 * MACHINE_EPSILON) * MACHINE_EPSILON;
+
+    private static final double EPSILON_SQUARED = MathUtilities.EPSILON * MathUtilities.EPSILON;
+
+    /**
+     * @return the cross product (b - a) X (c - a): twice the signed area of triangle abc
+     */
+    public static double cross(double ax, double ay, double bx, double by, double cx, double cy)
+    {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+
+    /**
+     * @return the dot product (b - a) . (c - a)
+     */
+    public static double dot(double ax, double ay, double bx, double by, double cx, double cy)
+    {
+        return (bx - ax) * (cx - ax) + (by - ay) * (cy - ay);
+    }
+
+    /**
+     * @return 1 if a, b, c turn counterclockwise; -1 if clockwise; 0 if (exactly) collinear
+     */
+    public static int orientation(double ax, double ay, double bx, double by, double cx, double cy)
+    {
+        double left = (ax - cx) * (by - cy);
+        double right = (ay - cy) * (bx - cx);
+        double det = left - right;
+
+        // Terms of opposite signs (or a zero term): no cancellation, the sign is right
+        double sum;
+        if (left > 0)
+        {
+            if (right <= 0) return sign(det);
+            sum = left + right;
+        }
+        else if (left < 0)
+        {
+            if (right >= 0) return sign(det);
+            sum = -left - right;
+        }
+        else return sign(det);
+
+        double bound = ORIENTATION_ERROR_BOUND * sum;
+        if (det >= bound || -det >= bound) return sign(det);
+
+        return exactOrientation(ax, ay, bx, by, cx, cy);
+    }
+
+    /*
+     * Every double is exactly a BigDecimal; differences and products of them are exact.
+     */
+    private static int exactOrientation(double ax, double ay, double bx, double by, double cx, double cy)
+    {
+        if (!Double.isFinite(ax + ay + bx + by + cx + cy)) return 0;
+
+        BigDecimal left = exact(ax).subtract(exact(cx)).multiply(exact(by).subtract(exact(cy)));
+        BigDecimal right = exact(ay).subtract(exact(cy)).multiply(exact(bx).subtract(exact(cx)));
+
+        return left.compareTo(right);
+    }
+
+    private static BigDecimal exact(double value) { return new BigDecimal(value); }
+
+    private static int sign(double value) { return value > 0 ? 1 : (value < 0 ? -1 : 0); }
+
+    /**
+     * @param mx, my -- a point M
+     * @param ax, ay, bx, by -- a segment AB
+     * @return the squared distance from M to the (finite) segment AB
+     */
+    public static double distanceSquaredToSegment(double mx, double my, double ax, double ay, double bx, double by)
+    {
+        double lengthSquared = (bx - ax) * (bx - ax) + (by - ay) * (by - ay);
+        double along = dot(ax, ay, bx, by, mx, my);
+
+        // Beyond A, beyond B, or alongside AB (perpendicular distance)
+        if (along <= 0) return (mx - ax) * (mx - ax) + (my - ay) * (my - ay);
+        if (along >= lengthSquared) return (mx - bx) * (mx - bx) + (my - by) * (my - by);
+
+        double cross = cross(ax, ay, bx, by, mx, my);
+        return cross * cross / lengthSquared;
+    }
+
+    /**
+     * @return true if M lies on the segment AB (within EPSILON, or exactly); endpoints included
+     */
+    public static boolean onSegment(double mx, double my, double ax, double ay, double bx, double by)
+    {
+        if (distanceSquaredToSegment(mx, my, ax, ay, bx, by) < EPSILON_SQUARED) return true;
+
+        // Exactly on AB: within its bounding box and collinear with it
+        return Math.min(ax, bx) <= mx && mx <= Math.max(ax, bx) &&
+               Math.min(ay, by) <= my && my <= Math.max(ay, by) &&
+               orientation(ax, ay, bx, by, mx, my) == 0;
+    }
+
+    /**
+     * @return true if M lies on the segment AB (see onSegment) but is neither endpoint (within EPSILON)
+     */
+    public static boolean strictlyBetween(double mx, double my, double ax, double ay, double bx, double by)
+    {
+        if (MathUtilities.doubleEquals(mx, ax) && MathUtilities.doubleEquals(my, ay)) return false;
+        if (MathUtilities.doubleEquals(mx, bx) && MathUtilities.doubleEquals(my, by)) return false;
+
+        return onSegment(mx, my, ax, ay, bx, by);
+    }
+
+    /**
+     * @return true if M lies on the line (infinite) through A and B (within EPSILON,
+     *         or exactly); for A == B, if M is within EPSILON of A
+     */
+    public static boolean onLine(double mx, double my, double ax, double ay, double bx, double by)
+    {
+        double lengthSquared = (bx - ax) * (bx - ax) + (by - ay) * (by - ay);
+        if (lengthSquared == 0) return (mx - ax) * (mx - ax) + (my - ay) * (my - ay) < EPSILON_SQUARED;
+
+        double cross = cross(ax, ay, bx, by, mx, my);
+        if (cross * cross < EPSILON_SQUARED * lengthSquared) return true;
+
+        return orientation(ax, ay, bx, by, mx, my) == 0;
+    }
+}
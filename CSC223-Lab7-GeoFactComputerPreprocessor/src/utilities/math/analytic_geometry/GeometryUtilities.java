@@ -24,12 +24,11 @@ public class GeometryUtilities
 	 * @return true if the three points are (1) collinear and (2) M is between A and B
 	 *                                     A-------------M---------B
 	 * Note: returns true if M is one of the endpoints
+	 *       (M is within EPSILON of segment AB; see GeometryPredicates)
 	 */
 	public static boolean between(Point M, Point A, Point B)
 	{
-		return MathUtilities.doubleEquals(GeometryUtilities.distance(A, M) +
-                                          GeometryUtilities.distance(M, B),
-                                          GeometryUtilities.distance(A, B));
+		return GeometryPredicates.onSegment(M.getX(), M.getY(), A.getX(), A.getY(), B.getX(), B.getY());
 	}
     
     /*
@@ -84,5 +84,36 @@ class SegmentTest {
 		assertEquals(comparePoints, points);
 	}
 
-	
+	@Test
+	void testCachedGeometry() {
+		Segment seg = new Segment(new Point(4, 1), new Point(0, 4));
+		
+		assertEquals(5, seg.length(), 1e-9);
+		assertEquals(-0.75, seg.slope(), 1e-9);
+		assertEquals(0, seg.getMinX());
+		assertEquals(4, seg.getMaxY());
+		assertEquals(-4, seg.getDeltaX());
+		assertEquals(0, seg.distanceToLine(new Point(8, -2)), 1e-9);
+		assertEquals(1, seg.distanceToLine(new Point(4.6, 1.8)), 1e-9);
+		
+		Segment vertical = new Segment(new Point(1, 0), new Point(1, 3));
+		assertTrue(vertical.isVertical());
+		assertEquals(Double.POSITIVE_INFINITY, vertical.slope());
+		
+		assertTrue(seg.boundsOverlap(vertical));
+		assertFalse(seg.boundsOverlap(new Segment(new Point(5, 0), new Point(6, 6))));
+	}
+
+	@Test
+	void testCollinearFarFromOrigin() {
+		// Exactly collinear (see GeometryPredicatesTest): the rounded distance to the line exceeds EPSILON
+		Point a = new Point(30.75, 25.625);
+		Point b = new Point(2.518908191178192E15, 2.09909015931516E15);
+		Point m = new Point(1.259454095593572E15, 1.04954507966131E15);
+		
+		Segment seg = new Segment(a, b);
+		
+		assertTrue(seg.isCollinearWith(new Segment(m, b)));
+		assertFalse(seg.isCollinearWith(new Segment(m, new Point(m.getX(), 2 * m.getY()))));
+	}
 }
@@ -0,0 +1,51 @@
+package geometry_objects.delegates.intersections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+
+class SegmentPairClassifierTest
+{
+	private static Segment segment(double x1, double y1, double x2, double y2)
+	{
+		return new Segment(new Point(x1, y1), new Point(x2, y2));
+	}
+
+	@Test
+	void test_classify()
+	{
+		Segment diagonal = segment(0, 0, 4, 4);
+
+		assertEquals(SegmentRelation.PROPER_CROSSING, SegmentPairClassifier.classify(diagonal, segment(0, 4, 4, 0)));
+		assertEquals(SegmentRelation.T_JUNCTION, SegmentPairClassifier.classify(diagonal, segment(2, 2, 4, 0)));
+		assertEquals(SegmentRelation.SHARED_ENDPOINT, SegmentPairClassifier.classify(diagonal, segment(4, 4, 6, 0)));
+		assertEquals(SegmentRelation.DISJOINT, SegmentPairClassifier.classify(diagonal, segment(5, 0, 6, 1)));
+		assertEquals(SegmentRelation.DISJOINT, SegmentPairClassifier.classify(diagonal, segment(0, 1, 3, 4)));
+
+		assertEquals(SegmentRelation.COLLINEAR_OVERLAP, SegmentPairClassifier.classify(diagonal, segment(1, 1, 6, 6)));
+		assertEquals(SegmentRelation.COLLINEAR_OVERLAP, SegmentPairClassifier.classify(diagonal, segment(4, 4, 0, 0)));
+		assertEquals(SegmentRelation.SHARED_ENDPOINT, SegmentPairClassifier.classify(diagonal, segment(4, 4, 6, 6)));
+		assertEquals(SegmentRelation.COLLINEAR_DISJOINT, SegmentPairClassifier.classify(diagonal, segment(5, 5, 6, 6)));
+
+		// Vertical and horizontal segments need no special handling by the caller
+		Segment vertical = segment(1, -1, 1, 5);
+		assertEquals(SegmentRelation.PROPER_CROSSING, SegmentPairClassifier.classify(vertical, segment(0, 2, 3, 2)));
+		assertEquals(SegmentRelation.COLLINEAR_DISJOINT, SegmentPairClassifier.classify(vertical, segment(1, 6, 1, 8)));
+	}
+
+	@Test
+	void test_crossing()
+	{
+		Point crossing = SegmentPairClassifier.crossing(segment(0, 0, 4, 4), segment(0, 4, 4, 0));
+		assertEquals(new Point(2, 2), crossing);
+
+		assertEquals(new Point(1, 2), SegmentPairClassifier.crossing(segment(1, -1, 1, 5), segment(0, 2, 3, 2)));
+
+		assertNull(SegmentPairClassifier.crossing(segment(0, 0, 4, 4), segment(2, 2, 4, 0)));
+		assertNull(SegmentPairClassifier.crossing(segment(0, 0, 4, 4), segment(1, 1, 6, 6)));
+	}
+}
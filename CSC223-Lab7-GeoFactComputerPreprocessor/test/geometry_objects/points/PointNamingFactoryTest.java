@@ -0,0 +1,99 @@
+package geometry_objects.points;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class PointNamingFactoryTest
+{
+	@Test
+	void test_lookup_consistent_with_equals()
+	{
+		// Equal points (within EPSILON) on either side of a hashCode truncation boundary
+		Point stored = new Point("A", 0.1999996, 3.0000004);
+		Point query = new Point(0.2000003, 2.9999997);
+		assertEquals(stored, query);
+
+		PointNamingFactory factory = new PointNamingFactory();
+		factory.put(stored.getName(), stored.getX(), stored.getY());
+
+		assertSame(factory.get(stored), factory.get(query));
+		assertEquals("A", factory.get(query).getName());
+		assertNull(factory.get(0.2000015, 3.0));
+
+		// Equal points are stored once
+		factory.put(query);
+		assertEquals(1, factory.size());
+	}
+
+	@Test
+	void test_named_point_replaces_generated_name()
+	{
+		PointNamingFactory factory = new PointNamingFactory();
+
+		Point generated = factory.put(1, 2);
+		Point named = factory.put("B", 1.0000005, 2);
+
+		assertEquals("B", named.getName());
+		assertSame(named, factory.get(generated));
+		assertEquals(1, factory.size());
+		assertEquals(1, factory.getAllPoints().size());
+
+		// A renamed point keeps its place
+		factory.put(3, 4);
+		factory.put(5, 6);
+		factory.put("D", 3, 4);
+		List<String> names = new ArrayList<String>();
+		for (Point pt : factory.getAllPoints()) names.add(pt.getName());
+		assertEquals(List.of("B", "D", "*_C"), names);
+	}
+
+	@Test
+	void test_bulk_load()
+	{
+		List<Point> points = new ArrayList<Point>();
+		for (int x = 0; x < 100; x++)
+		{
+			for (int y = 0; y < 100; y++)
+			{
+				points.add(new Point("P" + x + "_" + y, x / 10.0, y / 10.0));
+			}
+		}
+
+		PointDatabase database = new PointDatabase(points);
+
+		assertEquals(10000, database.size());
+		for (Point pt : points)
+		{
+			assertEquals(pt.getName(), database.getName(pt.getX() + 1e-7, pt.getY() - 1e-7));
+		}
+	}
+
+	@Test
+	void test_name_index_and_live_view()
+	{
+		PointDatabase database = new PointDatabase();
+		Set<Point> points = database.getPoints();
+		assertEquals("", database.toString());
+
+		database.put("A", 0, 0);
+		database.put("B", 1, 0);
+
+		// The view reflects later additions
+		assertEquals(2, points.size());
+		assertTrue(points.contains(new Point(1.0000001, 0)));
+		assertThrows(UnsupportedOperationException.class, () -> points.iterator().remove());
+
+		assertEquals(new Point(1, 0), database.getPoint("B"));
+		assertNull(database.getPoint("C"));
+		assertEquals("A(0.00, 0.00), B(1.00, 0.00)", database.toString());
+	}
+}
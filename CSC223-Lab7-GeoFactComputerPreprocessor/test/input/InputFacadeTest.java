@@ -0,0 +1,43 @@
+package input;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import geometry_objects.Segment;
+import geometry_objects.points.PointDatabase;
+
+class InputFacadeTest
+{
+	@Test
+	void test_extract_geometry_matches_figure()
+	{
+		String[] files = { "jsonfiles/single_triangle.json", "jsonfiles/fully_connected_irregular_polygon.json",
+				           "jsonfiles/Tri_Quad.json", "jsonfiles/snake.json" };
+
+		for (String file : files)
+		{
+			Map.Entry<PointDatabase, Set<Segment>> expected =
+					InputFacade.toGeometryRepresentation(InputFacade.extractFigure(file));
+			Map.Entry<PointDatabase, Set<Segment>> actual = InputFacade.extractGeometry(file);
+
+			assertEquals(expected.getKey().getPoints(), actual.getKey().getPoints(), file);
+			assertEquals(expected.getValue(), actual.getValue(), file);
+
+			// Segments share the database's points
+			for (Map.Entry<PointDatabase, Set<Segment>> geometry : List.of(expected, actual))
+			{
+				for (Segment seg : geometry.getValue())
+				{
+					assertSame(geometry.getKey().getPoint(seg.getPoint1().getName()), seg.getPoint1(), file);
+					assertSame(geometry.getKey().getPoint(seg.getPoint2().getName()), seg.getPoint2(), file);
+				}
+			}
+		}
+	}
+}
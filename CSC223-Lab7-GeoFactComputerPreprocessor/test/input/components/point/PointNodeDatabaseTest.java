@@ -0,0 +1,53 @@
+package input.components.point;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PointNodeDatabaseTest
+{
+	@Test
+	void test_lookups()
+	{
+		PointNode a = new PointNode("A", 0, 0);
+		PointNode b = new PointNode("B", 0.1999996, 4);
+
+		PointNodeDatabase database = new PointNodeDatabase(List.of(b, a));
+		PointNode c = new PointNode("C", 3, 1);
+		database.put(c);
+
+		assertSame(a, database.getPoint("A"));
+		assertSame(c, database.getPoint("C"));
+		assertNull(database.getPoint("D"));
+
+		// Coordinates match within epsilon
+		assertSame(b, database.getPoint(0.2000003, 4));
+		assertEquals("C", database.getName(3, 1.0000005));
+		assertTrue(database.contains(new PointNode(0, 0)));
+		assertFalse(database.contains(1, 1));
+
+		// Nodes are ordered by name
+		assertEquals(List.of(a, b, c), new ArrayList<PointNode>(database.getPoints()));
+	}
+
+	@Test
+	void test_duplicate_name_keeps_first()
+	{
+		PointNode first = new PointNode("A", 0, 0);
+
+		PointNodeDatabase database = new PointNodeDatabase();
+		database.put(first);
+		database.put(new PointNode("A", 5, 5));
+
+		assertEquals(1, database.getPoints().size());
+		assertSame(first, database.getPoint("A"));
+		assertNull(database.getPoint(5, 5));
+	}
+}
@@ -0,0 +1,99 @@
+package input.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import input.builder.GeometryBuilder;
+import input.components.FigureNode;
+import input.components.point.PointNode;
+import input.exception.ParseException;
+import utilities.io.FileUtilities;
+
+class StreamingFigureParserTest
+{
+	private static FigureNode parse(String text)
+	{
+		return (FigureNode)new StreamingFigureParser(new GeometryBuilder()).parse(new StringReader(text));
+	}
+
+	@Test
+	void test_matches_json_parser()
+	{
+		String[] files = { "single_triangle.json", "crossing_symmetric_triangle.json",
+				           "fully_connected_irregular_polygon.json", "Tri_Quad.json", "snake.json" };
+
+		for (String file : files)
+		{
+			String text = FileUtilities.readFileFilterComments("jsonfiles/" + file);
+
+			FigureNode expected = (FigureNode)new JSONParser(new GeometryBuilder()).parse(text);
+			FigureNode actual = parse(text);
+
+			assertEquals(expected.getDescription(), actual.getDescription(), file);
+			assertEquals(points(expected), points(actual), file);
+			assertEquals(expected.getSegments().asSegmentList(), actual.getSegments().asSegmentList(), file);
+		}
+	}
+
+	@Test
+	void test_comments_order_and_fractions()
+	{
+		String text = "{ \"Figure\" : {\n" +
+		              "  // segments may come first\n" +
+		              "  \"Segments\" : [ { \"A\" : [\"B\"] }, ],\n" +
+		              "  \"Description\" : \"see http://example.com\",\n" +
+		              "  \"Extra\" : { \"ignored\" : [1, 2.5, null] },\n" +
+		              "  \"Points\" : [ { \"name\" : \"A\", \"x\" : -0.5, \"y\" : 1e2 },\n" +
+		              "                 { \"name\" : \"B\", \"x\" : 3, \"y\" : 0.125 } // trailing\n" +
+		              "  ]\n" +
+		              "} }";
+
+		FigureNode figure = parse(text);
+
+		assertEquals("see http://example.com", figure.getDescription());
+		assertEquals(List.of("A(-0.5, 100.0)", "B(3.0, 0.125)"), points(figure));
+		assertEquals(1, figure.getSegments().asSegmentList().size());
+	}
+
+	@Test
+	void test_errors()
+	{
+		// Unknown point in a segment
+		assertThrows(ParseException.class, () -> parse("{ \"Figure\" : { \"Description\" : \"\", " +
+				"\"Points\" : [ { \"name\" : \"A\", \"x\" : 0, \"y\" : 0 } ], \"Segments\" : [ { \"A\" : [\"Z\"] } ] } }"));
+
+		// Truncated input
+		assertThrows(ParseException.class, () -> parse("{ \"Figure\" : { \"Points\" : [ "));
+
+		// Members without commas between them
+		assertThrows(ParseException.class, () -> parse("{ \"Figure\" : { \"Description\" : \"d\" " +
+				"\"Points\" : [] \"Segments\" : [] } }"));
+
+		// Elements without commas between them
+		assertThrows(ParseException.class, () -> parse("{ \"Figure\" : { \"Description\" : \"d\", " +
+				"\"Points\" : [ { \"name\" : \"A\", \"x\" : 0, \"y\" : 0 } { \"name\" : \"B\", \"x\" : 1, \"y\" : 0 } ], " +
+				"\"Segments\" : [] } }"));
+
+		// Input after the root object
+		assertThrows(ParseException.class, () -> parse("{ \"Figure\" : { \"Description\" : \"d\", " +
+				"\"Points\" : [], \"Segments\" : [] } } xyz"));
+
+		// A trailing comma is allowed
+		parse("{ \"Figure\" : { \"Description\" : \"d\", \"Points\" : [ { \"name\" : \"A\", \"x\" : 0, \"y\" : 0 }, ], " +
+				"\"Segments\" : [], }, }");
+	}
+
+	private static List<String> points(FigureNode figure)
+	{
+		List<String> points = new ArrayList<String>();
+		for (PointNode pt : figure.getPointsDatabase().getPoints()) points.add(pt.toString());
+
+		return points;
+	}
+}
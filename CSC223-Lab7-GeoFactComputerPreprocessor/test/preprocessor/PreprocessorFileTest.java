@@ -0,0 +1,229 @@
+package preprocessor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+import geometry_objects.points.PointDatabase;
+import input.InputFacade;
+import preprocessor.delegates.SegmentTable;
+
+class PreprocessorFileTest
+{
+	@Test
+	void test_round_trip() throws IOException
+	{
+		String[] files = { "jsonfiles/fully_connected_irregular_polygon.json", "jsonfiles/Tri_Quad.json",
+				           "jsonfiles/crossing_symmetric_triangle.json" };
+
+		Path path = Files.createTempFile("figure", ".gfpp");
+		path.toFile().deleteOnExit();
+
+		for (String file : files)
+		{
+			Map.Entry<PointDatabase, Set<Segment>> pair = InputFacade.extractGeometry(file);
+			Preprocessor expected = new Preprocessor(pair.getKey(), pair.getValue());
+			expected.analyze();
+
+			PreprocessorFile.write(expected, path);
+			Preprocessor actual = PreprocessorFile.read(path);
+
+			assertEquals(new ArrayList<Point>(expected._pointDatabase.getPoints()),
+					     new ArrayList<Point>(actual._pointDatabase.getPoints()), file);
+			assertEquals(new ArrayList<Point>(expected.getImplicitPoints()),
+					     new ArrayList<Point>(actual.getImplicitPoints()), file);
+			assertEquals(expected._givenSegments, actual._givenSegments, file);
+			assertEquals(expected.getImplicitSegments(), actual.getImplicitSegments(), file);
+			assertEquals(expected.getMinimalSegments(), actual.getMinimalSegments(), file);
+			assertEquals(expected.getNonMinimalSegments(), actual.getNonMinimalSegments(), file);
+			assertEquals(expected.getAllSegments(), actual.getAllSegments(), file);
+
+			for (Point pt : expected.getImplicitPoints())
+			{
+				assertEquals(expected.getImplicitPointIncidence().segmentsThrough(pt),
+						     actual.getImplicitPointIncidence().segmentsThrough(pt), file);
+			}
+		}
+	}
+
+	@Test
+	void test_fractional_coordinates() throws IOException
+	{
+		PointDatabase points = new PointDatabase(List.of(new Point("A", -0.5, 0.25), new Point("B", 3.1, 2.7),
+				                                         new Point("C", 0.1, 2.9), new Point("D", Math.PI, 0)));
+
+		Preprocessor expected = new Preprocessor(points, Set.of(new Segment(points.getPoint("A"), points.getPoint("B")),
+				                                                new Segment(points.getPoint("C"), points.getPoint("D"))));
+
+		Path path = Files.createTempFile("figure", ".gfpp");
+		path.toFile().deleteOnExit();
+		PreprocessorFile.write(expected, path);
+
+		Preprocessor actual = PreprocessorFile.read(path);
+
+		// Coordinates are exact (not merely equal within epsilon)
+		List<Point> expectedPoints = new ArrayList<Point>(expected._pointDatabase.getPoints());
+		expectedPoints.addAll(expected.getImplicitPoints());
+		List<Point> actualPoints = new ArrayList<Point>(actual._pointDatabase.getPoints());
+		actualPoints.addAll(actual.getImplicitPoints());
+
+		assertEquals(expectedPoints.size(), actualPoints.size());
+		for (int k = 0; k < expectedPoints.size(); k++)
+		{
+			assertEquals(expectedPoints.get(k).getX(), actualPoints.get(k).getX(), 0);
+			assertEquals(expectedPoints.get(k).getY(), actualPoints.get(k).getY(), 0);
+		}
+		assertEquals(expected.getAllSegments(), actual.getAllSegments());
+	}
+
+	@Test
+	void test_random_figures() throws IOException
+	{
+		// Overlapping minimal segments: two chains along y = 1 share the span (0, 1) - (2, 1)
+		assertRoundTrip(List.of(segment(0, 1, 2, 1), segment(1, 1, 0, 1), segment(2, 0, 1, 2),
+				                segment(2, 2, 1, 1), segment(1, 1, 2, 1)));
+
+		//
+		// Random figures on small grids (crossings shared by several segments)
+		//
+		Random random = new Random(25);
+		for (int figure = 0; figure < 200; figure++)
+		{
+			int size = 3 + random.nextInt(6);
+
+			List<Segment> segments = new ArrayList<Segment>();
+			for (int k = 0; k < 4 + random.nextInt(8); k++)
+			{
+				Segment seg = segment(random.nextInt(size), random.nextInt(size), random.nextInt(size), random.nextInt(size));
+				if (!seg.getPoint1().equals(seg.getPoint2())) segments.add(seg);
+			}
+
+			assertRoundTrip(segments);
+		}
+	}
+
+	private void assertRoundTrip(List<Segment> segments) throws IOException
+	{
+		PointDatabase points = new PointDatabase();
+		for (Segment seg : segments)
+		{
+			points.put(seg.getPoint1().getName(), seg.getPoint1().getX(), seg.getPoint1().getY());
+			points.put(seg.getPoint2().getName(), seg.getPoint2().getX(), seg.getPoint2().getY());
+		}
+
+		Preprocessor expected = new Preprocessor(points, new LinkedHashSet<Segment>(segments));
+		expected.analyze();
+
+		Path path = Files.createTempFile("figure", ".gfpp");
+		path.toFile().deleteOnExit();
+		PreprocessorFile.write(expected, path);
+		Preprocessor actual = PreprocessorFile.read(path);
+
+		assertEquals(new ArrayList<Point>(expected.getImplicitPoints()), new ArrayList<Point>(actual.getImplicitPoints()));
+		assertEquals(expected.getImplicitSegments(), actual.getImplicitSegments());
+		assertEquals(expected.getMinimalSegments(), actual.getMinimalSegments());
+		assertEquals(expected.getNonMinimalSegments(), actual.getNonMinimalSegments());
+		assertEquals(expected.getAllSegments(), actual.getAllSegments());
+
+		// Each segment once (a span shared by chains belongs to one of them)
+		assertEquals(expected.getAllSegments().size(), new ArrayList<Segment>(actual.getAllSegments().keySet()).size());
+		assertEquals(expected.getNonMinimalSegments().size(), new ArrayList<Segment>(actual.getNonMinimalSegments()).size());
+		for (Segment seg : expected.getAllSegments().keySet()) assertEquals(seg, actual.getAllSegments().get(seg));
+	}
+
+	@Test
+	void test_decoded_on_demand() throws IOException
+	{
+		Map.Entry<PointDatabase, Set<Segment>> pair = InputFacade.extractGeometry("jsonfiles/crossing_symmetric_triangle.json");
+		Preprocessor expected = new Preprocessor(pair.getKey(), pair.getValue());
+		expected.analyze();
+
+		Path path = Files.createTempFile("figure", ".gfpp");
+		path.toFile().deleteOnExit();
+		PreprocessorFile.write(expected, path);
+
+		//
+		// The collections read the file: no phase runs and no segment is stored
+		//
+		Preprocessor actual = PreprocessorFile.read(path);
+		assertEquals(expected.getAllSegments(), actual.getAllSegments());
+		assertEquals(Preprocessor.Phase.SEGMENT_DATABASE, actual._phase);
+		assertEquals(0, actual._segments.size(SegmentTable.GIVEN | SegmentTable.IMPLICIT | SegmentTable.DATABASE));
+		assertEquals(0, actual._pointRegistry.size());
+
+		// Analyzing or editing computes the figure again (the views held stay live)
+		Map<Segment, Segment> database = actual.getAllSegments();
+		actual.analyze();
+		assertEquals(expected.getAllSegments(), database);
+		assertEquals(expected.getAllSegments().size(), actual._segments.size(SegmentTable.DATABASE));
+
+		actual = PreprocessorFile.read(path);
+		Segment added = segment(-10, -10, 10, 10);
+		actual.addSegment(added);
+
+		Set<Segment> segments = new LinkedHashSet<Segment>(expected._givenSegments);
+		segments.add(added);
+		PointDatabase points = new PointDatabase(new ArrayList<Point>(expected._pointDatabase.getPoints()));
+		points.put(added.getPoint1().getName(), -10, -10);
+		points.put(added.getPoint2().getName(), 10, 10);
+
+		Preprocessor batch = new Preprocessor(points, segments);
+		assertEquals(batch.getMinimalSegments(), actual.getMinimalSegments());
+		assertEquals(batch.getAllSegments(), actual.getAllSegments());
+	}
+
+	@Test
+	void test_not_a_figure() throws IOException
+	{
+		Path path = Files.createTempFile("figure", ".gfpp");
+		path.toFile().deleteOnExit();
+		Files.write(path, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+
+		assertThrows(IOException.class, () -> PreprocessorFile.read(path));
+
+		//
+		// Damaged headers: a negative count, then a count past the end of the file
+		//
+		int[] namedCounts = { -1, 1000 };
+		for (int namedCount : namedCounts)
+		{
+			ByteBuffer bytes = ByteBuffer.allocate(4 * MappedFigure.HEADER_INTS);
+			bytes.putInt(PreprocessorFile.MAGIC).putInt(PreprocessorFile.VERSION).putInt(-1).putInt(0).putInt(namedCount);
+			Files.write(path, bytes.array());
+
+			assertThrows(IOException.class, () -> PreprocessorFile.read(path));
+		}
+
+		//
+		// A damaged given segment (decoded as the file is opened): a point id past the points
+		//
+		PointDatabase points = new PointDatabase(List.of(new Point("A", 0, 0), new Point("B", 1, 1)));
+		PreprocessorFile.write(new Preprocessor(points, Set.of(new Segment(points.getPoint("A"), points.getPoint("B")))), path);
+
+		ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+		int given = 4 * MappedFigure.HEADER_INTS + 16 * 2 + 8 * 2 + 4 * 2;
+		bytes.putInt(given + 4, 2);
+		Files.write(path, bytes.array());
+
+		assertThrows(IOException.class, () -> PreprocessorFile.read(path));
+	}
+
+	private static Segment segment(double x1, double y1, double x2, double y2)
+	{
+		return new Segment(new Point("P" + x1 + "_" + y1, x1, y1), new Point("P" + x2 + "_" + y2, x2, y2));
+	}
+}
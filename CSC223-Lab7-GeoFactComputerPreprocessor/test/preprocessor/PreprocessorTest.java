@@ -1,12 +1,25 @@
 package preprocessor;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 
@@ -15,7 +28,11 @@ import geometry_objects.points.Point;
 import geometry_objects.points.PointDatabase;
 import input.InputFacade;
 import input.components.FigureNode;
+import preprocessor.delegates.AnalysisControl;
 import preprocessor.delegates.ImplicitPointPreprocessor;
+import preprocessor.delegates.IntersectionEngine;
+import preprocessor.delegates.ParallelSettings;
+import utilities.math.FixedPointContext;
 
 class PreprocessorTest
 {
@@ -319,9 +336,10 @@ class PreprocessorTest
 		Set<Segment> computedNonMinimalSegments = pp.constructAllNonMinimalSegments(minimalSegments);
 
 		//
-		// All Segments will consist of the new 13 non-minimal segments.
+		// All Segments will consist of the new 15 non-minimal segments
+		// (the transitive closure along each of the five lines with 4 points).
 		//
-		assertEquals(13, computedNonMinimalSegments.size());
+		assertEquals(15, computedNonMinimalSegments.size());
 		
 		
 		assertEquals(4, iPoints.size());
@@ -354,19 +372,485 @@ class PreprocessorTest
 		expectedNonMinimalSegments.add(new Segment(points.getPoint("F"), b_star));		
 		expectedNonMinimalSegments.add(new Segment(points.getPoint("F"), d_star));
 		
-		expectedNonMinimalSegments.add(new Segment(points.getPoint("G"), c_star));
+		expectedNonMinimalSegments.add(new Segment(points.getPoint("G"), a_star));
+		
+		expectedNonMinimalSegments.add(new Segment(points.getPoint("H"), a_star));
+		
+		expectedNonMinimalSegments.add(new Segment(points.getPoint("C"), c_star));
 		
-		expectedNonMinimalSegments.add(new Segment(points.getPoint("H"), b_star));
+		expectedNonMinimalSegments.add(new Segment(points.getPoint("D"), b_star));
 		
 		
 		assertEquals(expectedNonMinimalSegments.size(), computedNonMinimalSegments.size());
 		
 		
-//		for (Segment computedNonMinimalSegment : computedNonMinimalSegments)
-//		{
-//			assertTrue(expectedNonMinimalSegments.contains(computedNonMinimalSegment));
-//		}
+		for (Segment computedNonMinimalSegment : computedNonMinimalSegments)
+		{
+			assertTrue(expectedNonMinimalSegments.contains(computedNonMinimalSegment));
+		}
 		
 		
 	}
-}
\ No newline at end of file
+
+	@Test
+	void test_phases_on_demand()
+	{
+		FigureNode fig = InputFacade.extractFigure("jsonfiles/fully_connected_irregular_polygon.json");
+
+		Map.Entry<PointDatabase, Set<Segment>> pair = InputFacade.toGeometryRepresentation(fig);
+
+		Preprocessor lazy = new Preprocessor(pair.getKey(), pair.getValue());
+		assertEquals(Preprocessor.Phase.NONE, lazy._phase);
+
+		// Minimal segments need only the phases before them
+		assertEquals(20, lazy.getMinimalSegments().size());
+		assertEquals(Preprocessor.Phase.MINIMAL_SEGMENTS, lazy._phase);
+
+		Preprocessor eager = new Preprocessor(pair.getKey(), pair.getValue());
+		eager.analyze();
+		assertEquals(Preprocessor.Phase.SEGMENT_DATABASE, eager._phase);
+
+		assertSameFigure(eager, lazy);
+		assertEquals(Preprocessor.Phase.SEGMENT_DATABASE, lazy._phase);
+	}
+
+	@Test
+	void test_phases_from_several_threads() throws InterruptedException
+	{
+		Random random = new Random(17);
+
+		for (int figure = 0; figure < 20; figure++)
+		{
+			PointDatabase points = new PointDatabase();
+			Set<Segment> segments = new LinkedHashSet<Segment>();
+			while (segments.size() < 40)
+			{
+				Segment seg = segment(random.nextInt(12), random.nextInt(12), random.nextInt(12), random.nextInt(12));
+				if (seg.getPoint1().equals(seg.getPoint2())) continue;
+
+				points.put(seg.getPoint1().getName(), seg.getPoint1().getX(), seg.getPoint1().getY());
+				points.put(seg.getPoint2().getName(), seg.getPoint2().getX(), seg.getPoint2().getY());
+				segments.add(seg);
+			}
+
+			Preprocessor expected = new Preprocessor(points, segments);
+			expected.analyze();
+
+			//
+			// The first accesses of every thread start together; one of them computes each phase
+			//
+			Preprocessor pp = new Preprocessor(points, segments);
+			CountDownLatch start = new CountDownLatch(1);
+			AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+			Thread[] threads = new Thread[4];
+			for (int t = 0; t < threads.length; t++)
+			{
+				boolean minimalFirst = t % 2 == 0;
+				threads[t] = new Thread(() ->
+				{
+					try
+					{
+						start.await();
+						if (minimalFirst) assertEquals(expected.getMinimalSegments(), pp.getMinimalSegments());
+						assertEquals(expected.getAllSegments(), pp.getAllSegments());
+					}
+					catch (Throwable e) { failure.compareAndSet(null, e); }
+				});
+				threads[t].start();
+			}
+
+			start.countDown();
+			for (Thread thread : threads) thread.join();
+
+			assertNull(failure.get(), String.valueOf(failure.get()));
+			assertSameFigure(expected, pp);
+		}
+	}
+
+	@Test
+	void test_segment_stream()
+	{
+		FigureNode fig = InputFacade.extractFigure("jsonfiles/fully_connected_irregular_polygon.json");
+
+		Map.Entry<PointDatabase, Set<Segment>> pair = InputFacade.toGeometryRepresentation(fig);
+
+		Preprocessor streamed = new Preprocessor(pair.getKey(), pair.getValue());
+
+		List<Segment> sunk = new ArrayList<Segment>();
+		streamed.forEachSegment(sunk::add);
+
+		Set<Segment> sequential = streamed.segmentStream().collect(Collectors.toSet());
+		Set<Segment> parallel = streamed.segmentStream().parallel().collect(Collectors.toSet());
+
+		// Only the minimal segments were computed
+		assertEquals(Preprocessor.Phase.MINIMAL_SEGMENTS, streamed._phase);
+
+		Preprocessor built = new Preprocessor(pair.getKey(), pair.getValue());
+		assertEquals(35, built.getAllSegments().size());
+
+		assertEquals(built.getAllSegments().size(), sunk.size());
+		assertEquals(built.getAllSegments().keySet(), new HashSet<Segment>(sunk));
+		assertEquals(built.getAllSegments().keySet(), sequential);
+		assertEquals(built.getAllSegments().keySet(), parallel);
+		assertEquals(35, streamed.segmentSpliterator().estimateSize());
+	}
+
+	@Test
+	void test_count()
+	{
+		FigureNode fig = InputFacade.extractFigure("jsonfiles/fully_connected_irregular_polygon.json");
+
+		Map.Entry<PointDatabase, Set<Segment>> pair = InputFacade.toGeometryRepresentation(fig);
+
+		Preprocessor counted = new Preprocessor(pair.getKey(), pair.getValue());
+		FigureCounts counts = counted.count();
+
+		// Only the implicit points were computed
+		assertEquals(Preprocessor.Phase.IMPLICIT_POINTS, counted._phase);
+
+		assertEquals(5, counts.getImplicitPointCount());
+		assertEquals(20, counts.getMinimalSegmentCount());
+		assertEquals(15, counts.getNonMinimalSegmentCount());
+		assertEquals(35, counts.getSegmentCount());
+
+		// Counting a built figure agrees
+		Preprocessor built = new Preprocessor(pair.getKey(), pair.getValue());
+		built.analyze();
+		assertEquals(counts.toString(), built.count().toString());
+	}
+
+	@Test
+	void test_analyze_under_control()
+	{
+		FigureNode fig = InputFacade.extractFigure("jsonfiles/fully_connected_irregular_polygon.json");
+
+		Map.Entry<PointDatabase, Set<Segment>> pair = InputFacade.toGeometryRepresentation(fig);
+
+		Preprocessor pp = new Preprocessor(pair.getKey(), pair.getValue());
+
+		//
+		// Cancelled before it starts: nothing is computed
+		//
+		AnalysisControl cancelled = new AnalysisControl();
+		cancelled.cancel();
+
+		AnalysisResult result = pp.analyze(cancelled);
+		assertEquals(AnalysisResult.Status.CANCELLED, result.getStatus());
+		assertEquals(Preprocessor.Phase.NONE, result.getCompletedPhase());
+		assertNull(result.getImplicitPoints());
+
+		//
+		// Cancelled as the non-minimal segments begin: the earlier phases are kept
+		//
+		Map<String, Long> progress = new LinkedHashMap<String, Long>();
+		AnalysisControl[] control = new AnalysisControl[1];
+		control[0] = new AnalysisControl(Duration.ofMinutes(1), (task, done, total) ->
+		{
+			if (done == total) progress.put(task, done);
+			if (task.equals(Preprocessor.NON_MINIMAL_SEGMENT_TASK)) control[0].cancel();
+		});
+
+		result = pp.analyze(control[0]);
+		assertEquals(AnalysisResult.Status.CANCELLED, result.getStatus());
+		assertEquals(Preprocessor.Phase.MINIMAL_SEGMENTS, result.getCompletedPhase());
+		assertEquals(5, result.getImplicitPoints().size());
+		assertEquals(20, result.getMinimalSegments().size());
+		assertNull(result.getNonMinimalSegments());
+
+		// Every pair of the 10 given segments was examined
+		assertEquals(Long.valueOf(45), progress.get(ImplicitPointPreprocessor.PAIRS));
+		assertEquals(Long.valueOf(10), progress.get(Preprocessor.MINIMAL_SEGMENT_TASK));
+
+		// The stopped phase is computed when next needed
+		assertEquals(35, pp.getAllSegments().size());
+
+		//
+		// Within budget
+		//
+		result = pp.analyze(Duration.ofMinutes(1));
+		assertTrue(result.isComplete());
+		assertEquals(15, result.getNonMinimalSegments().size());
+	}
+
+	@Test
+	void test_incremental_edits()
+	{
+		FigureNode fig = InputFacade.extractFigure("jsonfiles/fully_connected_irregular_polygon.json");
+
+		Map.Entry<PointDatabase, Set<Segment>> pair = InputFacade.toGeometryRepresentation(fig);
+
+		//
+		// Build the pentagon one segment at a time
+		//
+		Preprocessor incremental = new Preprocessor(new PointDatabase(), new LinkedHashSet<Segment>());
+		for (Segment segment : pair.getValue())
+		{
+			incremental.addSegment(segment);
+		}
+
+		Preprocessor batch = new Preprocessor(pair.getKey(), pair.getValue());
+		assertSameFigure(batch, incremental);
+
+		//
+		// Removing the segment AC removes the crossings on it
+		//
+		Segment ac = new Segment(pair.getKey().getPoint("A"), pair.getKey().getPoint("C"));
+		PreprocessorDelta delta = incremental.removeSegment(ac);
+
+		assertEquals(2, delta.getRemovedPoints().size());
+		assertEquals(3, incremental._implicitPoints.size());
+		assertTrue(delta.getRemovedSegments().contains(ac));
+		assertFalse(incremental.getAllSegments().containsKey(ac));
+
+		Set<Segment> remaining = new LinkedHashSet<Segment>(pair.getValue());
+		remaining.remove(ac);
+		assertSameFigure(new Preprocessor(pair.getKey(), remaining), incremental);
+
+		//
+		// Naming an implicit point turns it into a given point
+		//
+		Point implicit = incremental._implicitPoints.iterator().next();
+		delta = incremental.addPoint("Z", implicit.getX(), implicit.getY());
+
+		assertEquals(1, delta.getAddedPoints().size());
+		assertEquals(1, delta.getRemovedPoints().size());
+		assertTrue(delta.getAddedSegments().isEmpty());
+		assertEquals(2, incremental._implicitPoints.size());
+		assertSameFigure(new Preprocessor(incremental._pointDatabase, remaining), incremental);
+	}
+
+	@Test
+	void test_incremental_matches_batch()
+	{
+		// Crossings whose computed coordinates depend on the order of the pair
+		assertIncrementalMatchesBatch(List.of(segment(5, 1, 1, 2), segment(3, 3, 1, 1)));
+
+		// Overlapping collinear minimal segments: chains depend on the order they are walked
+		assertIncrementalMatchesBatch(List.of(segment(3, 4, 1, 0), segment(4, 3, 1, 3),
+				                              segment(4, 3, 2, 3), segment(2, 5, 1, 2)));
+
+		//
+		// Random figures on small grids (crossings shared by several segments), edited one step at a time
+		//
+		Random random = new Random(223);
+		for (int figure = 0; figure < 200; figure++)
+		{
+			int size = 3 + random.nextInt(6);
+			Preprocessor incremental = new Preprocessor(new PointDatabase(), new LinkedHashSet<Segment>());
+
+			for (int step = 0; step < 10; step++)
+			{
+				int edit = random.nextInt(10);
+
+				if (edit < 6)
+				{
+					int x1 = random.nextInt(size), y1 = random.nextInt(size);
+					int x2 = random.nextInt(size), y2 = random.nextInt(size);
+					if (x1 == x2 && y1 == y2) continue;
+
+					incremental.addSegment(segment(x1, y1, x2, y2));
+				}
+				else if (edit < 8 && !incremental._givenSegments.isEmpty())
+				{
+					List<Segment> given = new ArrayList<Segment>(incremental._givenSegments);
+					incremental.removeSegment(given.get(random.nextInt(given.size())));
+				}
+				else
+				{
+					incremental.addPoint("Q" + step, random.nextInt(2 * size) / 2.0, random.nextInt(2 * size) / 2.0);
+				}
+
+				assertSameFigure(new Preprocessor(incremental._pointDatabase, new LinkedHashSet<Segment>(incremental._givenSegments)), incremental);
+			}
+		}
+	}
+
+	@Test
+	void test_incremental_edits_fixed_point()
+	{
+		FixedPointContext precision = new FixedPointContext(1);
+
+		//
+		// Random figures on a grid of tenths, edited one step at a time: crossings are
+		// found exactly (as analyze() finds them with the precision)
+		//
+		Random random = new Random(15);
+		for (int figure = 0; figure < 100; figure++)
+		{
+			Preprocessor incremental = new Preprocessor(new PointDatabase(), new LinkedHashSet<Segment>(),
+					                                    IntersectionEngine.ALL_PAIRS, precision);
+
+			for (int step = 0; step < 10; step++)
+			{
+				int edit = random.nextInt(10);
+
+				if (edit < 6)
+				{
+					double x1 = random.nextInt(50) / 10.0, y1 = random.nextInt(50) / 10.0;
+					double x2 = random.nextInt(50) / 10.0, y2 = random.nextInt(50) / 10.0;
+					if (x1 == x2 && y1 == y2) continue;
+
+					incremental.addSegment(segment(x1, y1, x2, y2));
+				}
+				else if (edit < 8 && !incremental._givenSegments.isEmpty())
+				{
+					List<Segment> given = new ArrayList<Segment>(incremental._givenSegments);
+					incremental.removeSegment(given.get(random.nextInt(given.size())));
+				}
+				else
+				{
+					incremental.addPoint("Q" + step, random.nextInt(50) / 10.0, random.nextInt(50) / 10.0);
+				}
+
+				Preprocessor batch = new Preprocessor(incremental._pointDatabase, new LinkedHashSet<Segment>(incremental._givenSegments),
+						                              IntersectionEngine.ALL_PAIRS, precision);
+				assertSameFigure(batch, incremental);
+
+				// The very same coordinates (not merely equal within EPSILON)
+				assertEquals(coordinates(batch._implicitPoints), coordinates(incremental._implicitPoints));
+			}
+		}
+
+		//
+		// Edits off the grid are rejected before anything changes
+		//
+		Preprocessor pp = new Preprocessor(new PointDatabase(), new LinkedHashSet<Segment>(), IntersectionEngine.ALL_PAIRS, precision);
+		pp.addSegment(segment(0, 0, 1, 1));
+
+		assertThrows(IllegalArgumentException.class, () -> pp.addSegment(segment(0, 1, 1, 0.04)));
+		assertThrows(IllegalArgumentException.class, () -> pp.addPoint("Z", 0.25, 0));
+		assertEquals(1, pp._givenSegments.size());
+		assertEquals(2, pp._pointDatabase.getPoints().size());
+		assertEquals(1, pp.getAllSegments().size());
+	}
+
+	@Test
+	void test_incremental_edits_own_given_segments()
+	{
+		Set<Segment> given = new LinkedHashSet<Segment>(List.of(segment(0, 0, 2, 2)));
+
+		Preprocessor pp = new Preprocessor(new PointDatabase(), given);
+		pp.addSegment(segment(0, 2, 2, 0));
+		assertEquals(1, given.size());
+		assertEquals(1, pp.getImplicitPoints().size());
+
+		// An unmodifiable set of given segments can be edited too
+		pp = new Preprocessor(new PointDatabase(), Set.copyOf(given));
+		pp.removeSegment(segment(0, 0, 2, 2));
+		assertTrue(pp.getAllSegments().isEmpty());
+	}
+
+	private void assertIncrementalMatchesBatch(List<Segment> segments)
+	{
+		Preprocessor incremental = new Preprocessor(new PointDatabase(), new LinkedHashSet<Segment>());
+		for (Segment segment : segments) incremental.addSegment(segment);
+
+		assertSameFigure(new Preprocessor(incremental._pointDatabase, new LinkedHashSet<Segment>(segments)), incremental);
+	}
+
+	private static Set<List<Double>> coordinates(Set<Point> points)
+	{
+		return points.stream().map(pt -> List.of(pt.getX(), pt.getY())).collect(Collectors.toSet());
+	}
+
+	private static Segment segment(double x1, double y1, double x2, double y2)
+	{
+		return new Segment(new Point("P" + x1 + "_" + y1, x1, y1), new Point("P" + x2 + "_" + y2, x2, y2));
+	}
+
+	private void assertSameFigure(Preprocessor expected, Preprocessor actual)
+	{
+		// The database (as every other collection) is computed when first accessed
+		assertEquals(expected._segmentDatabase, actual._segmentDatabase);
+
+		assertEquals(new HashSet<Point>(expected._implicitPoints), new HashSet<Point>(actual._implicitPoints));
+		assertEquals(expected._implicitSegments, actual._implicitSegments);
+		assertEquals(expected._allMinimalSegments, actual._allMinimalSegments);
+		assertEquals(expected._nonMinimalSegments, actual._nonMinimalSegments);
+		assertEquals(expected.getAllSegments(), actual.getAllSegments());
+	}
+
+	@Test
+	void test_fixed_point_grid()
+	{
+		//
+		// D is off the grid of 2 decimals: snapped, it would cross AB at (5, 5),
+		// which does not lie on CD as given
+		//
+		PointDatabase offGrid = new PointDatabase(List.of(new Point("A", 0, 0), new Point("B", 10, 10),
+				                                          new Point("C", 0, 10), new Point("D", 10, 0.004)));
+		Set<Segment> segments = Set.of(new Segment(offGrid.getPoint("A"), offGrid.getPoint("B")),
+				                       new Segment(offGrid.getPoint("C"), offGrid.getPoint("D")));
+
+		assertThrows(IllegalArgumentException.class,
+				     () -> new Preprocessor(offGrid, segments, IntersectionEngine.ALL_PAIRS, new FixedPointContext(2)));
+		assertThrows(IllegalArgumentException.class, () -> new FixedPointContext(2).toFixed(0.004));
+
+		// On the grid (within EPSILON), exact and floating point discovery build the same figure
+		PointDatabase onGrid = new PointDatabase(List.of(new Point("A", 0, 0), new Point("B", 10, 10),
+				                                         new Point("C", 0, 10), new Point("D", 10, 0.0400000001)));
+		Set<Segment> onGridSegments = Set.of(new Segment(onGrid.getPoint("A"), onGrid.getPoint("B")),
+				                             new Segment(onGrid.getPoint("C"), onGrid.getPoint("D")));
+
+		Preprocessor exact = new Preprocessor(onGrid, onGridSegments, IntersectionEngine.ALL_PAIRS, new FixedPointContext(2));
+		Preprocessor floating = new Preprocessor(onGrid, onGridSegments);
+
+		assertEquals(6, floating.getAllSegments().size());
+		assertSameFigure(floating, exact);
+	}
+
+	@Test
+	void test_points_interned()
+	{
+		PointDatabase points = new PointDatabase(List.of(new Point("A", 0, 0), new Point("B", 4, 4),
+				                                         new Point("C", 0, 4), new Point("D", 4, 0)));
+
+		// Endpoints are copies of the database points
+		Set<Segment> segments = new LinkedHashSet<Segment>();
+		segments.add(new Segment(new Point("A", 0, 0), new Point("B", 4, 4)));
+		segments.add(new Segment(new Point("C", 0, 4), new Point("D", 4, 0)));
+
+		Preprocessor pp = new Preprocessor(points, segments);
+		pp.analyze();
+
+		Point implicit = pp.getImplicitPoints().iterator().next();
+		for (Segment seg : pp.getAllSegments().keySet())
+		{
+			for (Point pt : List.of(seg.getPoint1(), seg.getPoint2()))
+			{
+				assertTrue(pt == implicit || pt == points.getPoint(pt.getName()), pt.toString());
+			}
+		}
+		assertEquals(6, pp.getAllSegments().size());
+	}
+
+	@Test
+	void test_parallel_settings()
+	{
+		FigureNode fig = InputFacade.extractFigure("jsonfiles/fully_connected_irregular_polygon.json");
+		Map.Entry<PointDatabase, Set<Segment>> pair = InputFacade.toGeometryRepresentation(fig);
+
+		Preprocessor expected = new Preprocessor(pair.getKey(), pair.getValue());
+		expected.analyze();
+
+		// Every pair is split off as a task in a pool of its own
+		AtomicInteger threads = new AtomicInteger();
+		ForkJoinPool pool = new ForkJoinPool(2, p -> { threads.incrementAndGet(); return ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p); }, null, false);
+
+		try
+		{
+			Preprocessor pp = new Preprocessor(pair.getKey(), pair.getValue(), IntersectionEngine.PARALLEL);
+			pp.setParallelSettings(new ParallelSettings(pool, 1));
+			pp.analyze();
+
+			assertTrue(threads.get() > 0);
+			assertEquals(new ArrayList<Point>(expected.getImplicitPoints()), new ArrayList<Point>(pp.getImplicitPoints()));
+			assertEquals(expected.getAllSegments(), pp.getAllSegments());
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package preprocessor.delegates;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import geometry_objects.Segment;
+import geometry_objects.delegates.intersections.SegmentPairClassifier;
+import geometry_objects.points.Point;
+
+class GeometryKernelTest
+{
+	@Test
+	void test_batch_predicates_agree()
+	{
+		Random random = new Random(11);
+
+		List<Segment> segments = new ArrayList<Segment>();
+		for (int s = 0; s < 50; s++)
+		{
+			segments.add(new Segment(new Point(random.nextInt(10), random.nextInt(10)),
+					                 new Point(random.nextInt(10), random.nextInt(10))));
+		}
+
+		// Lattice points: many lie on (or at the ends of) the segments
+		List<Point> points = new ArrayList<Point>();
+		for (int x = 0; x < 10; x++)
+			for (int y = 0; y < 10; y++) points.add(new Point(x, y));
+
+		double[] xs = new double[points.size()];
+		double[] ys = new double[points.size()];
+		for (int k = 0; k < points.size(); k++)
+		{
+			xs[k] = points.get(k).getX();
+			ys[k] = points.get(k).getY();
+		}
+
+		GeometryKernel kernel = new GeometryKernel(segments);
+		boolean[] on = new boolean[points.size()];
+		boolean[] between = new boolean[points.size()];
+		int[] candidates = new int[segments.size()];
+
+		for (int s = 0; s < segments.size(); s++)
+		{
+			Segment seg = segments.get(s);
+
+			kernel.liesOn(s, xs, ys, 0, points.size(), on);
+			kernel.liesBetween(s, xs, ys, 0, points.size(), between);
+
+			for (int k = 0; k < points.size(); k++)
+			{
+				assertEquals(seg.pointLiesOnSegment(points.get(k)), on[k]);
+				assertEquals(seg.pointLiesBetweenEndpoints(points.get(k)), between[k]);
+			}
+
+			// Every intersecting segment is a candidate
+			int count = kernel.overlapping(s, 0, segments.size(), candidates);
+			List<Integer> overlapping = new ArrayList<Integer>();
+			for (int c = 0; c < count; c++) overlapping.add(candidates[c]);
+
+			for (int t = 0; t < segments.size(); t++)
+			{
+				if (seg.segmentIntersection(segments.get(t)) != null) assertEquals(true, overlapping.contains(t));
+			}
+		}
+	}
+
+	@Test
+	void test_crossing_keeps_every_proper_crossing()
+	{
+		Random random = new Random(23);
+
+		//
+		// Lattice segments (shared endpoints, T-junctions, collinear overlaps),
+		// fractional segments, and segments nearly along the line y = x
+		//
+		List<Segment> segments = new ArrayList<Segment>();
+		for (int s = 0; s < 60; s++)
+		{
+			segments.add(new Segment(new Point(random.nextInt(10), random.nextInt(10)),
+					                 new Point(random.nextInt(10), random.nextInt(10))));
+			segments.add(new Segment(new Point(10 * random.nextDouble(), 10 * random.nextDouble()),
+					                 new Point(10 * random.nextDouble(), 10 * random.nextDouble())));
+
+			double a = 10 * random.nextDouble(), b = 10 * random.nextDouble();
+			segments.add(new Segment(new Point(a, a + 1e-7 * random.nextGaussian()),
+					                 new Point(b, b + 1e-7 * random.nextGaussian())));
+		}
+
+		GeometryKernel kernel = new GeometryKernel(segments);
+		int[] candidates = new int[segments.size()];
+		int dropped = 0;
+
+		for (int s = 0; s < segments.size(); s++)
+		{
+			int overlapping = kernel.overlapping(s, 0, segments.size(), candidates);
+			int count = kernel.crossing(s, candidates, overlapping, candidates);
+			dropped += overlapping - count;
+
+			List<Integer> kept = new ArrayList<Integer>();
+			for (int c = 0; c < count; c++) kept.add(candidates[c]);
+
+			for (int t = 0; t < segments.size(); t++)
+			{
+				if (SegmentPairClassifier.crossing(segments.get(s), segments.get(t)) != null)
+				{
+					assertEquals(true, kept.contains(t), s + " " + t);
+				}
+			}
+		}
+
+		// The batch does narrow the candidates
+		assertEquals(true, dropped > 0);
+	}
+
+	@Test
+	void test_exactly_collinear_far_from_origin()
+	{
+		// Exactly collinear (see GeometryPredicatesTest): the rounded distance to the segment exceeds EPSILON
+		double ax = 30.75, ay = 25.625, bx = 2.518908191178192E15, by = 2.09909015931516E15;
+		double mx = 1.259454095593572E15, my = 1.04954507966131E15;
+
+		double[] xs = { ax, mx, bx, 2 * bx, mx };
+		double[] ys = { ay, my, by, 2 * by, 2 * my };
+
+		boolean[] on = new boolean[xs.length];
+		GeometryKernel.liesOn(ax, ay, bx, by, xs, ys, 0, xs.length, on);
+		assertArrayEquals(new boolean[] { true, true, true, false, false }, on);
+
+		GeometryKernel.liesBetween(ax, ay, bx, by, xs, ys, 0, xs.length, on);
+		assertArrayEquals(new boolean[] { false, true, false, false, false }, on);
+	}
+}
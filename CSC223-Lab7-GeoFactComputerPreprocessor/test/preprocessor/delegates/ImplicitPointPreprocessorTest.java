@@ -0,0 +1,190 @@
+package preprocessor.delegates;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+import geometry_objects.points.PointDatabase;
+import input.InputFacade;
+import input.components.FigureNode;
+import preprocessor.exception.AnalysisInterruptedException;
+import utilities.math.FixedPointContext;
+
+class ImplicitPointPreprocessorTest
+{
+	private static final String[] FIGURES = { "jsonfiles/fully_connected_irregular_polygon.json",
+			                                  "jsonfiles/Tri_Quad.json",
+			                                  "jsonfiles/crossing_symmetric_triangle.json",
+			                                  "jsonfiles/collinear_line_segments.json",
+			                                  "jsonfiles/snake.json",
+			                                  "jsonfiles/square.json",
+			                                  "jsonfiles/single_triangle.json" };
+
+	/*
+	 * Every engine must agree with the all-pairs engine, including insertion order.
+	 */
+	private void assertEnginesAgree(PointDatabase points, List<Segment> segments)
+	{
+		List<Point> expected = new ArrayList<Point>(ImplicitPointPreprocessor.compute(points, segments, IntersectionEngine.ALL_PAIRS));
+
+		for (IntersectionEngine engine : IntersectionEngine.values())
+		{
+			List<Point> actual = new ArrayList<Point>(ImplicitPointPreprocessor.compute(points, segments, engine));
+
+			assertEquals(expected, actual, engine.toString());
+		}
+
+		// Split down to single rows to exercise the fork / join merge order
+		List<Point> parallel = new ArrayList<Point>(ParallelImplicitPointPreprocessor.compute(points, segments, 4, 1));
+		assertEquals(expected, parallel);
+
+		// Exact (fixed-point) discovery finds the same points for these integral figures
+		List<Point> exact = new ArrayList<Point>(ImplicitPointPreprocessor.compute(points, segments, IntersectionEngine.ALL_PAIRS,
+				                                                                    new FixedPointContext(2)));
+		assertEquals(expected, exact);
+	}
+
+	@Test
+	void test_figures()
+	{
+		for (String filename : FIGURES)
+		{
+			FigureNode fig = InputFacade.extractFigure(filename);
+			Map.Entry<PointDatabase, Set<Segment>> pair = InputFacade.toGeometryRepresentation(fig);
+
+			assertEnginesAgree(pair.getKey(), new ArrayList<Segment>(pair.getValue()));
+		}
+	}
+
+	@Test
+	void test_star_through_one_point()
+	{
+		//
+		// Eight segments through (0, 0) plus a vertical and a horizontal
+		// segment sharing the endpoint (0, 5)
+		//
+		PointDatabase points = new PointDatabase();
+		List<Segment> segments = new ArrayList<Segment>();
+
+		segments.add(new Segment(new Point(-4, 0), new Point(4, 0)));
+		segments.add(new Segment(new Point(0, -4), new Point(0, 4)));
+		segments.add(new Segment(new Point(-4, -4), new Point(4, 4)));
+		segments.add(new Segment(new Point(-4, 4), new Point(4, -4)));
+		segments.add(new Segment(new Point(-4, -2), new Point(4, 2)));
+		segments.add(new Segment(new Point(-2, -4), new Point(2, 4)));
+		segments.add(new Segment(new Point(-4, 2), new Point(4, -2)));
+		segments.add(new Segment(new Point(-2, 4), new Point(2, -4)));
+		segments.add(new Segment(new Point(0, 5), new Point(0, 1)));
+		segments.add(new Segment(new Point(0, 5), new Point(3, 5)));
+
+		assertEnginesAgree(points, segments);
+	}
+
+	@Test
+	void test_incidence()
+	{
+		PointDatabase points = new PointDatabase();
+		List<Segment> segments = new ArrayList<Segment>();
+
+		// Three segments through (0, 0); one crossing only the horizontal at (3, 0)
+		segments.add(new Segment(new Point(-4, 0), new Point(4, 0)));
+		segments.add(new Segment(new Point(0, -4), new Point(0, 4)));
+		segments.add(new Segment(new Point(-4, -4), new Point(4, 4)));
+		segments.add(new Segment(new Point(3, -1), new Point(3, 1)));
+
+		for (IntersectionEngine engine : IntersectionEngine.values())
+		{
+			ImplicitPointIncidence incidence = ImplicitPointPreprocessor.computeIncidence(points, segments, engine, null);
+
+			assertEquals(2, incidence.size());
+			assertEquals(new ArrayList<Segment>(segments.subList(0, 3)),
+					     new ArrayList<Segment>(incidence.segmentsThrough(new Point(0, 0))));
+			assertEquals(Set.of(segments.get(0), segments.get(3)), incidence.segmentsThrough(new Point(3, 0)));
+
+			assertEquals(2, incidence.pointsOn(segments.get(0)).size());
+			assertEquals(1, incidence.pointsOn(segments.get(3)).size());
+		}
+	}
+
+	@Test
+	void test_grid_of_verticals()
+	{
+		//
+		// A lattice of vertical and horizontal segments with shared endpoints
+		// on the border; 7 x 7 interior crossings
+		//
+		PointDatabase points = new PointDatabase();
+		List<Segment> segments = new ArrayList<Segment>();
+
+		for (int k = 1; k <= 7; k++)
+		{
+			segments.add(new Segment(new Point(k, 0), new Point(k, 8)));
+			segments.add(new Segment(new Point(0, k), new Point(8, k)));
+		}
+		segments.add(new Segment(new Point(0, 0), new Point(8, 8)));
+
+		assertEnginesAgree(points, segments);
+		assertEquals(49, ImplicitPointPreprocessor.compute(points, segments, IntersectionEngine.SWEEP_LINE).size());
+	}
+
+	@Test
+	void test_cancelled_while_collecting_pairs()
+	{
+		//
+		// 100 x 100 crossings: the engines report more candidate pairs than
+		// are collected between checks of the control
+		//
+		PointDatabase points = new PointDatabase();
+		List<Segment> segments = new ArrayList<Segment>();
+
+		for (int k = 1; k <= 100; k++)
+		{
+			segments.add(new Segment(new Point(k, 0), new Point(k, 101)));
+			segments.add(new Segment(new Point(0, k), new Point(101, k)));
+		}
+
+		FixedPointContext[] precisions = { null, null, new FixedPointContext(2) };
+		IntersectionEngine[] engines = { IntersectionEngine.SWEEP_LINE, IntersectionEngine.GRID, IntersectionEngine.GRID };
+
+		for (int e = 0; e < engines.length; e++)
+		{
+			// Cancelled at the first check after the one preceding the engine
+			List<String> tasks = new ArrayList<String>();
+			AnalysisControl control = new AnalysisControl()
+			{
+				private int _checks = 0;
+
+				@Override
+				public void check()
+				{
+					if (++_checks == 2) cancel();
+					super.check();
+				}
+
+				@Override
+				public void begin(String task, long total)
+				{
+					tasks.add(task);
+					super.begin(task, total);
+				}
+			};
+
+			FixedPointContext precision = precisions[e];
+			IntersectionEngine engine = engines[e];
+			assertThrows(AnalysisInterruptedException.class,
+					     () -> ImplicitPointPreprocessor.computeIncidence(points, segments, engine, precision, control));
+
+			// Stopped by the engine before the candidate pairs were examined
+			assertFalse(tasks.contains(ImplicitPointPreprocessor.CANDIDATE_PAIRS), engine.toString());
+		}
+	}
+}
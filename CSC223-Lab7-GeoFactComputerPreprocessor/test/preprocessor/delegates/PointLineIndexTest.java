@@ -0,0 +1,71 @@
+package preprocessor.delegates;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+
+class PointLineIndexTest
+{
+	@Test
+	void test_matches_collect_ordered_points()
+	{
+		Random random = new Random(223);
+
+		// Lattice points and segments between them: many collinear / overlapping segments
+		List<Point> points = new ArrayList<Point>();
+		for (int x = 0; x < 8; x++)
+		{
+			for (int y = 0; y < 8; y++)
+			{
+				points.add(new Point(x, y));
+			}
+		}
+		points.add(new Point(2.5, 2.5));
+		points.add(new Point(10.0 / 3, 5.0 / 3));
+
+		List<Segment> segments = new ArrayList<Segment>();
+		for (int s = 0; s < 60; s++)
+		{
+			Point p1 = points.get(random.nextInt(64));
+			Point p2 = points.get(random.nextInt(64));
+			if (!p1.equals(p2)) segments.add(new Segment(p1, p2));
+		}
+		segments.add(new Segment(new Point(0, 0), new Point(7, 7)));
+		segments.add(new Segment(new Point(0, 5), new Point(5, 0)));
+
+		PointLineIndex index = new PointLineIndex(segments, points);
+
+		Set<Point> pointSet = new HashSet<Point>(points);
+		for (Segment seg : segments)
+		{
+			assertEquals(new ArrayList<Point>(seg.collectOrderedPointsOnSegment(pointSet)),
+					     new ArrayList<Point>(index.pointsOn(seg)), seg.toString());
+		}
+	}
+
+	@Test
+	void test_exactly_collinear_far_from_origin()
+	{
+		// Exactly collinear (see GeometryPredicatesTest): the rounded distance to the segment exceeds EPSILON
+		Point a = new Point("A", 30.75, 25.625);
+		Point b = new Point("B", 2.518908191178192E15, 2.09909015931516E15);
+		Point m = new Point("M", 1.259454095593572E15, 1.04954507966131E15);
+
+		List<Point> points = List.of(a, b, m);
+		Segment seg = new Segment(a, b);
+
+		PointLineIndex index = new PointLineIndex(List.of(seg), points);
+
+		assertEquals(List.of(a, m, b), new ArrayList<Point>(seg.collectOrderedPointsOnSegment(new HashSet<Point>(points))));
+		assertEquals(List.of(a, m, b), new ArrayList<Point>(index.pointsOn(seg)));
+	}
+}
@@ -0,0 +1,106 @@
+package preprocessor.delegates;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import geometry_objects.Segment;
+import geometry_objects.points.Point;
+import geometry_objects.points.PointRegistry;
+
+class SegmentTableTest
+{
+	@Test
+	void test_roles()
+	{
+		Point a = new Point("A", 0, 0);
+		Point b = new Point("B", 1, 0);
+		Point c = new Point("C", 2, 0);
+
+		SegmentTable table = new SegmentTable(new PointRegistry());
+
+		Segment ab = new Segment(a, b);
+		Segment ac = new Segment(a, c);
+
+		assertSame(ab, table.add(ab, SegmentTable.GIVEN));
+		table.add(ac, SegmentTable.NON_MINIMAL);
+
+		// Same endpoints (reversed, copied) refer to the stored segment
+		Segment ba = new Segment(new Point("B", 1, 0), new Point("A", 0, 0));
+		assertSame(ab, table.add(ba, SegmentTable.MINIMAL));
+		assertEquals(SegmentTable.GIVEN | SegmentTable.MINIMAL, table.rolesOf(ba));
+
+		assertEquals(1, table.size(SegmentTable.GIVEN));
+		assertEquals(2, table.size(SegmentTable.DATABASE));
+
+		// Unknown points / segments
+		assertFalse(table.has(new Segment(b, c), SegmentTable.DATABASE));
+		assertFalse(table.has(new Segment(a, new Point(5, 5)), SegmentTable.DATABASE));
+
+		// Removing the last role removes the segment
+		assertTrue(table.remove(ab, SegmentTable.GIVEN));
+		assertTrue(table.has(ab, SegmentTable.MINIMAL));
+		assertTrue(table.remove(ab, SegmentTable.MINIMAL));
+		assertEquals(0, table.rolesOf(ab));
+		assertFalse(table.remove(ab, SegmentTable.MINIMAL));
+	}
+
+	@Test
+	void test_views()
+	{
+		List<Point> points = new ArrayList<Point>();
+		for (int x = 0; x < 20; x++) points.add(new Point(x, 0));
+
+		SegmentTable table = new SegmentTable(new PointRegistry());
+		Set<Segment> minimal = table.view(SegmentTable.MINIMAL);
+		Map<Segment, Segment> database = table.mapView(SegmentTable.DATABASE);
+
+		List<Segment> expected = new ArrayList<Segment>();
+		for (int x = 0; x < 19; x++)
+		{
+			Segment seg = new Segment(points.get(x), points.get(x + 1));
+			expected.add(seg);
+			assertTrue(minimal.add(seg));
+		}
+		assertFalse(minimal.add(expected.get(0)));
+
+		// Views iterate in insertion order
+		assertEquals(expected, new ArrayList<Segment>(minimal));
+		assertEquals(19, database.size());
+
+		// Remove most segments (compacting the table); the rest keep their order
+		for (int x = 0; x < 15; x++) assertTrue(minimal.remove(expected.get(x)));
+
+		assertEquals(expected.subList(15, 19), new ArrayList<Segment>(minimal));
+		assertSame(expected.get(17), database.get(new Segment(points.get(18), points.get(17))));
+		assertNull(database.get(expected.get(3)));
+		assertFalse(database.containsKey(expected.get(3)));
+
+		// Iterators fail fast when segments having their roles change under them ...
+		Iterator<Segment> segments = minimal.iterator();
+		assertSame(expected.get(15), segments.next());
+
+		// ... but not when other roles change
+		table.add(expected.get(0), SegmentTable.NON_MINIMAL);
+		assertSame(expected.get(16), segments.next());
+
+		table.add(expected.get(1), SegmentTable.MINIMAL);
+		assertThrows(ConcurrentModificationException.class, () -> segments.next());
+
+		Iterator<Segment> keys = database.keySet().iterator();
+		table.add(expected.get(15), SegmentTable.NON_MINIMAL);
+		assertThrows(ConcurrentModificationException.class, () -> keys.next());
+	}
+}
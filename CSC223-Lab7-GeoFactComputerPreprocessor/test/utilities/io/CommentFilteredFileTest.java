@@ -0,0 +1,44 @@
+package utilities.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+class CommentFilteredFileTest
+{
+	private static CharSequence map(String text) throws IOException
+	{
+		Path path = Files.createTempFile("filtered", ".json");
+		path.toFile().deleteOnExit();
+		Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+
+		return FileUtilities.mapFileFilterComments(path.toString());
+	}
+
+	@Test
+	void test_comments_read_as_blanks() throws IOException
+	{
+		CharSequence text = map("{ \"a\" : \"x//y\\\"//z\" } // end\n// whole line\n[1]");
+
+		assertEquals("{ \"a\" : \"x//y\\\"//z\" }       \n             \n[1]", text.toString());
+
+		// Going back rescans the line
+		assertEquals(' ', text.charAt(25));
+		assertEquals('/', text.charAt(10));
+		assertEquals(']', text.charAt(text.length() - 1));
+		assertEquals("\"x//y", text.subSequence(8, 13).toString());
+	}
+
+	@Test
+	void test_non_ascii() throws IOException
+	{
+		CharSequence text = map("{ \"name\" : \"\u00c9\u03c0\" } // \u00e9\n");
+
+		assertEquals("{ \"name\" : \"\u00c9\u03c0\" }     \n", text.toString());
+	}
+}
@@ -0,0 +1,50 @@
+package utilities.math.analytic_geometry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class GeometryPredicatesTest
+{
+	@Test
+	void test_orientation()
+	{
+		assertEquals(1, GeometryPredicates.orientation(0, 0, 1, 0, 0, 1));
+		assertEquals(-1, GeometryPredicates.orientation(0, 0, 0, 1, 1, 0));
+		assertEquals(0, GeometryPredicates.orientation(0, 0, 1, 1, 2, 2));
+
+		// Off collinear by one ulp: within the error bound, so the exact fallback decides
+		assertEquals(1, GeometryPredicates.orientation(0.5, 0.5, 12, 12, 24, Math.nextUp(24.0)));
+		assertEquals(0, GeometryPredicates.orientation(0.5, 0.5, 12, 12, 24, 24));
+		assertEquals(-1, GeometryPredicates.orientation(0.5, 0.5, 12, 12, 24, Math.nextDown(24.0)));
+	}
+
+	@Test
+	void test_on_segment()
+	{
+		assertTrue(GeometryPredicates.onSegment(5, 5, 0, 0, 10, 10));
+		assertTrue(GeometryPredicates.onSegment(0, 0, 0, 0, 10, 10));
+		assertTrue(GeometryPredicates.onSegment(10, 10 + 1e-7, 0, 0, 10, 10));
+		assertFalse(GeometryPredicates.onSegment(10.1, 10.1, 0, 0, 10, 10));
+
+		// Off a long segment by far more than the tolerance (but within sqrt(length * EPSILON))
+		assertFalse(GeometryPredicates.onSegment(50, 1e-4, 0, 0, 100, 0));
+
+		assertFalse(GeometryPredicates.strictlyBetween(0, 0, 0, 0, 10, 10));
+		assertTrue(GeometryPredicates.strictlyBetween(3, 3, 0, 0, 10, 10));
+
+		assertTrue(GeometryPredicates.onLine(20, 20, 0, 0, 10, 10));
+		assertFalse(GeometryPredicates.onLine(20, 21, 0, 0, 10, 10));
+
+		// Exactly collinear far from the origin: the rounded distance exceeds EPSILON
+		double ax = 30.75, ay = 25.625, bx = 2.518908191178192E15, by = 2.09909015931516E15;
+		double mx = 1.259454095593572E15, my = 1.04954507966131E15;
+		assertEquals(0, GeometryPredicates.orientation(ax, ay, bx, by, mx, my));
+		assertTrue(GeometryPredicates.onSegment(mx, my, ax, ay, bx, by));
+		assertTrue(GeometryPredicates.strictlyBetween(mx, my, ax, ay, bx, by));
+		assertTrue(GeometryPredicates.onLine(mx, my, ax, ay, bx, by));
+		assertFalse(GeometryPredicates.onSegment(2 * bx, 2 * by, ax, ay, bx, by));
+	}
+}